@@ -0,0 +1,36 @@
+package com.github.shafaatsarder.sim;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/** CarQueue insert/take pairs with the line held at a fixed depth. */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CarQueueBenchmark {
+
+    @Param({"1", "16", "1024"})
+    public int depth;
+
+    private Sim sim;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        sim = new Sim();
+        sim.carQueue = new Sim.CarQueue(sim);
+        for (int i = 0; i < depth; i++) sim.carQueue.insert(new Sim.Car());
+    }
+
+    @Benchmark
+    public Sim.Car insertTake() {
+        sim.simulationTime += 1.0;
+        Sim.Car c = sim.carQueue.takeFirstCar();
+        c.setArrivalTime(sim.simulationTime);
+        sim.carQueue.insert(c);
+        return c;
+    }
+}
@@ -0,0 +1,53 @@
+package com.github.shafaatsarder.sim;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hold model on each future-event-set backend: take the earliest event, push its
+ * time forward by an exponential increment and insert it again, so the set stays
+ * at a fixed size.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EventSetBenchmark {
+
+    @Param({"list", "heap2", "heap4", "calendar"})
+    public String fes;
+
+    @Param({"16", "256", "4096"})
+    public int pending;
+
+    // Event that does nothing; only its time matters here
+    static final class Marker extends Sim.Event {
+        Marker(double time) { super(time); }
+        @Override public void makeItHappen(Sim sim) { }
+    }
+
+    private FutureEventSet set;
+    private double[] increments;   // pre-drawn exponential(1) holds
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SplittableRandom r = new SplittableRandom(42);
+        increments = new double[1 << 16];
+        for (int i = 0; i < increments.length; i++) increments[i] = -Math.log(1.0 - r.nextDouble());
+        set = FutureEventSet.create(fes);
+        for (int i = 0; i < pending; i++) set.insert(new Marker(increments[i] * pending));
+    }
+
+    @Benchmark
+    public Sim.Event hold() {
+        Sim.Event e = set.takeNextEvent();
+        e.setTime(e.getTime() + increments[next++ & (increments.length - 1)] * pending);
+        set.insert(e);
+        return e;
+    }
+}
@@ -0,0 +1,79 @@
+package com.github.shafaatsarder.sim;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the event-loop instrumentation: the same silent day with and without
+ * -Dsim.instrument. {@code day} scores each mode on its own; the instrumented
+ * one should be within about 2%. On a shared machine the speed drifts by more
+ * than that between iterations, so {@code paired} runs the two modes back to
+ * back in every invocation, in alternating order. Its "offMillis" counter is
+ * the time of the plain runs and "extraMillis" the extra time of the
+ * instrumented ones; their ratio is the overhead. The drift cancels within
+ * each pair, so the per-iteration ratios (-rf json) spread far less than the
+ * {@code day} scores. Every run replays the same seeds, so the work does
+ * not vary either. Add {@code -prof gc} to check that the off path allocates
+ * no more per run than the plain engine, and
+ * {@code -jvmArgsAppend -XX:StartFlightRecording} to include an active JFR
+ * recording.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 3)
+@Fork(3)
+@State(Scope.Thread)
+public class InstrumentationBenchmark {
+
+    @State(Scope.Thread)
+    public static class Setting {
+        @Param({"false", "true"})
+        public boolean instrument;
+    }
+
+    // Wall time of the plain runs and extra time of the instrumented ones, per iteration
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Overhead {
+        public double offMillis, extraMillis;
+        private boolean onFirst;              // alternate the order within the pairs
+
+        @Setup(Level.Iteration)
+        public void clear() { offMillis = extraMillis = 0; }
+    }
+
+    private final long[] seeds = Replications.seedsFor(7, 0);   // the same day every run
+
+    private double run(boolean instrument) {
+        Sim sim = new Sim();
+        sim.fesName = "heap";
+        sim.instrument = instrument;
+        sim.meanInterarrivalTime = 10.0;
+        sim.reportInterval = Double.POSITIVE_INFINITY;
+        sim.seed(seeds[0], seeds[1], seeds[2], seeds[3]);
+        sim.run(4, 86400.0);
+        return sim.simulationTime;
+    }
+
+    @Benchmark
+    public double day(Setting s) {
+        return run(s.instrument);
+    }
+
+    @Benchmark
+    public double paired(Overhead o) {
+        boolean first = o.onFirst;
+        o.onFirst = !first;
+        long t0 = System.nanoTime();
+        double a = run(first);
+        long t1 = System.nanoTime();
+        double b = run(!first);
+        long t2 = System.nanoTime();
+        long on = first ? t1 - t0 : t2 - t1, off = first ? t2 - t1 : t1 - t0;
+        o.offMillis += off * 1e-6;
+        o.extraMillis += (on - off) * 1e-6;
+        return a + b;
+    }
+}
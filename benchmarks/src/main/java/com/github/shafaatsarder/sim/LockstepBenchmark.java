@@ -0,0 +1,39 @@
+package com.github.shafaatsarder.sim;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The lockstep engine against the object engine: 256 replications of a day
+ * with 3 pumps on one thread, giving the same rows either way. batch = 0 is
+ * Replications.runAll; otherwise Lockstep.runAll with that many replications
+ * per lockstep batch.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class LockstepBenchmark {
+
+    @Param({"0", "1", "64"})
+    public int batch;
+
+    @Param({"legacy", "L64X128MixRandom"})
+    public String rng;
+
+    private final Sim template = new Sim();
+
+    @Setup
+    public void setUp() {
+        template.rngName = rng;
+    }
+
+    @Benchmark
+    public double[][] replications() {
+        if (batch == 0) return Replications.runAll(template, 3, 86400.0, 256, 11, 1);
+        return Lockstep.runAll(template, 3, 86400.0, 256, 11, 1, batch);
+    }
+}
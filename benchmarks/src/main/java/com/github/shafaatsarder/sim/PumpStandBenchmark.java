@@ -0,0 +1,32 @@
+package com.github.shafaatsarder.sim;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/** PumpStand take/release pairs. */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PumpStandBenchmark {
+
+    @Param({"1", "16", "256"})
+    public int pumps;
+
+    private Sim.PumpStand stand;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        stand = new Sim.PumpStand(new Sim(), pumps);
+    }
+
+    @Benchmark
+    public Sim.Pump takeRelease() {
+        Sim.Pump p = stand.takeAvailablePump();
+        stand.releasePump(p);
+        return p;
+    }
+}
@@ -0,0 +1,55 @@
+package com.github.shafaatsarder.sim;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Whole silent runs of the station for one simulated day. The primary score is
+ * runs per second; the "events" counter gives events per second.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class SimBenchmark {
+
+    @Param({"1", "4", "32"})
+    public int pumps;
+
+    @Param({"10", "50"})
+    public double meanInterarrivalTime;
+
+    @Param({"list", "heap", "calendar"})
+    public String fes;
+
+    @Param({"legacy", "L64X128MixRandom", "Xoshiro256PlusPlus"})
+    public String rng;
+
+    // Events executed, reported by JMH as a rate next to the score
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Events {
+        public long events;
+    }
+
+    private long run;   // new seeds for every run
+
+    @Benchmark
+    public double day(Events counter) {
+        Sim sim = new Sim();
+        sim.fesName = fes;
+        sim.rngName = rng;
+        sim.meanInterarrivalTime = meanInterarrivalTime;
+        sim.reportInterval = Double.POSITIVE_INFINITY;
+        long[] seeds = Replications.seedsFor(7, (int) run++);
+        sim.seed(seeds[0], seeds[1], seeds[2], seeds[3]);
+        sim.start(pumps, 86400.0);
+        long n = 1;
+        while (sim.step()) n++;
+        counter.events += n;
+        return sim.simulationTime;
+    }
+}
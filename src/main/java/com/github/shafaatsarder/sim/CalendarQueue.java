@@ -0,0 +1,157 @@
+package com.github.shafaatsarder.sim; // package for your classes
+
+/**
+ * Brown's calendar queue (CACM 31(10), 1988).
+ * <p>
+ * Time is cut into "days" of fixed width that wrap around a "year" of buckets;
+ * each bucket holds a short sorted list. Insert and take are O(1) on average as
+ * long as the day width matches the spacing of the events, so the queue doubles
+ * or halves its bucket count as it grows or shrinks and re-estimates the width
+ * from the events at the front each time. Growing happens above two events per
+ * bucket and shrinking below one per four, so a set whose size wobbles (every
+ * event is taken out before its successor goes in) does not thrash.
+ * <p>
+ * Equal times always hash to the same bucket and are kept in insertion order
+ * there, so ties come out FIFO exactly like {@link Sim.EventList}.
+ */
+class CalendarQueue implements FutureEventSet {
+    private static final int MIN_BUCKETS = 16;  // never shrink below this
+    private static final int WIDTH_SAMPLE = 25; // events sampled when re-estimating width
+
+    // Node in a bucket list (sorted by time, FIFO among equal times)
+    private static class Node {
+        Sim.Event data;   // the event
+        double time;      // its time when inserted
+        long day;         // virtual bucket number = floor(time / width)
+        Node next;        // next node in this bucket
+    }
+
+    private Node[] buckets = new Node[MIN_BUCKETS]; // one list per day of the year
+    private int mask = MIN_BUCKETS - 1;             // bucket = day & mask (bucket count is 2^k)
+    private double width = 1.0;                     // length of one day in simulated seconds
+    private int size;                               // number of pending events
+    private long currentDay;                        // day being scanned by takeNextEvent
+    private Node free;                              // recycled nodes (avoids garbage)
+    private boolean resizing;                       // suppress nested resizes
+    private Node[] drained = new Node[0];           // scratch space for resize
+    private final Node[][] bucketArrays = new Node[31][]; // emptied bucket arrays, by log2 size
+
+    @Override
+    public int size() { return size; }
+
+    @Override
+    public double nextTime() { return (size > 0) ? buckets[firstBucket()].time : Double.POSITIVE_INFINITY; }
+
+    private long dayOf(double t) { return (long) Math.floor(t / width); }
+
+    @Override
+    public void insert(Sim.Event e) {
+        Node n = free;                               // reuse a node if we have one
+        if (n != null) free = n.next; else n = new Node();
+        n.data = e;
+        n.time = e.getTime();
+        link(n);
+        if (!resizing && size > 2 * buckets.length) // too crowded -> more buckets
+            resize(buckets.length * 2);
+    }
+
+    // Put a node into its bucket after every node with time <= its own
+    private void link(Node n) {
+        n.day = dayOf(n.time);
+        int b = (int) (n.day & mask);
+        Node head = buckets[b];
+        if (head == null || n.time < head.time) {   // new head of this bucket
+            n.next = head;
+            buckets[b] = n;
+        } else {
+            Node behind = head;
+            while (behind.next != null && behind.next.time <= n.time) behind = behind.next;
+            n.next = behind.next;
+            behind.next = n;
+        }
+        if (size == 0 || n.day < currentDay) currentDay = n.day; // earlier than scan point
+        size++;
+    }
+
+    @Override
+    public Sim.Event takeNextEvent() {
+        if (size == 0) {                             // nothing left -> error
+            System.out.println("Error! ran out of events");
+            return null;
+        }
+        Node n = unlinkFirst();
+        Sim.Event e = n.data;
+        n.data = null;                               // recycle node
+        n.next = free;
+        free = n;
+        if (!resizing && buckets.length > MIN_BUCKETS && size < buckets.length / 4)
+            resize(buckets.length / 2);              // too sparse -> fewer buckets
+        return e;
+    }
+
+    // Remove the earliest node; size must be > 0
+    private Node unlinkFirst() {
+        int b = firstBucket();
+        Node head = buckets[b];
+        buckets[b] = head.next;
+        size--;
+        return head;
+    }
+
+    // Bucket whose head is the earliest node, moving currentDay up to it; size must be > 0
+    private int firstBucket() {
+        for (int scanned = 0; scanned < buckets.length; scanned++, currentDay++) {
+            int b = (int) (currentDay & mask);
+            Node head = buckets[b];
+            if (head != null && head.day <= currentDay) return b; // event falls in today
+        }
+        // A whole year was empty: jump straight to the earliest head (direct search)
+        Node best = null;
+        int bestBucket = 0;
+        for (int b = 0; b < buckets.length; b++) {
+            Node head = buckets[b];
+            if (head != null && (best == null || head.time < best.time)) {
+                best = head;
+                bestBucket = b;
+            }
+        }
+        currentDay = best.day;
+        return bestBucket;
+    }
+
+    // Rebuild with a new bucket count and a freshly estimated day width
+    private void resize(int newBuckets) {
+        resizing = true;
+        int n = size;
+        if (drained.length < n) drained = new Node[2 * n];
+        for (int i = 0; i < n; i++) drained[i] = unlinkFirst(); // in time order, ties FIFO
+
+        width = estimateWidth(drained, n);
+        bucketArrays[Integer.numberOfTrailingZeros(buckets.length)] = buckets; // all empty now
+        int k = Integer.numberOfTrailingZeros(newBuckets);
+        buckets = (bucketArrays[k] != null) ? bucketArrays[k] : new Node[newBuckets];
+        bucketArrays[k] = null;
+        mask = newBuckets - 1;
+        for (int i = 0; i < n; i++) {                          // same order -> ties stay FIFO
+            link(drained[i]);
+            drained[i] = null;
+        }
+        resizing = false;
+    }
+
+    // Brown's heuristic: 3x the mean gap between the first few events, ignoring big gaps
+    private double estimateWidth(Node[] sorted, int n) {
+        int m = Math.min(n, WIDTH_SAMPLE);
+        if (m < 2) return width;
+        double total = sorted[m - 1].time - sorted[0].time;
+        double avg = total / (m - 1);
+        double sum = 0.0;
+        int count = 0;
+        for (int i = 1; i < m; i++) {
+            double gap = sorted[i].time - sorted[i - 1].time;
+            if (gap <= 2.0 * avg) { sum += gap; count++; }
+        }
+        double w = (count > 0) ? 3.0 * sum / count : 0.0;
+        return (w > 0.0) ? w : width;                // all ties -> keep old width
+    }
+}
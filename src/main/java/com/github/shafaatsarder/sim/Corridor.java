@@ -0,0 +1,183 @@
+package com.github.shafaatsarder.sim; // package for your classes
+
+import java.io.PrintStream;                       // report output
+import java.util.Arrays;                          // growing the outboxes
+import java.util.concurrent.ExecutionException;   // failure inside a worker
+import java.util.concurrent.ForkJoinPool;         // pool that runs the stations
+import java.util.random.RandomGenerator;          // per-station streams
+import java.util.stream.IntStream;                // parallel loop over stations
+
+/**
+ * A corridor of stations along one road: a car that balks at station i drives
+ * on and reaches station i+1 travelTime[i] seconds later, with the same demand.
+ * A car that balks at the last station is lost.
+ * <p>
+ * Every station is its own {@link Sim} context (event list, queue, pumps,
+ * streams), so stations can advance on different threads. They are kept in
+ * step conservatively with fixed time windows: the lookahead L is the shortest
+ * travel time. A car leaving during [w, w+L) cannot arrive anywhere before w+L.
+ * So in each window every station runs its events before w+L in parallel,
+ * collecting the cars that drive on. At the barrier those cars are scheduled
+ * downstream as {@link Sim.ThroughArrival} events, station by station in order.
+ * Stations therefore never roll back or block on each other. Results are the
+ * same for any thread count.
+ * <p>
+ * Station i draws from replication i of {@link RandomStreams}.
+ * <p>
+ * Usage: {@code Corridor key=value ...} with keys stations, pumps, travel (one
+ * value, or a comma-separated list with one per road segment), end, seed, threads.
+ */
+public class Corridor {
+
+    // ===== Corridor parameters =====
+    public int numStations = 10;             // stations along the road
+    public int numPumps = 3;                 // pumps at every station
+    public double[] travelTime = {300.0};    // seconds between neighbours (one value = all segments)
+    public double endingTime = 86400.0;      // horizon of every station
+    public long baseSeed = 1;                // station i uses replication i of this seed
+    public int threads = Runtime.getRuntime().availableProcessors();
+
+    // One station and the cars it sends on to the next one
+    public static class Station {
+        public final int index;              // position along the road
+        public final Sim sim;                // the station's own context
+        final double travelTime;             // to the next station
+        private double[] outTimes = new double[16];  // when each passing car left (this window)
+        private double[] outLitres = new double[16]; // and its demand
+        private int outCount;
+        long passedOn;                       // cars sent downstream
+        long received;                       // cars that came from upstream
+        boolean finished;                    // EndOfSimulation has run
+
+        Station(int index, Sim sim, double travelTime) {
+            this.index = index;
+            this.sim = sim;
+            this.travelTime = travelTime;
+        }
+
+        // Hook from Arrival: a car balked here and drives on
+        public void passOn(double litres, double now) {
+            if (outCount == outTimes.length) {
+                outTimes = Arrays.copyOf(outTimes, 2 * outCount);
+                outLitres = Arrays.copyOf(outLitres, 2 * outCount);
+            }
+            outTimes[outCount] = now;
+            outLitres[outCount++] = litres;
+            passedOn++;
+        }
+
+        public long getPassedOn() { return passedOn; }
+        public long getReceived() { return received; }
+    }
+
+    // ===== Main =====
+    public static void main(String[] args) {
+        Corridor corridor = new Corridor();
+        for (String arg : args) {
+            String[] kv = Sweep.keyValue(arg);
+            String key = kv[0], value = kv[1];
+            switch (key) {
+                case "stations": corridor.numStations = Integer.parseInt(value); break;
+                case "pumps":    corridor.numPumps = Integer.parseInt(value); break;
+                case "travel":   corridor.travelTime = Sweep.parseList(value); break;
+                case "end":      corridor.endingTime = Double.parseDouble(value); break;
+                case "seed":     corridor.baseSeed = Long.parseLong(value); break;
+                case "threads":  corridor.threads = Integer.parseInt(value); break;
+                default: throw new IllegalArgumentException("Unknown option " + key);
+            }
+        }
+        long t0 = System.nanoTime();
+        Station[] stations = corridor.run(new Sim());
+        double seconds = (System.nanoTime() - t0) * 1e-9;
+        System.out.println(corridor.numStations + " stations of " + corridor.numPumps + " pumps to t="
+                + corridor.endingTime + " (base seed " + corridor.baseSeed + ", "
+                + corridor.threads + " threads, " + String.format("%.2f s", seconds) + ")");
+        print(System.out, stations);
+    }
+
+    // Travel time from station i to i+1
+    double travelTime(int i) {
+        if (travelTime.length == 1) return travelTime[0];
+        if (travelTime.length != numStations - 1)
+            throw new IllegalArgumentException("Need one travel time or " + (numStations - 1));
+        return travelTime[i];
+    }
+
+    // Simulate the whole corridor; station i comes back at index i
+    public Station[] run(Sim template) {
+        if (numStations < 1) throw new IllegalArgumentException("Need at least one station");
+        double lookahead = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < numStations - 1; i++) lookahead = Math.min(lookahead, travelTime(i));
+        if (!(lookahead > 0)) throw new IllegalArgumentException("Travel times must be positive");
+        if (template.estimateGradients)
+            throw new IllegalArgumentException("Gradients do not cover corridor through-traffic");
+
+        RandomStreams streams = new RandomStreams(template.rngName, baseSeed);
+        Station[] stations = new Station[numStations];
+        for (int i = 0; i < numStations; i++) {
+            Sim sim = new Sim(template);                   // silent, own streams
+            sim.reportInterval = Double.POSITIVE_INFINITY;
+            RandomGenerator[] s = streams.forReplication(i);
+            sim.seed(s);
+            boolean last = (i == numStations - 1);
+            stations[i] = new Station(i, sim, last ? Double.POSITIVE_INFINITY : travelTime(i));
+            if (!last) sim.onward = stations[i];
+            sim.start(numPumps, endingTime);
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, threads));
+        try {
+            for (double windowEnd = lookahead; ; windowEnd += lookahead) {
+                final double limit = windowEnd;
+                pool.submit(() -> IntStream.range(0, numStations).parallel().forEach(i -> {
+                    Station st = stations[i];
+                    if (!st.finished) st.finished = !st.sim.stepUntil(limit);
+                })).get();
+                boolean done = true;
+                for (int i = 0; i < numStations; i++) {      // barrier: deliver in station order
+                    Station st = stations[i];
+                    if (i + 1 < numStations) deliver(st, stations[i + 1]);
+                    done &= st.finished;
+                }
+                if (done) break;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Corridor interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Station failed", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+        return stations;
+    }
+
+    // Schedule the window's passing cars at the next station (dropped if they arrive too late)
+    private void deliver(Station from, Station to) {
+        for (int k = 0; k < from.outCount; k++) {
+            double t = from.outTimes[k] + from.travelTime;  // >= the next window's start
+            if (to.finished || t >= endingTime) continue;
+            to.sim.eventList.insert(new Sim.ThroughArrival(t, from.outLitres[k]));
+            to.received++;
+        }
+        from.outCount = 0;
+    }
+
+    // Per-station table and corridor totals
+    public static void print(PrintStream out, Station[] stations) {
+        out.printf("%7s %8s %8s %8s %8s %10s %12s%n", "Station", "Cars", "From up", "Balked",
+                "Sent on", "Avg wait", "Profit");
+        double profit = 0.0;
+        long cars = 0;
+        for (Station st : stations) {
+            double[] v = st.sim.stats.values();
+            out.printf("%7d %8d %8d %8d %8d %10.3f %12.2f%n", st.index, (long) v[0], st.received,
+                    (long) v[4], st.passedOn, v[5], v[Sim.Statistics.TOTAL_PROFIT]);
+            profit += v[Sim.Statistics.TOTAL_PROFIT];
+            cars += (long) v[0] - st.received;
+        }
+        Station last = stations[stations.length - 1];
+        out.printf("Total: %d cars, %d lost at the end of the road, profit %.2f%n",
+                cars, (long) last.sim.stats.values()[4], profit);
+    }
+}
@@ -0,0 +1,334 @@
+package com.github.shafaatsarder.sim; // package for your classes
+
+import java.io.PrintStream;                       // summary output
+import java.util.Arrays;                          // growing the lines
+
+/**
+ * Runs the pumps and waiting lines of one context under a {@link Forecourt}
+ * layout, in place of the single free-pump stack and single line.
+ * <p>
+ * Pumps that dispense the same set of grades form a type. Each type keeps its
+ * own free set: a stack, or under SHORTEST a heap with the fastest pump on top.
+ * Each grade keeps a list of the types that dispense it, most specific first.
+ * An arriving car therefore finds a compatible free pump by looking at the top
+ * of a few sets, whatever the number of pumps. Cars wait in the line for their
+ * grade. A line is a ring buffer in arrival order, or a heap keyed on litres
+ * under SHORTEST, and stores numbers only, like CarQueue. A freed pump looks at
+ * the heads of the lines it can serve; heads that arrived at the same time go
+ * in grade order. Balking looks at the car's own line. The total
+ * number waiting is still counted by sim.carQueue, so the no-queue fraction,
+ * metrics and monitor hooks see the whole forecourt.
+ * <p>
+ * With more than one grade, each car's grade is drawn from the litre stream
+ * right after its litres.
+ */
+class Dispatcher {
+    private final Sim sim;
+    private final Forecourt layout;
+    private final Sim.Pump[] pumps;         // every pump, by id
+    private final double[] speed;           // relative flow rate, by pump id
+    private final int[] typeOf;             // pump id -> type
+    private final int[] typeMask;           // grades each type dispenses
+    private final int[][] typesFor;         // grade -> compatible types, fewest grades first
+    private final int[][] free;             // per type: free pump ids (stack, or heap under SHORTEST)
+    private final int[] freeCount;
+    private final Line[] lines;             // one waiting line per grade
+
+    // Per-grade tallies for the summary
+    private final long[] cars, balked, served;
+    private final double[] waitSum;
+
+    public Dispatcher(Sim sim, Forecourt layout) {
+        int n = sim.pumpStand.getNumberOfPumps();
+        if (n != layout.getNumberOfPumps())
+            throw new IllegalArgumentException("The forecourt has " + layout.getNumberOfPumps()
+                    + " pumps but the run asks for " + n);
+        this.sim = sim;
+        this.layout = layout;
+        pumps = new Sim.Pump[n];
+        speed = layout.pumpSpeed.clone();
+        typeOf = new int[n];
+        int[] masks = new int[n];
+        int types = 0;
+        for (int id = 0; id < n; id++) {           // a type per distinct grade set, in order of first use
+            pumps[id] = sim.pumpStand.getPump(id);
+            pumps[id].setTimeFactor(1.0 / speed[id]);
+            int t = 0;
+            while (t < types && masks[t] != layout.pumpMask[id]) t++;
+            if (t == types) masks[types++] = layout.pumpMask[id];
+            typeOf[id] = t;
+        }
+        typeMask = Arrays.copyOf(masks, types);
+        free = new int[types][];
+        freeCount = new int[types];
+        for (int t = 0; t < types; t++) {
+            int size = 0;
+            for (int id = 0; id < n; id++) if (typeOf[id] == t) size++;
+            free[t] = new int[size];
+        }
+        for (int id = 0; id < n; id++) release(id); // all free; the last pump is taken first, as in PumpStand
+
+        int g = layout.getNumberOfGrades();
+        typesFor = new int[g][];
+        lines = new Line[g];
+        for (int k = 0; k < g; k++) {
+            int count = 0;
+            for (int t = 0; t < types; t++) if ((typeMask[t] & (1 << k)) != 0) count++;
+            int[] list = new int[count];
+            count = 0;
+            for (int t = 0; t < types; t++) if ((typeMask[t] & (1 << k)) != 0) list[count++] = t;
+            for (int i = 1; i < list.length; i++)  // insertion sort on grades dispensed (stable)
+                for (int j = i; j > 0 && Integer.bitCount(typeMask[list[j]]) < Integer.bitCount(typeMask[list[j - 1]]); j--) {
+                    int tmp = list[j]; list[j] = list[j - 1]; list[j - 1] = tmp;
+                }
+            typesFor[k] = list;
+            lines[k] = (layout.policy == Forecourt.Policy.SHORTEST) ? new Heap() : new Ring();
+        }
+        cars = new long[g];
+        balked = new long[g];
+        served = new long[g];
+        waitSum = new double[g];
+    }
+
+    // ===== Hooks from Arrival / Departure / Pump =====
+
+    // Grade of an arriving car (no draw with a single grade)
+    int drawGrade() {
+        if (lines.length == 1) return 0;
+        return layout.gradeFor(sim.litreVariates.next(sim.litreStream));
+    }
+
+    // A car of grade g arrived; the length of its line, for the balk decision
+    int arrived(int g) {
+        cars[g]++;
+        return lines[g].size;
+    }
+
+    void balked(int g) { balked[g]++; }
+
+    void serviceStarted(int g, double wait) {
+        served[g]++;
+        waitSum[g] += wait;
+    }
+
+    // A car that did not balk: start it at a compatible free pump, or queue it for its grade
+    void place(Sim.Car car) {
+        int g = car.getGrade();
+        int t = freeTypeFor(g);
+        if (t >= 0) {
+            pumps[take(t)].startService(car);
+        } else {
+            lines[g].add(car.getArrivalTime(), car.getLitresNeeded(), car.getServiceTime());
+            sim.recycle(car);                   // the line keeps only the numbers
+            sim.carQueue.countIn();             // total waiting, for stats and hooks
+        }
+    }
+
+    // The car a freed pump serves next (null = none it can serve)
+    Sim.Car nextCarFor(Sim.Pump pump) {
+        int best = -1;
+        for (int m = typeMask[typeOf[pump.getId()]]; m != 0; m &= m - 1) { // grades in priority order
+            int g = Integer.numberOfTrailingZeros(m);
+            Line line = lines[g];
+            if (line.size == 0) continue;
+            if (best < 0) {
+                best = g;
+                if (layout.policy == Forecourt.Policy.PRIORITY) break;
+            } else if (line.before(lines[best])) {
+                best = g;                       // earlier arrival, or fewer litres under SHORTEST
+            }
+        }
+        if (best < 0) return null;
+        Sim.Car c = sim.obtainCar();
+        lines[best].takeFirst(c);
+        c.setGrade(best);
+        sim.carQueue.countOut();
+        return c;
+    }
+
+    // A pump with nothing to serve goes back to its type's free set
+    void release(Sim.Pump pump) { release(pump.getId()); }
+
+    // ===== Free pump sets =====
+
+    // Type of the free pump an arriving car of grade g gets (-1 = none free)
+    private int freeTypeFor(int g) {
+        int best = -1;
+        for (int t : typesFor[g]) {
+            if (freeCount[t] == 0) continue;
+            if (layout.policy != Forecourt.Policy.SHORTEST) return t; // most specific type with a free pump
+            if (best < 0 || speed[free[t][0]] > speed[free[best][0]]) best = t; // fastest free pump
+        }
+        return best;
+    }
+
+    private int take(int t) {
+        int[] set = free[t];
+        if (layout.policy != Forecourt.Policy.SHORTEST) return set[--freeCount[t]]; // pop
+        int top = set[0];
+        int n = --freeCount[t];
+        int id = set[n];                        // sift the last pump down from the root
+        int i = 0;
+        while (2 * i + 1 < n) {
+            int c = 2 * i + 1;
+            if (c + 1 < n && faster(set[c + 1], set[c])) c++;
+            if (!faster(set[c], id)) break;
+            set[i] = set[c];
+            i = c;
+        }
+        set[i] = id;
+        return top;
+    }
+
+    private void release(int id) {
+        int t = typeOf[id];
+        int[] set = free[t];
+        int i = freeCount[t]++;
+        if (layout.policy == Forecourt.Policy.SHORTEST) {   // sift up
+            while (i > 0 && faster(id, set[(i - 1) / 2])) {
+                set[i] = set[(i - 1) / 2];
+                i = (i - 1) / 2;
+            }
+        }
+        set[i] = id;
+    }
+
+    private boolean faster(int a, int b) {
+        return speed[a] > speed[b] || (speed[a] == speed[b] && a < b);
+    }
+
+    // ===== Output =====
+
+    // Per-grade arrivals, balks and waits
+    public void printSummary(PrintStream out) {
+        out.println("Grades (" + layout.policy.name().toLowerCase() + " dispatch):");
+        out.printf("%12s %10s %10s %10s %12s%n", "Grade", "Cars", "Balked", "Served", "Avg wait");
+        for (int g = 0; g < lines.length; g++)
+            out.printf("%12s %10d %10d %10d %12.3f%n", layout.getGrade(g), cars[g], balked[g], served[g],
+                    (served[g] > 0) ? waitSum[g] / served[g] : 0.0);
+    }
+
+    // ===== Line =====
+    // Waiting cars of one grade in parallel primitive arrays. The front car is
+    // the earliest arrival, or the one needing fewest litres under SHORTEST.
+    abstract static class Line {
+        double[] arrivalTimes = new double[16];
+        double[] litres = new double[16];
+        double[] serviceTimes = new double[16];
+        int size;
+
+        abstract int head();                    // slot of the front car
+        abstract void add(double arrival, double l, double service);
+        abstract void remove();                 // drop the front car
+
+        // Does this line's front car go before the front car of `other`?
+        // (equal arrival times keep the grade order)
+        boolean before(Line other) {
+            int i = head(), j = other.head();
+            return arrivalTimes[i] < other.arrivalTimes[j];
+        }
+
+        // Copy the front car into c and remove it
+        void takeFirst(Sim.Car c) {
+            int i = head();
+            c.setArrivalTime(arrivalTimes[i]);
+            c.setLitresNeeded(litres[i]);
+            c.setServiceTime(serviceTimes[i]);
+            remove();
+        }
+    }
+
+    // Arrival order: a ring buffer, as in CarQueue (capacity is a power of two)
+    static final class Ring extends Line {
+        private int head;
+        private int mask = 15;                  // capacity - 1
+
+        int head() { return head; }
+
+        void add(double arrival, double l, double service) {
+            if (size == arrivalTimes.length) grow();
+            int tail = (head + size++) & mask;
+            arrivalTimes[tail] = arrival;
+            litres[tail] = l;
+            serviceTimes[tail] = service;
+        }
+
+        void remove() {
+            head = (head + 1) & mask;
+            size--;
+        }
+
+        private void grow() {
+            int n = arrivalTimes.length;
+            double[] t = new double[2 * n];
+            double[] l = new double[2 * n];
+            double[] s = new double[2 * n];
+            for (int i = 0; i < size; i++) {
+                t[i] = arrivalTimes[(head + i) & mask];
+                l[i] = litres[(head + i) & mask];
+                s[i] = serviceTimes[(head + i) & mask];
+            }
+            arrivalTimes = t;
+            litres = l;
+            serviceTimes = s;
+            head = 0;
+            mask = 2 * n - 1;
+        }
+    }
+
+    // Fewest litres first, then earliest arrival: a binary heap
+    static final class Heap extends Line {
+        int head() { return 0; }
+
+        @Override
+        boolean before(Line other) {
+            return precedes(0, other, 0);
+        }
+
+        // Does slot i of this line go before slot j of `other`?
+        private boolean precedes(int i, Line other, int j) {
+            if (litres[i] != other.litres[j]) return litres[i] < other.litres[j];
+            return arrivalTimes[i] < other.arrivalTimes[j];
+        }
+
+        void add(double arrival, double l, double service) {
+            if (size == arrivalTimes.length) grow();
+            int i = size++;
+            while (i > 0) {                     // sift up
+                int p = (i - 1) / 2;
+                if (!(l < litres[p] || (l == litres[p] && arrival < arrivalTimes[p]))) break;
+                move(p, i);
+                i = p;
+            }
+            arrivalTimes[i] = arrival;
+            litres[i] = l;
+            serviceTimes[i] = service;
+        }
+
+        void remove() {
+            int n = --size;
+            int i = 0;
+            while (2 * i + 1 < n) {             // sift the last car down from the root
+                int k = 2 * i + 1;
+                if (k + 1 < n && precedes(k + 1, this, k)) k++;
+                if (!precedes(k, this, n)) break;
+                move(k, i);
+                i = k;
+            }
+            move(n, i);
+        }
+
+        private void move(int from, int to) {
+            arrivalTimes[to] = arrivalTimes[from];
+            litres[to] = litres[from];
+            serviceTimes[to] = serviceTimes[from];
+        }
+
+        private void grow() {
+            int n = 2 * arrivalTimes.length;
+            arrivalTimes = Arrays.copyOf(arrivalTimes, n);
+            litres = Arrays.copyOf(litres, n);
+            serviceTimes = Arrays.copyOf(serviceTimes, n);
+        }
+    }
+}
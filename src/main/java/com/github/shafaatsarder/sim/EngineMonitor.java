@@ -0,0 +1,179 @@
+package com.github.shafaatsarder.sim; // package for your classes
+
+import java.io.PrintStream;                       // end-of-run summary
+import java.lang.management.ManagementFactory;    // platform MBean server
+import java.util.concurrent.atomic.AtomicInteger; // unique MBean names
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import jdk.jfr.Category;                          // custom JFR event
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Event-loop counters for one simulation context, published through JFR and
+ * JMX.
+ * <p>
+ * The loop calls {@link #eventDone} after every event and CarQueue calls
+ * {@link #queueLength} on every insert. These hooks only bump plain counters.
+ * The clock is read every {@link #CHECK_EVERY} events, and once per period
+ * (-Dsim.instrument.period, milliseconds, default 100) a sample is taken. A
+ * sample publishes the counters to the MBean's volatile fields and commits an
+ * {@link Sample} JFR event when a recording wants it. With
+ * instrumentation off, the context has no monitor and the hooks are a null check.
+ * <p>
+ * The MBean is registered as
+ * {@code com.github.shafaatsarder.sim:type=Engine,name=N} at the first sample
+ * and unregistered when the EndOfSimulation has run. Runs shorter than one
+ * period are never registered: JMX clients could hardly see them, and the
+ * registration would cost more than the rest of the instrumentation.
+ */
+class EngineMonitor implements EngineMonitorMBean {
+    static final int CHECK_EVERY = 1024;              // events between clock reads (power of two)
+    private static final AtomicInteger INSTANCES = new AtomicInteger();
+
+    // JFR event: one per sample period
+    @Name("com.github.shafaatsarder.sim.EngineSample")
+    @Label("Engine Sample")
+    @Category("Gas Station Simulation")
+    @Description("Event-loop counters of one simulation context")
+    public static class Sample extends jdk.jfr.Event {
+        @Label("Context") public String context;
+        @Label("Simulation Time") public double simulationTime;
+        @Label("Arrivals") public long arrivals;
+        @Label("Departures") public long departures;
+        @Label("Reports") public long reports;
+        @Label("End Of Simulations") public long endOfSimulations;
+        @Label("Other Events") public long otherEvents;
+        @Label("Events Per Second") public double eventsPerSecond;
+        @Label("Future Event List Size") public int futureEventListSize;
+        @Label("Queue High Water") public int queueHighWater;
+    }
+
+    private final Sim sim;
+    private final String name;                        // MBean name / JFR context label
+    private final long periodNanos;                   // wall time between samples
+    private ObjectName objectName;                    // registered MBean (null before the first sample or if JMX refused)
+    private boolean registered;                       // registration tried
+
+    // Loop-thread counters
+    private long arrivals, departures, reports, ends, others;
+    private int queueHighWater;
+    private long events;                              // all events
+    private long nextSample;                          // nanoTime of the next sample
+    private long lastSampleNanos;
+    private long lastSampleEvents;
+    private final long startNanos;
+
+    // Published at each sample, read by JMX threads
+    private volatile long pArrivals, pDepartures, pReports, pEnds, pOthers;
+    private volatile double pRate, pSimTime;
+    private volatile int pFel, pQueue;
+
+    EngineMonitor(Sim sim) {
+        this.sim = sim;
+        this.name = Integer.toString(INSTANCES.incrementAndGet());
+        this.periodNanos = Long.getLong("sim.instrument.period", 100L) * 1_000_000L;
+        startNanos = lastSampleNanos = System.nanoTime();
+        nextSample = startNanos + periodNanos;
+    }
+
+    // Make the counters visible to JMX, once the run has lasted a period
+    private void register() {
+        registered = true;
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            objectName = new ObjectName("com.github.shafaatsarder.sim:type=Engine,name=" + name);
+            server.registerMBean(this, objectName);
+        } catch (JMException | SecurityException e) {
+            objectName = null;                        // counters still work, JMX just can't see them
+        }
+    }
+
+    // After every event
+    void eventDone(Sim.Event e) {
+        if (e instanceof Sim.Departure) departures++;
+        else if (e instanceof Sim.Arrival) arrivals++;
+        else if (e instanceof Sim.Report) reports++;
+        else if (e instanceof Sim.EndOfSimulation) ends++;
+        else others++;
+        if ((++events & (CHECK_EVERY - 1)) == 0) {
+            long now = System.nanoTime();
+            if (now >= nextSample) {
+                if (!registered) register();
+                sample(now);
+            }
+        }
+    }
+
+    // After every insert into the car queue
+    void queueLength(int length) {
+        if (length > queueHighWater) queueHighWater = length;
+    }
+
+    // Publish the counters (JMX) and commit a JFR sample if one is being recorded
+    void sample(long now) {
+        double seconds = (now - lastSampleNanos) * 1e-9;
+        pRate = (seconds > 0) ? (events - lastSampleEvents) / seconds : 0.0;
+        lastSampleNanos = now;
+        lastSampleEvents = events;
+        nextSample = now + periodNanos;
+        pArrivals = arrivals;
+        pDepartures = departures;
+        pReports = reports;
+        pEnds = ends;
+        pOthers = others;
+        pFel = sim.eventList.size();
+        pQueue = queueHighWater;
+        pSimTime = sim.simulationTime;
+
+        Sample s = new Sample();
+        if (s.isEnabled()) {
+            s.context = name;
+            s.simulationTime = pSimTime;
+            s.arrivals = arrivals;
+            s.departures = departures;
+            s.reports = reports;
+            s.endOfSimulations = ends;
+            s.otherEvents = others;
+            s.eventsPerSecond = pRate;
+            s.futureEventListSize = pFel;
+            s.queueHighWater = queueHighWater;
+            s.commit();
+        }
+    }
+
+    // The run is over: last sample, then drop the MBean
+    void finish() {
+        long now = System.nanoTime();
+        sample(now);
+        pRate = (now > startNanos) ? events / ((now - startNanos) * 1e-9) : 0.0; // whole-run rate
+        if (objectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            } catch (JMException e) {
+                // already gone
+            }
+            objectName = null;
+        }
+    }
+
+    public void printSummary(PrintStream out) {
+        out.println();
+        out.printf("Events: %d (arrivals %d, departures %d, reports %d, ends %d, other %d), %.0f events/s%n",
+                getEventsProcessed(), pArrivals, pDepartures, pReports, pEnds, pOthers, pRate);
+        out.printf("Max queue: %d, pending events at the end: %d%n", pQueue, pFel);
+    }
+
+    @Override public long getArrivals() { return pArrivals; }
+    @Override public long getDepartures() { return pDepartures; }
+    @Override public long getReports() { return pReports; }
+    @Override public long getEndOfSimulations() { return pEnds; }
+    @Override public long getOtherEvents() { return pOthers; }
+    @Override public long getEventsProcessed() { return pArrivals + pDepartures + pReports + pEnds + pOthers; }
+    @Override public double getEventsPerSecond() { return pRate; }
+    @Override public int getFutureEventListSize() { return pFel; }
+    @Override public int getQueueHighWater() { return pQueue; }
+    @Override public double getSimulationTime() { return pSimTime; }
+}
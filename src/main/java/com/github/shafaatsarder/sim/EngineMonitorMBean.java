@@ -0,0 +1,18 @@
+package com.github.shafaatsarder.sim; // package for your classes
+
+/**
+ * JMX view of one context's event loop (see {@link EngineMonitor}). Values are
+ * those of the latest sample, so they lag the loop by up to one sample period.
+ */
+public interface EngineMonitorMBean {
+    long getArrivals();            // Arrival events run
+    long getDepartures();          // Departure events run
+    long getReports();             // Report events run
+    long getEndOfSimulations();    // EndOfSimulation events run
+    long getOtherEvents();         // through-traffic, trace and other events
+    long getEventsProcessed();     // all of the above
+    double getEventsPerSecond();   // wall-clock rate over the last sample period
+    int getFutureEventListSize();  // pending events
+    int getQueueHighWater();       // longest car queue so far
+    double getSimulationTime();    // model clock
+}
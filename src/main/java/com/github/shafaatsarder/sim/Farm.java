@@ -0,0 +1,663 @@
+package com.github.shafaatsarder.sim; // package for your classes
+
+import java.io.BufferedInputStream;               // socket streams
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.PrintStream;                       // progress and report output
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;                     // coordinator end
+import java.net.Socket;                           // one connection per worker
+import java.net.SocketException;
+import java.nio.file.Path;                        // java binary for local workers
+import java.util.ArrayDeque;                      // chunk deques
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;   // failure inside a worker's pool
+import java.util.concurrent.ForkJoinPool;         // threads of one worker JVM
+import java.util.stream.IntStream;
+
+/**
+ * Replications of many scenarios farmed out to worker JVMs over sockets, on
+ * one box or several.
+ * <p>
+ * The coordinator cuts every scenario's replications into chunks of
+ * chunkSize and listens on a port. Workers connect to it, from
+ * {@link #launchWorker} or {@code Farm worker host=... port=...} on another
+ * box, and receive the scenarios once. Each worker holds a deque of chunks:
+ * it runs them from the front while the next ones are already queued, so it
+ * never waits a round trip between chunks. The coordinator mirrors every
+ * deque. A worker down to its last chunk gets more: first a fair share of the
+ * chunks nobody holds yet, then, once those are gone, it steals. The
+ * coordinator asks the worker with the longest deque to give up the back half
+ * of it; the victim hands back whichever of those it has not started, and they
+ * go to the thief. So chunks spread over however many workers are connected,
+ * and workers that join late or run fast take over queued work from slow ones.
+ * <p>
+ * Results are merged incrementally into running summaries as chunks come back.
+ * Rows are also kept by replication number, and the final tables are built in
+ * that order. Replication r of every scenario uses the same {@link RandomStreams}
+ * substream, as in {@link Sweep}. So the rows are bit-identical to
+ * {@link Replications#runAll} with the same base seed, whatever the number of
+ * workers, chunk size or failures.
+ * <p>
+ * Workers send a heartbeat every quarter of timeoutSeconds, also while a long
+ * chunk runs. A worker is lost when its connection fails or it is silent for
+ * timeoutSeconds, for example because its process was killed; a chunk that
+ * simply takes longer than that is fine. The lost worker's deque goes back to
+ * the unassigned pool, and other workers pick it up. A chunk is counted once,
+ * however many workers ran it. The coordinator gives up only if no worker is
+ * connected for timeoutSeconds.
+ * <p>
+ * Workers run the plain model: templates with traces, rate profiles,
+ * forecourts, gradients, metrics or run-length control are refused.
+ * <p>
+ * Usage: {@code Farm key=value ...} with keys pumps=lo..hi, mean, balkA, balkB,
+ * balkC (comma-separated lists; one scenario per combination), end, reps, seed,
+ * chunk, workers (local worker JVMs to launch), port, threads (per worker),
+ * timeout (seconds). {@code Farm worker host=... port=... [threads=...]} runs a
+ * worker.
+ */
+public class Farm {
+
+    // ===== Farm parameters =====
+    public double endingTime = 86400.0;      // horizon of each replication
+    public int replications = 100;           // per scenario
+    public long baseSeed = 1;                // common random numbers come from this seed
+    public int chunkSize = 8;                // replications per chunk
+    public int port = 0;                     // coordinator port (0 = any free port)
+    public int timeoutSeconds = 600;         // silence after which a worker counts as lost (heartbeats every quarter)
+    public PrintStream progress;             // one line per merged chunk (null = quiet)
+
+    // Wire protocol (DataOutputStream, big-endian)
+    private static final int MAGIC = 0x46524D31;       // "FRM1", first thing the coordinator sends
+    private static final byte CHUNK = 1, RESULT = 2, DONE = 3, ERROR = 4; // chunk to queue, its rows, stop, failure
+    private static final byte STEAL = 5, RELEASED = 6, HEARTBEAT = 7;     // give up queued chunks, those given up, alive
+
+    // One configuration to replicate
+    public static class Scenario {
+        public final Sim template;           // model parameters
+        public final int numPumps;
+
+        public Scenario(Sim template, int numPumps) {
+            this.template = template;
+            this.numPumps = numPumps;
+        }
+    }
+
+    // Replications [from, to) of one scenario
+    private static final class Chunk {
+        final int id, scenario, from, to;
+        boolean done;                        // result merged (later copies are ignored)
+
+        Chunk(int id, int scenario, int from, int to) {
+            this.id = id;
+            this.scenario = scenario;
+            this.from = from;
+            this.to = to;
+        }
+    }
+
+    // ===== Main =====
+    public static void main(String[] args) throws IOException {
+        if (args.length > 0 && args[0].equals("worker")) {
+            String host = "127.0.0.1";
+            int port = -1, threads = Runtime.getRuntime().availableProcessors();
+            for (int i = 1; i < args.length; i++) {
+                String[] kv = Sweep.keyValue(args[i]);
+                String key = kv[0], value = kv[1];
+                switch (key) {
+                    case "host":    host = value; break;
+                    case "port":    port = Integer.parseInt(value); break;
+                    case "threads": threads = Integer.parseInt(value); break;
+                    default: throw new IllegalArgumentException("Unknown option " + key);
+                }
+            }
+            if (port < 0) throw new IllegalArgumentException("Workers need port=<coordinator port>");
+            serve(host, port, threads);
+            return;
+        }
+
+        Farm farm = new Farm();
+        Sim template = new Sim();
+        Sweep.Grid grid = new Sweep.Grid(template);
+        int[] pumps = {1, 10};
+        int workers = 2, threads = 1;
+        for (String arg : args) {
+            String[] kv = Sweep.keyValue(arg);
+            String key = kv[0], value = kv[1];
+            if (grid.parse(key, value)) continue;
+            switch (key) {
+                case "pumps":   pumps = Sweep.parseRange(value); break;
+                case "end":     farm.endingTime = Double.parseDouble(value); break;
+                case "reps":    farm.replications = Integer.parseInt(value); break;
+                case "seed":    farm.baseSeed = Long.parseLong(value); break;
+                case "chunk":   farm.chunkSize = Integer.parseInt(value); break;
+                case "port":    farm.port = Integer.parseInt(value); break;
+                case "timeout": farm.timeoutSeconds = Integer.parseInt(value); break;
+                case "workers": workers = Integer.parseInt(value); break;
+                case "threads": threads = Integer.parseInt(value); break;
+                default: throw new IllegalArgumentException("Unknown option " + key);
+            }
+        }
+
+        List<Scenario> scenarios = new ArrayList<>();
+        for (Sim point : grid.points(template))
+            for (int p = pumps[0]; p <= pumps[1]; p++) scenarios.add(new Scenario(point, p));
+        farm.progress = System.err;
+        long t0 = System.nanoTime();
+        List<Process> local = new ArrayList<>();
+        double[][][] rows;
+        try (Coordinator c = farm.start(scenarios)) {
+            System.err.println("Coordinator on port " + c.getPort() + "; " + c.getChunksLeft() + " chunks");
+            for (int i = 0; i < workers; i++) local.add(launchWorker("127.0.0.1", c.getPort(), threads));
+            rows = c.await();
+            System.err.printf("%d chunks, %d steals, %d workers lost, %.2f s%n", c.getChunksDone(),
+                    c.getSteals(), c.getLost(), (System.nanoTime() - t0) * 1e-9);
+        } finally {
+            for (Process p : local) p.destroy();
+        }
+        for (int s = 0; s < scenarios.size(); s++) {
+            Scenario sc = scenarios.get(s);
+            System.out.println(sc.numPumps + " pumps, " + Sweep.Grid.label(sc.template)
+                    + ": " + farm.replications + " replications to t=" + farm.endingTime
+                    + " (base seed " + farm.baseSeed + ")");
+            Replications.print(System.out, Replications.summarize(rows[s]));
+            System.out.println();
+        }
+    }
+
+    // ===== Coordinator =====
+
+    // Open the port and start handing out chunks to whichever workers connect
+    public Coordinator start(List<Scenario> scenarios) throws IOException {
+        if (chunkSize < 1 || replications < 1) throw new IllegalArgumentException("Need positive chunk and replication counts");
+        for (Scenario s : scenarios) {
+            Sim t = s.template;
+            if (t.trace != null || t.profile != null || t.forecourt != null || t.estimateGradients
+                    || t.collectMetrics || t.detectWarmup || t.targetPrecision > 0)
+                throw new IllegalArgumentException("Farm workers run the plain model (no traces, profiles, "
+                        + "forecourts, gradients, metrics or run-length control)");
+            if (s.numPumps < 1) throw new IllegalArgumentException("Need at least 1 pump");
+        }
+        return new Coordinator(this, scenarios);
+    }
+
+    public static class Coordinator implements Closeable {
+        private final Farm farm;
+        private final List<Scenario> scenarios;
+        private final ServerSocket server;
+        private final double[][][] rows;               // [scenario][replication] -> Statistics row
+        private final Summary[][] running;             // [scenario][column], merged chunk by chunk
+        private final int[] merged;                    // replications merged per scenario
+        private final List<Chunk> chunks = new ArrayList<>(); // by id
+        private final ArrayDeque<Chunk> pool = new ArrayDeque<>(); // chunks no worker holds
+        private final List<Link> live = new ArrayList<>();
+        private int chunksLeft, chunksDone, steals, lost;
+        private long lastLive = System.nanoTime();     // last moment a worker was connected
+        private String failure;                        // error reported by a worker
+        private boolean closed;
+
+        // One connected worker
+        private final class Link {
+            final Socket socket;
+            final ArrayDeque<Chunk> deque = new ArrayDeque<>(); // mirror of the worker's deque, running one first
+            DataOutputStream out;                                // null until the scenarios are sent
+            Link thief;                                         // waiting for this worker's STEAL reply
+            boolean waiting;                                    // waiting for chunks stolen for it
+
+            Link(Socket socket) { this.socket = socket; }
+        }
+
+        Coordinator(Farm farm, List<Scenario> scenarios) throws IOException {
+            this.farm = farm;
+            this.scenarios = new ArrayList<>(scenarios);
+            int n = this.scenarios.size(), cols = Sim.Statistics.COLUMNS.length;
+            rows = new double[n][farm.replications][];
+            running = new Summary[n][cols];
+            merged = new int[n];
+            for (int s = 0; s < n; s++) {
+                for (int c = 0; c < cols; c++) running[s][c] = new Summary();
+                for (int r = 0; r < farm.replications; r += farm.chunkSize)
+                    chunks.add(new Chunk(chunks.size(), s, r, Math.min(r + farm.chunkSize, farm.replications)));
+            }
+            pool.addAll(chunks);
+            chunksLeft = pool.size();
+            server = new ServerSocket(farm.port);
+            Thread accept = new Thread(this::acceptLoop, "farm-accept");
+            accept.setDaemon(true);
+            accept.start();
+        }
+
+        public int getPort() { return server.getLocalPort(); }
+        public synchronized int getChunksLeft() { return chunksLeft; }
+        public synchronized int getChunksDone() { return chunksDone; }
+        public synchronized int getSteals() { return steals; }
+        public synchronized int getLost() { return lost; }
+        public synchronized int getWorkers() { return live.size(); }
+
+        // Running summary of one column of one scenario (a copy, safe to read mid-run)
+        public synchronized Summary running(int scenario, int column) {
+            Summary s = new Summary();
+            s.merge(running[scenario][column]);
+            return s;
+        }
+
+        // Wait for every chunk; rows[scenario][replication] in replication order
+        public double[][][] await() {
+            synchronized (this) {
+                while (chunksLeft > 0 && failure == null) {
+                    if (live.isEmpty() && System.nanoTime() - lastLive > farm.timeoutSeconds * 1_000_000_000L)
+                        throw new IllegalStateException("No worker connected for " + farm.timeoutSeconds
+                                + " s with " + chunksLeft + " chunks left");
+                    try {
+                        wait(1000);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IllegalStateException("Farm interrupted", e);
+                    }
+                }
+                if (failure != null) throw new IllegalStateException("Worker failed: " + failure);
+            }
+            close();
+            return rows;
+        }
+
+        // Stop listening; connected workers are told they are done
+        @Override
+        public void close() {
+            synchronized (this) {
+                if (!closed) for (Link l : live) send(l, DONE);
+                closed = true;
+                notifyAll();
+            }
+            try {
+                server.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void acceptLoop() {
+            while (true) {
+                Socket s;
+                try {
+                    s = server.accept();
+                } catch (IOException e) {
+                    return;                                // closed
+                }
+                Link link = new Link(s);
+                synchronized (this) {
+                    live.add(link);
+                    lastLive = System.nanoTime();
+                }
+                Thread t = new Thread(() -> handle(link), "farm-link-" + s.getPort());
+                t.setDaemon(true);
+                t.start();
+            }
+        }
+
+        // Read one worker's messages until it leaves or is lost; chunks are sent from balance()
+        private void handle(Link link) {
+            try (Socket s = link.socket) {
+                s.setSoTimeout((int) Math.min(Integer.MAX_VALUE, farm.timeoutSeconds * 1000L));
+                s.setTcpNoDelay(true);
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+                DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+                synchronized (this) {
+                    writeHello(out);
+                    link.out = out;
+                    if (closed || chunksLeft == 0) send(link, DONE);
+                    else balance();
+                }
+                while (true) {
+                    byte tag = in.readByte();                  // times out only on silence
+                    if (tag == HEARTBEAT) continue;
+                    if (tag == ERROR) {
+                        fail(in.readUTF());
+                        return;
+                    }
+                    if (tag == RELEASED) {
+                        int[] ids = new int[in.readInt()];
+                        for (int i = 0; i < ids.length; i++) ids[i] = in.readInt();
+                        released(link, ids);
+                        continue;
+                    }
+                    if (tag != RESULT) throw new IOException("Bad message " + tag + " from worker");
+                    int id = in.readInt(), n = in.readInt(), cols = in.readInt();
+                    Chunk c = (id >= 0 && id < chunks.size()) ? chunks.get(id) : null;
+                    if (c == null || n != c.to - c.from || cols != Sim.Statistics.COLUMNS.length)
+                        throw new IOException("Result does not match its chunk");
+                    double[][] block = new double[n][cols];
+                    for (double[] row : block)
+                        for (int k = 0; k < cols; k++) row[k] = in.readDouble();
+                    done(link, c, block);
+                }
+            } catch (IOException e) {
+                // connection failed, went silent, was closed or the worker said goodbye:
+                // lost() below requeues whatever it still held
+            } finally {
+                lost(link);
+            }
+        }
+
+        private void writeHello(DataOutputStream out) throws IOException {
+            out.writeInt(MAGIC);
+            out.writeLong(farm.baseSeed);
+            out.writeDouble(farm.endingTime);
+            out.writeInt((int) Math.max(1L, Math.min(Integer.MAX_VALUE, farm.timeoutSeconds * 250L))); // heartbeat ms
+            out.writeInt(scenarios.size());
+            for (Scenario sc : scenarios) {
+                Sim t = sc.template;
+                for (double v : new double[] {t.profit, t.pumpCost, t.litresNeededMin, t.litresNeededRange,
+                        t.serviceTimeBase, t.serviceTimePerLitre, t.serviceTimeSpread,
+                        t.balkA, t.balkB, t.balkC, t.meanInterarrivalTime})
+                    out.writeDouble(v);
+                out.writeUTF(t.fesName);
+                out.writeUTF(t.rngName);
+                out.writeInt(sc.numPumps);
+            }
+            out.flush();
+        }
+
+        // Give every worker down to its last chunk more: a share of the pool, else a steal
+        private void balance() {
+            if (closed || failure != null || chunksLeft == 0) return;
+            int ready = 0;
+            for (Link l : live) if (l.out != null) ready++;
+            for (Link l : live) {
+                if (l.out == null || l.deque.size() > 1 || l.waiting) continue;
+                if (!pool.isEmpty()) {
+                    int take = (pool.size() + ready - 1) / ready;
+                    for (int i = 0; i < take; i++) give(l, pool.pollFirst());
+                    continue;
+                }
+                Link victim = null;
+                for (Link v : live)
+                    if (v != l && v.out != null && v.thief == null && v.deque.size() > 1
+                            && (victim == null || v.deque.size() > victim.deque.size())) victim = v;
+                if (victim == null) continue;
+                victim.thief = l;
+                l.waiting = true;
+                send(victim, STEAL, victim.deque.size() / 2); // never its front, which may be running
+            }
+        }
+
+        // The victim gave these up (the rest of what was asked had started); pass them to the thief
+        private synchronized void released(Link victim, int[] ids) {
+            Link thief = victim.thief;
+            victim.thief = null;
+            if (thief != null) thief.waiting = false;
+            List<Chunk> moved = new ArrayList<>();
+            for (int id : ids) {
+                Chunk c = chunks.get(id);
+                if (victim.deque.remove(c) && !c.done) moved.add(c);
+            }
+            if (!moved.isEmpty()) steals++;
+            if (thief != null && live.contains(thief)) {
+                for (Chunk c : moved) give(thief, c);
+            } else {
+                for (int i = moved.size() - 1; i >= 0; i--) pool.addFirst(moved.get(i)); // keeps their order
+            }
+            balance();
+            notifyAll();
+        }
+
+        // Append a chunk to a worker's deque, here and over the wire
+        private void give(Link l, Chunk c) {
+            l.deque.addLast(c);
+            send(l, CHUNK, c.id, c.scenario, c.from, c.to);
+        }
+
+        // Write one message; a failed write closes the socket, so its reader calls lost()
+        private void send(Link l, byte tag, int... args) {
+            try {
+                l.out.writeByte(tag);
+                for (int a : args) l.out.writeInt(a);
+                l.out.flush();
+            } catch (IOException e) {
+                try {
+                    l.socket.close();
+                } catch (IOException ignored) {
+                    // closing anyway
+                }
+            }
+        }
+
+        private synchronized void done(Link link, Chunk c, double[][] block) {
+            link.deque.remove(c);
+            if (!c.done) {                             // else a requeued copy already came back
+                c.done = true;
+                Summary[] chunk = new Summary[block[0].length];
+                for (int k = 0; k < chunk.length; k++) chunk[k] = new Summary();
+                for (int i = 0; i < block.length; i++) {
+                    rows[c.scenario][c.from + i] = block[i];
+                    for (int k = 0; k < chunk.length; k++) chunk[k].add(block[i][k]);
+                }
+                for (int k = 0; k < chunk.length; k++) running[c.scenario][k].merge(chunk[k]);
+                merged[c.scenario] += block.length;
+                chunksDone++;
+                chunksLeft--;
+                if (farm.progress != null) {
+                    Summary profit = running[c.scenario][Sim.Statistics.TOTAL_PROFIT];
+                    farm.progress.printf("scenario %d: %d/%d replications, profit %.2f +- %.2f; %d chunks left%n",
+                            c.scenario, merged[c.scenario], farm.replications, profit.mean(),
+                            profit.halfWidth(Replications.CONFIDENCE), chunksLeft);
+                }
+            }
+            if (chunksLeft == 0) {
+                for (Link l : live) if (l.out != null) send(l, DONE);
+                notifyAll();
+            } else {
+                balance();
+            }
+        }
+
+        // A worker is gone: whatever it held goes back to the front of the pool
+        private synchronized void lost(Link link) {
+            if (!live.remove(link)) return;
+            lastLive = System.nanoTime();
+            boolean held = false;
+            while (!link.deque.isEmpty()) {
+                Chunk c = link.deque.pollLast();
+                if (c.done) continue;
+                pool.addFirst(c);
+                held = true;
+            }
+            if (link.waiting)                          // its steal reply now goes to the pool
+                for (Link v : live) if (v.thief == link) v.thief = null;
+            if (link.thief != null) link.thief.waiting = false; // nobody will answer for it
+            if (held && chunksLeft > 0) lost++;
+            balance();
+            notifyAll();
+        }
+
+        private synchronized void fail(String message) {
+            failure = message;
+            notifyAll();
+        }
+    }
+
+    // ===== Worker =====
+
+    // Launch a worker JVM on this box with the current classpath
+    public static Process launchWorker(String host, int port, int threads) throws IOException {
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        return new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), Farm.class.getName(),
+                "worker", "host=" + host, "port=" + port, "threads=" + threads)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+    }
+
+    // Connect to a coordinator and run its chunks until it says done
+    public static void serve(String host, int port, int threads) throws IOException {
+        try (Socket s = new Socket(InetAddress.getByName(host), port)) {
+            s.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+            if (in.readInt() != MAGIC) throw new IOException("Not a farm coordinator");
+            long baseSeed = in.readLong();
+            double endingTime = in.readDouble();
+            int heartbeatMillis = in.readInt();
+            Scenario[] scenarios = new Scenario[in.readInt()];
+            RandomStreams[] streams = new RandomStreams[scenarios.length];
+            for (int i = 0; i < scenarios.length; i++) {
+                Sim t = new Sim();
+                t.profit = in.readDouble();
+                t.pumpCost = in.readDouble();
+                t.litresNeededMin = in.readDouble();
+                t.litresNeededRange = in.readDouble();
+                t.serviceTimeBase = in.readDouble();
+                t.serviceTimePerLitre = in.readDouble();
+                t.serviceTimeSpread = in.readDouble();
+                t.balkA = in.readDouble();
+                t.balkB = in.readDouble();
+                t.balkC = in.readDouble();
+                t.meanInterarrivalTime = in.readDouble();
+                t.fesName = in.readUTF();
+                t.rngName = in.readUTF();
+                t.collectMetrics = false;              // the plain model, whatever this JVM's -D flags
+                t.detectWarmup = false;
+                t.targetPrecision = 0.0;
+                t.instrument = false;
+                t.estimateGradients = false;
+                scenarios[i] = new Scenario(t, in.readInt());
+                streams[i] = new RandomStreams(t.rngName, baseSeed);
+            }
+
+            WorkerDeque deque = new WorkerDeque();
+            Thread reader = new Thread(() -> deque.read(in, out), "farm-worker-reader");
+            reader.setDaemon(true);
+            reader.start();
+            Thread heartbeat = new Thread(() -> deque.beat(out, heartbeatMillis), "farm-worker-heartbeat");
+            heartbeat.setDaemon(true);
+            heartbeat.start();
+
+            ForkJoinPool pool = new ForkJoinPool(Math.max(1, threads));
+            try {
+                for (int[] c; (c = deque.take()) != null; ) {
+                    Scenario sc = scenarios[c[1]];
+                    RandomStreams rs = streams[c[1]];
+                    int from = c[2], to = c[3];
+                    double[][] block = new double[to - from][];
+                    try {
+                        pool.submit(() -> IntStream.range(from, to).parallel().forEach(r ->
+                                block[r - from] = Replications.runOne(sc.template, sc.numPumps, endingTime,
+                                        rs.forReplication(r)))).get();
+                    } catch (ExecutionException e) {
+                        synchronized (out) {
+                            out.writeByte(ERROR);
+                            out.writeUTF(String.valueOf(e.getCause()));
+                            out.flush();
+                        }
+                        return;
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    synchronized (out) {
+                        out.writeByte(RESULT);
+                        out.writeInt(c[0]);
+                        out.writeInt(block.length);
+                        out.writeInt(Sim.Statistics.COLUMNS.length);
+                        for (double[] row : block)
+                            for (double v : row) out.writeDouble(v);
+                        out.flush();
+                    }
+                }
+                if (deque.error != null) throw deque.error;
+            } finally {
+                deque.stop();
+                pool.shutdown();
+            }
+        }
+    }
+
+    // A worker's queued chunks {id, scenario, from, to}: filled by the reader thread,
+    // run from the front, given up from the back when the coordinator steals
+    private static final class WorkerDeque {
+        private final ArrayDeque<int[]> chunks = new ArrayDeque<>();
+        private boolean finished;                      // DONE, or the coordinator is gone
+        volatile IOException error;                    // bad message from the coordinator
+
+        // Next chunk to run; null once finished
+        synchronized int[] take() {
+            while (chunks.isEmpty() && !finished) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return null;
+                }
+            }
+            return finished ? null : chunks.pollFirst();
+        }
+
+        synchronized void stop() {
+            finished = true;
+            notifyAll();
+        }
+
+        // Reader thread: queue chunks and answer steals until DONE or the connection ends
+        void read(DataInputStream in, DataOutputStream out) {
+            try {
+                while (true) {
+                    byte tag = in.readByte();
+                    if (tag == DONE) break;
+                    if (tag == CHUNK) {
+                        int[] c = {in.readInt(), in.readInt(), in.readInt(), in.readInt()};
+                        synchronized (this) {
+                            chunks.addLast(c);
+                            notifyAll();
+                        }
+                    } else if (tag == STEAL) {
+                        int want = in.readInt();
+                        List<Integer> given = new ArrayList<>();
+                        synchronized (this) {
+                            while (given.size() < want && !chunks.isEmpty()) given.add(chunks.pollLast()[0]);
+                        }
+                        synchronized (out) {
+                            out.writeByte(RELEASED);
+                            out.writeInt(given.size());
+                            for (int i = given.size() - 1; i >= 0; i--) out.writeInt(given.get(i)); // front first
+                            out.flush();
+                        }
+                    } else {
+                        throw new IOException("Bad message " + tag + " from coordinator");
+                    }
+                }
+            } catch (IOException e) {
+                if (!(e instanceof EOFException || e instanceof SocketException)) error = e;
+            }
+            stop();                                    // coordinator done or gone
+        }
+
+        // Heartbeat thread: tell the coordinator this worker is alive, busy or not
+        void beat(DataOutputStream out, int millis) {
+            while (true) {
+                synchronized (this) {
+                    if (finished) return;
+                    try {
+                        wait(millis);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    if (finished) return;
+                }
+                try {
+                    synchronized (out) {
+                        out.writeByte(HEARTBEAT);
+                        out.flush();
+                    }
+                } catch (IOException e) {
+                    return;                            // connection gone; the reader sees it too
+                }
+            }
+        }
+    }
+}
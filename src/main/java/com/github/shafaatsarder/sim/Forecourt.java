@@ -0,0 +1,138 @@
+package com.github.shafaatsarder.sim; // package for your classes
+
+import java.util.Arrays;                          // growing the parsed pump list
+
+/**
+ * The layout of a station with several fuel grades: which grades exist and
+ * what share of cars needs each, which grades every pump dispenses and how
+ * fast, and the policy that matches waiting cars to freed pumps.
+ * <p>
+ * Policies:
+ * <ul>
+ *   <li>FIFO: a freed pump serves the earliest arrival among the lines it can
+ *       serve.</li>
+ *   <li>SHORTEST: shortest expected service first. A freed pump serves the
+ *       compatible car needing the fewest litres, and an arriving car gets the
+ *       fastest compatible free pump.</li>
+ *   <li>PRIORITY: grades are lanes in the order listed, the first being the
+ *       most urgent. A freed pump serves the first non-empty compatible lane,
+ *       FIFO within it.</li>
+ * </ul>
+ * Under FIFO and PRIORITY an arriving car takes a free pump of the most
+ * specific compatible type, so mixed pumps stay free for the other grades.
+ * With one grade and FIFO the station behaves exactly like the plain pump
+ * stand. Instances are immutable and shared by copied contexts; each context
+ * runs its own {@link Dispatcher}.
+ * <p>
+ * Sim reads a layout from -Dsim.grades=petrol:0.7,diesel:0.3 (name:share),
+ * -Dsim.pumps=petrol:4,diesel:2,petrol+diesel:2@1.5 (grades:count, optional
+ * @speed relative to the per-litre rate) and -Dsim.dispatch=fifo|shortest|priority.
+ */
+public class Forecourt {
+    public enum Policy { FIFO, SHORTEST, PRIORITY }
+
+    final String[] grades;                 // names, in priority order
+    final double[] cumulativeShare;        // P(grade <= g) for drawing a car's grade
+    final int[] pumpMask;                  // bit g set = pump dispenses grade g
+    final double[] pumpSpeed;              // relative flow rate (1 = serviceTimePerLitre)
+    final Policy policy;
+
+    public Forecourt(String[] grades, double[] shares, int[] pumpMask, double[] pumpSpeed, Policy policy) {
+        int g = grades.length;
+        if (g < 1 || g > 31 || shares.length != g) throw new IllegalArgumentException("Need 1 to 31 grades with a share each");
+        if (pumpMask.length < 1 || pumpSpeed.length != pumpMask.length)
+            throw new IllegalArgumentException("Need at least one pump with a speed");
+        this.grades = grades.clone();
+        cumulativeShare = new double[g];
+        double total = 0.0;
+        for (int i = 0; i < g; i++) {
+            if (!(shares[i] >= 0)) throw new IllegalArgumentException("Bad share for grade " + grades[i]);
+            total += shares[i];
+            cumulativeShare[i] = total;
+        }
+        if (!(total > 0)) throw new IllegalArgumentException("Grade shares must not all be 0");
+        for (int i = 0; i < g; i++) cumulativeShare[i] /= total;
+        int served = 0;
+        for (int i = 0; i < pumpMask.length; i++) {
+            if (pumpMask[i] == 0 || (pumpMask[i] >>> g) != 0) throw new IllegalArgumentException("Bad grades for pump " + i);
+            if (!(pumpSpeed[i] > 0)) throw new IllegalArgumentException("Bad speed for pump " + i);
+            served |= pumpMask[i];
+        }
+        for (int i = 0; i < g; i++)
+            if (shares[i] > 0 && (served & (1 << i)) == 0)
+                throw new IllegalArgumentException("No pump dispenses " + grades[i]);
+        this.pumpMask = pumpMask.clone();
+        this.pumpSpeed = pumpSpeed.clone();
+        this.policy = policy;
+    }
+
+    // Layout from -Dsim.grades / -Dsim.pumps / -Dsim.dispatch (null if sim.pumps is not set)
+    public static Forecourt fromProperties() {
+        String pumps = System.getProperty("sim.pumps");
+        if (pumps == null) return null;
+        return parse(System.getProperty("sim.grades", "petrol:1"), pumps, System.getProperty("sim.dispatch", "fifo"));
+    }
+
+    // Layout from the property syntax above
+    public static Forecourt parse(String gradeList, String pumpList, String policyName) {
+        String[] g = gradeList.split(",");
+        String[] names = new String[g.length];
+        double[] shares = new double[g.length];
+        for (int i = 0; i < g.length; i++) {
+            String[] f = g[i].trim().split(":");
+            names[i] = f[0];
+            shares[i] = (f.length > 1) ? Double.parseDouble(f[1]) : 1.0;
+        }
+        int[] mask = new int[8];
+        double[] speed = new double[8];
+        int n = 0;                              // pumps so far
+        for (String p : pumpList.split(",")) {
+            String spec = p.trim();
+            double rate = 1.0;
+            int at = spec.indexOf('@');
+            if (at >= 0) { rate = Double.parseDouble(spec.substring(at + 1)); spec = spec.substring(0, at); }
+            int colon = spec.indexOf(':');
+            int count = (colon >= 0) ? Integer.parseInt(spec.substring(colon + 1)) : 1;
+            int bits = 0;
+            for (String name : ((colon >= 0) ? spec.substring(0, colon) : spec).split("\\+")) {
+                int k = indexOf(names, name);
+                if (k < 0) throw new IllegalArgumentException("Unknown grade " + name + " in pump list");
+                bits |= 1 << k;
+            }
+            for (int c = 0; c < count; c++) {
+                if (n == mask.length) {
+                    mask = Arrays.copyOf(mask, 2 * n);
+                    speed = Arrays.copyOf(speed, 2 * n);
+                }
+                mask[n] = bits;
+                speed[n++] = rate;
+            }
+        }
+        return new Forecourt(names, shares, Arrays.copyOf(mask, n), Arrays.copyOf(speed, n), policy(policyName));
+    }
+
+    public static Policy policy(String name) {
+        switch (name) {
+            case "fifo":     return Policy.FIFO;
+            case "shortest": return Policy.SHORTEST;
+            case "priority": return Policy.PRIORITY;
+            default: throw new IllegalArgumentException("Unknown dispatch policy " + name + " (fifo|shortest|priority)");
+        }
+    }
+
+    private static int indexOf(String[] names, String name) {
+        for (int i = 0; i < names.length; i++) if (names[i].equals(name)) return i;
+        return -1;
+    }
+
+    public int getNumberOfPumps() { return pumpMask.length; }
+    public int getNumberOfGrades() { return grades.length; }
+    public String getGrade(int g) { return grades[g]; }
+
+    // Grade of a car, from a uniform u in [0, 1)
+    int gradeFor(double u) {
+        int g = 0;
+        while (g < cumulativeShare.length - 1 && u >= cumulativeShare[g]) g++;
+        return g;
+    }
+}
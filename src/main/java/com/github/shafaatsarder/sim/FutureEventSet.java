@@ -0,0 +1,35 @@
+package com.github.shafaatsarder.sim; // package for your classes
+
+/**
+ * The future event set (FEL): every pending event, handed back in time order.
+ * <p>
+ * Events with equal times must come back in the order they were inserted (FIFO),
+ * which is what the original linked list does, so every backend reproduces the
+ * same sample path for the same seeds.
+ */
+interface FutureEventSet {
+
+    void insert(Sim.Event e);      // schedule an event
+    Sim.Event takeNextEvent();     // remove and return the earliest event (null if none)
+    int size();                    // number of pending events
+    double nextTime();             // time of the earliest event (+infinity if none)
+
+    default boolean isEmpty() { return size() == 0; } // nothing pending?
+
+    /**
+     * Build a backend by name: "list" (sorted linked list, O(n) insert),
+     * "heap" / "heap4" (4-ary heap), "heap2" (binary heap) or "calendar"
+     * (Brown's calendar queue).
+     */
+    static FutureEventSet create(String name) {
+        switch (name.trim().toLowerCase()) {
+            case "list":     return new Sim.EventList();
+            case "heap":
+            case "heap4":    return new HeapEventSet(4);
+            case "heap2":    return new HeapEventSet(2);
+            case "calendar": return new CalendarQueue();
+            default:
+                throw new IllegalArgumentException("Unknown future event set: " + name);
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.github.shafaatsarder.sim; // package for your classes
+
+import java.io.PrintStream; // final summary output
+
+/**
+ * Sensitivities of one run's results to the model parameters, estimated from
+ * the same sample path as the results themselves.
+ * <p>
+ * Two estimators, each used where it is valid:
+ * <ul>
+ *   <li>Infinitesimal perturbation analysis (IPA) for outputs that move
+ *       continuously with the parameters: waits and pump usage. Every event time
+ *       carries its derivative. An interarrival gap is mean * E, so an arrival at
+ *       t has dt/dMean = t / mean. A service time is base + perLitre * litres +
+ *       spread * Z, so dS/dPerLitre = litres (0 when the 0.1 s clamp applies). A
+ *       service starts at the car's arrival on an idle pump, or at the previous
+ *       departure of a busy one, and its departure carries start + S.</li>
+ *   <li>Likelihood ratio (score function) for counts that jump when a car
+ *       balks instead of waiting: profit and balked cars. Each gap adds
+ *       (E - 1) / mean to the meanInterarrivalTime score and each service draw
+ *       adds Z * litres / spread to the serviceTimePerLitre score. Every sale or
+ *       balk is weighted by the score accumulated up to that moment, since draws
+ *       made later cannot have caused it.</li>
+ * </ul>
+ * dProfit/dPrice is exact: the litres sold. The IPA derivatives treat the
+ * balking decisions as fixed, so they are the sample-path derivatives; the LR
+ * estimates are unbiased but noisy and are meant to be averaged over
+ * replications. There is no LR estimate for perLitre when serviceTimeSpread is 0.
+ * <p>
+ * Only the station's own constant-rate arrivals are differentiated, so traces,
+ * rate profiles and corridor through-traffic are not supported. Hooks: {@link #interarrivalDrawn}
+ * from Arrival, {@link #serviceDrawn} and {@link #serviceStarted} from Pump,
+ * {@link #sold} and {@link #pumpIdle} from Departure, {@link #balked} from
+ * Arrival.carArrives.
+ */
+class Gradients {
+    // Columns of values(), appended after Statistics.COLUMNS by Replications
+    public static final String[] COLUMNS = {
+            "dWait/dPerLitre", "dWait/dMeanGap", "dUsage/dPerLitre", "dProfit/dPrice",
+            "dProfit/dPerLitre", "dProfit/dMeanGap", "dBalked/dPerLitre", "dBalked/dMeanGap"};
+    private static final String[] ESTIMATORS = {"IPA", "IPA", "IPA", "IPA", "LR", "LR", "LR", "LR"};
+
+    private final Sim sim;                 // context whose parameters we differentiate
+    private final double[] departPerLitre; // d(departure time)/dPerLitre, per pump
+    private final double[] departMeanGap;  // d(departure time)/dMeanGap, per pump
+    private final boolean[] busy;          // is the pump serving now?
+    private double pendingSlope;           // dS/dPerLitre of the service just drawn
+
+    private double scorePerLitre;          // d log(path density)/dPerLitre so far
+    private double scoreMeanGap;           // d log(path density)/dMeanGap so far
+
+    // Accumulators over [startTime, now], reset with the Statistics
+    private double waitPerLitre, waitMeanGap;   // sums of dWait
+    private double servicePerLitre;             // sum of dS/dPerLitre
+    private double litresSold;                  // = dProfit/dPrice
+    private double profitPerLitre, profitMeanGap; // LR-weighted sales
+    private double balkPerLitre, balkMeanGap;     // LR-weighted balks
+    private int served;                         // cars that left (the Average Wait divisor)
+    private double startTime;
+
+    public Gradients(Sim sim, int numPumps) {
+        if (sim.trace != null || sim.profile != null || sim.forecourt != null)
+            throw new IllegalStateException("Gradients need constant-rate synthetic arrivals at identical pumps");
+        this.sim = sim;
+        departPerLitre = new double[numPumps];
+        departMeanGap = new double[numPumps];
+        busy = new boolean[numPumps];
+    }
+
+    // An interarrival gap of meanInterarrivalTime * e was drawn
+    public void interarrivalDrawn(double e) {
+        scoreMeanGap += (e - 1.0) / sim.meanInterarrivalTime;
+    }
+
+    // A service time was drawn for `litres` with standard normal noise z
+    public void serviceDrawn(double litres, double z, boolean clamped) {
+        pendingSlope = clamped ? 0.0 : litres;
+        if (sim.serviceTimeSpread > 0) scorePerLitre += z * litres / sim.serviceTimeSpread;
+    }
+
+    // A car that arrived at `arrivalTime` started service at `pump`
+    public void serviceStarted(int pump, double arrivalTime) {
+        double arrivalMeanGap = arrivalTime / sim.meanInterarrivalTime; // arrivals scale with the mean
+        double startPerLitre, startMeanGap;
+        if (busy[pump]) {                  // back-to-back: starts at the previous departure
+            startPerLitre = departPerLitre[pump];
+            startMeanGap = departMeanGap[pump];
+        } else {                           // idle pump: starts on arrival
+            startPerLitre = 0.0;
+            startMeanGap = arrivalMeanGap;
+            busy[pump] = true;
+        }
+        waitPerLitre += startPerLitre;
+        waitMeanGap += startMeanGap - arrivalMeanGap;
+        servicePerLitre += pendingSlope;
+        departPerLitre[pump] = startPerLitre + pendingSlope;
+        departMeanGap[pump] = startMeanGap;
+        pendingSlope = 0.0;                // recorded service times have no slope
+    }
+
+    // The pump went back to the free pool
+    public void pumpIdle(int pump) { busy[pump] = false; }
+
+    // A car left with `litres`
+    public void sold(double litres) {
+        litresSold += litres;
+        served++;
+        profitPerLitre += sim.profit * litres * scorePerLitre;
+        profitMeanGap += sim.profit * litres * scoreMeanGap;
+    }
+
+    // A car balked
+    public void balked() {
+        balkPerLitre += scorePerLitre;
+        balkMeanGap += scoreMeanGap;
+    }
+
+    // Restart the accumulators with the Statistics (end of warm-up); scores keep running
+    public void reset() {
+        waitPerLitre = waitMeanGap = servicePerLitre = litresSold = 0.0;
+        profitPerLitre = profitMeanGap = balkPerLitre = balkMeanGap = 0.0;
+        served = 0;
+        startTime = sim.simulationTime;
+    }
+
+    // Current estimates in COLUMNS order (NaN where the matching average is Unknown)
+    public double[] values() {
+        double now = sim.simulationTime - startTime;
+        int pumps = busy.length;
+        return new double[] {
+                (served > 0) ? waitPerLitre / served : Double.NaN,
+                (served > 0) ? waitMeanGap / served : Double.NaN,
+                (now > 0) ? servicePerLitre / (pumps * now) : 0.0,
+                litresSold,
+                (sim.serviceTimeSpread > 0) ? profitPerLitre : Double.NaN,
+                profitMeanGap,
+                (sim.serviceTimeSpread > 0) ? balkPerLitre : Double.NaN,
+                balkMeanGap};
+    }
+
+    // End-of-run table of the estimates
+    public void printSummary(PrintStream out) {
+        double[] v = values();
+        out.println();
+        out.printf("%-18s %9s %14s%n", "Sensitivity", "Estimator", "Value");
+        for (int i = 0; i < COLUMNS.length; i++)
+            out.printf("%-18s %9s %14.6f%n", COLUMNS[i], ESTIMATORS[i], v[i]);
+    }
+}
@@ -0,0 +1,98 @@
+package com.github.shafaatsarder.sim; // package for your classes
+
+import java.util.Arrays; // for growing the backing arrays
+
+/**
+ * Implicit d-ary min-heap over (time, insertion number).
+ * <p>
+ * Keys live in parallel primitive arrays next to the events so sifting never
+ * calls back into the events. The insertion number breaks ties between equal
+ * times, giving the same FIFO order as the linked {@link Sim.EventList}.
+ * Insert and take are O(log n).
+ */
+class HeapEventSet implements FutureEventSet {
+    private final int arity;          // children per node (2 = binary, 4 = 4-ary)
+    private Sim.Event[] events;       // heap-ordered events
+    private double[] times;           // times[i] == events[i].getTime() when inserted
+    private long[] order;             // insertion number, tie-breaker for equal times
+    private int size;                 // number of events in the heap
+    private long inserted;            // running insertion counter
+
+    public HeapEventSet(int arity) {
+        if (arity < 2) throw new IllegalArgumentException("Heap arity must be at least 2");
+        this.arity = arity;
+        events = new Sim.Event[64];
+        times = new double[64];
+        order = new long[64];
+    }
+
+    @Override
+    public int size() { return size; }
+
+    @Override
+    public double nextTime() { return (size > 0) ? times[0] : Double.POSITIVE_INFINITY; }
+
+    // true if slot a should come out before slot b
+    private boolean before(double ta, long oa, double tb, long ob) {
+        return ta < tb || (ta == tb && oa < ob);
+    }
+
+    @Override
+    public void insert(Sim.Event e) {
+        if (size == events.length) {                     // full -> double capacity
+            int n = size * 2;
+            events = Arrays.copyOf(events, n);
+            times = Arrays.copyOf(times, n);
+            order = Arrays.copyOf(order, n);
+        }
+        double t = e.getTime();
+        long o = inserted++;
+        int i = size++;
+        while (i > 0) {                                  // sift up: move parents down
+            int parent = (i - 1) / arity;
+            if (!before(t, o, times[parent], order[parent])) break;
+            events[i] = events[parent];
+            times[i] = times[parent];
+            order[i] = order[parent];
+            i = parent;
+        }
+        events[i] = e;
+        times[i] = t;
+        order[i] = o;
+    }
+
+    @Override
+    public Sim.Event takeNextEvent() {
+        if (size == 0) {                                 // nothing left -> error
+            System.out.println("Error! ran out of events");
+            return null;
+        }
+        Sim.Event top = events[0];
+        int last = --size;
+        Sim.Event e = events[last];                      // hole at root, refill from the tail
+        double t = times[last];
+        long o = order[last];
+        events[last] = null;                             // let the event be collected
+        int i = 0;
+        while (true) {                                   // sift down: pull smallest child up
+            int firstChild = i * arity + 1;
+            if (firstChild >= last) break;
+            int best = firstChild;
+            int end = Math.min(firstChild + arity, last);
+            for (int c = firstChild + 1; c < end; c++) {
+                if (before(times[c], order[c], times[best], order[best])) best = c;
+            }
+            if (!before(times[best], order[best], t, o)) break;
+            events[i] = events[best];
+            times[i] = times[best];
+            order[i] = order[best];
+            i = best;
+        }
+        if (last > 0) {
+            events[i] = e;
+            times[i] = t;
+            order[i] = o;
+        }
+        return top;
+    }
+}
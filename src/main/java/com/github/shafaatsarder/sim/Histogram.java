@@ -0,0 +1,89 @@
+package com.github.shafaatsarder.sim; // package for your classes
+
+import java.util.Arrays; // clearing the counts
+
+/**
+ * Fixed-size log-linear histogram (HDR-style) for streaming quantiles.
+ * <p>
+ * Values are counted in multiples of {@code unit}. The first 256 units get one
+ * bucket each; above that every power of two is split into 128 buckets, so any
+ * recorded value is off by at most 1/128 (under 0.8%). The bucket array is
+ * allocated once and covers 2^40 units, so memory is constant and recording
+ * never allocates. Each value can carry a weight, which is how time-weighted
+ * quantities (queue length held for some seconds) are recorded.
+ */
+class Histogram {
+    private static final int SUB_BITS = 7;                 // 2^7 buckets per power of two
+    private static final int HALF = 1 << SUB_BITS;         // 128
+    private static final int LINEAR = 2 * HALF;            // exact buckets for x < 256
+    private static final int MAX_BITS = 40;                // top of the range: 2^40 units
+    private static final long MAX_UNITS = (1L << MAX_BITS) - 1;
+
+    private final double unit;      // value of one count step
+    private final double[] weights; // weight per bucket
+    private double total;           // sum of weights
+    private double weightedSum;     // sum of weight * value (for the mean)
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    public Histogram(double unit) {
+        this.unit = unit;
+        this.weights = new double[indexOf(MAX_UNITS) + 1];
+    }
+
+    // Bucket for x units (x >= 0)
+    private static int indexOf(long x) {
+        if (x < LINEAR) return (int) x;
+        int shift = 63 - Long.numberOfLeadingZeros(x) - SUB_BITS; // >= 1
+        return LINEAR + (shift - 1) * HALF + (int) ((x >>> shift) - HALF);
+    }
+
+    // Midpoint value of a bucket, in units
+    private static double unitsAt(int index) {
+        if (index < LINEAR) return index;
+        int shift = (index - LINEAR) / HALF + 1;
+        long low = ((long) ((index - LINEAR) % HALF + HALF)) << shift;
+        return low + ((1L << shift) - 1) / 2.0;
+    }
+
+    public void record(double value) { record(value, 1.0); }
+
+    // Add a value with a weight; negatives count as 0, huge values in the top bucket
+    public void record(double value, double weight) {
+        if (weight <= 0.0 || Double.isNaN(value)) return;
+        long x = (long) (Math.max(value, 0.0) / unit);
+        weights[indexOf(Math.min(x, MAX_UNITS))] += weight;
+        total += weight;
+        weightedSum += weight * value;
+        if (value < min) min = value;
+        if (value > max) max = value;
+    }
+
+    public double totalWeight() { return total; }
+    public double mean() { return (total > 0) ? weightedSum / total : Double.NaN; }
+    public double min() { return (total > 0) ? min : Double.NaN; }
+    public double max() { return (total > 0) ? max : Double.NaN; }
+
+    // Value below which a fraction q of the weight lies (clamped to the exact min/max)
+    public double quantile(double q) {
+        if (total <= 0) return Double.NaN;
+        double target = q * total;
+        double running = 0.0;
+        for (int i = 0; i < weights.length; i++) {
+            running += weights[i];
+            if (running >= target && weights[i] > 0) {
+                double v = unitsAt(i) * unit;
+                return Math.min(Math.max(v, min), max);
+            }
+        }
+        return max;
+    }
+
+    public void reset() {
+        Arrays.fill(weights, 0.0);
+        total = 0.0;
+        weightedSum = 0.0;
+        min = Double.POSITIVE_INFINITY;
+        max = Double.NEGATIVE_INFINITY;
+    }
+}
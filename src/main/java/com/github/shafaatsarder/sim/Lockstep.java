@@ -0,0 +1,407 @@
+package com.github.shafaatsarder.sim; // package for your classes
+
+import java.util.Arrays;                          // filling and growing the state arrays
+import java.util.concurrent.ExecutionException;   // failure inside a worker
+import java.util.concurrent.ForkJoinPool;         // pool that runs the batches
+import java.util.random.RandomGenerator;          // per-replication streams
+import java.util.stream.IntStream;                // parallel loop over batches
+
+/**
+ * A second engine for many silent replications of the same station: a batch of
+ * K replications advances together in rounds, each taking a turn of up to
+ * {@link #QUANTUM} events, with all their state in primitive arrays indexed by
+ * replication.
+ * <p>
+ * There are no event objects and no future-event list. A replication's next
+ * event is its next arrival or its earliest pump to finish, the minimum over a
+ * row of busy-until times, and it is handled inline. Waiting cars sit in one
+ * ring buffer per replication, stored as a row of a shared arrival/litres
+ * table. The Statistics accumulators are arrays too.
+ * <p>
+ * Each replication keeps its own four streams and draws arrivals, litres and
+ * service noise in blocks, like {@link Sim}'s {@link VariateBuffer}s. So
+ * the draws and the arithmetic are those of the object engine. With the legacy
+ * generator the streams are not java.util.Random objects but their 48-bit
+ * states in one array. They are stepped by the same congruential recurrence,
+ * with the same nextDouble and polar nextGaussian, without the atomic update.
+ * Other generators are called through their objects. Every row of
+ * {@link #runAll} therefore equals the matching row of
+ * {@link Replications#runAll}, except for events at exactly equal times, which
+ * have probability zero here. Only the Statistics columns are produced:
+ * templates with traces, Metrics, SteadyState, gradients, rate profiles or
+ * forecourts are refused, and reports are not written.
+ * <p>
+ * Usage: {@code Lockstep numPumps endingTime replications baseSeed [threads]}
+ * prints the same table as Replications; -Dsim.lockstep.batch sets K (default 64).
+ */
+public class Lockstep {
+    private static final double IDLE = Double.POSITIVE_INFINITY; // busy-until of a free pump
+    static final int QUANTUM = 16;               // events a replication runs per turn
+    static final int BATCH = Integer.getInteger("sim.lockstep.batch", 64); // replications per lockstep batch
+
+    // Parameters (copied from the template)
+    private final double profit, pumpCost, litresMin, litresRange;
+    private final double serviceBase, servicePerLitre, serviceSpread;
+    private final double balkA, balkB, balkC, meanInterarrival;
+    private final int pumps;
+    private final double endingTime;
+    private final int k;                             // replications in this batch
+
+    // Streams: stream s of replication r is index 4r + s
+    private static final int ARRIVALS = 0, LITRES = 1, BALKING = 2, SERVICE = 3;
+    private static final long MULTIPLIER = 0x5DEECE66DL, ADDEND = 0xBL, MASK = (1L << 48) - 1; // java.util.Random
+    private final long[] lcg;                        // legacy states (null for other generators)
+    private final RandomGenerator[] generators;      // other generators (null for legacy)
+
+    // Pre-drawn blocks: block b = 3r + kind holds variates [b * BLOCK, (b + 1) * BLOCK)
+    private static final int EXPONENTIAL = 0, UNIFORM = 1, NORMAL = 2;
+    private static final int BLOCK = 32;             // even, so normal pairs fit; smaller than
+                                                     // VariateBuffer's to keep a batch in cache
+    private final double[] variates;
+    private final int[] cursor;                      // next unused index in each block
+
+    // Model state; pump p of replication r is index r * pumps + p
+    private final double[] nextArrival;              // time of the pending arrival
+    private final double[] busyUntil;                // departure time, IDLE if free
+    private final double[] litresInService;          // litres of the car at the pump
+    private final int[] freePumps;                   // number of IDLE pumps
+    private double[] queueArrival, queueLitres;      // ring r occupies [r * capacity, (r + 1) * capacity)
+    private int capacity = 16;                       // power of two, shared by every ring
+    private final int[] queueHead, queueSize;
+
+    // Statistics accumulators
+    private final int[] arrivals, served, balked;
+    private final double[] litresSold, litresMissed, waitingTime, serviceTime;
+    private final double[] emptyTime, lastEmpty;     // queue-empty tally
+    private final boolean[] empty;
+
+    // Replications using the given streams (arrivals, litres, balking, service) of each
+    public Lockstep(Sim template, int numPumps, double endingTime, RandomGenerator[][] streams) {
+        this(template, numPumps, endingTime, streams.length, null, streams);
+    }
+
+    // Replications using legacy java.util.Random streams with the given four seeds each
+    public static Lockstep legacy(Sim template, int numPumps, double endingTime, long[][] seeds) {
+        return new Lockstep(template, numPumps, endingTime, seeds.length, seeds, null);
+    }
+
+    private Lockstep(Sim template, int numPumps, double endingTime, int replications,
+                     long[][] seeds, RandomGenerator[][] streams) {
+        if (numPumps < 1) throw new IllegalArgumentException("Need at least 1 pump");
+        profit = template.profit;
+        pumpCost = template.pumpCost;
+        litresMin = template.litresNeededMin;
+        litresRange = template.litresNeededRange;
+        serviceBase = template.serviceTimeBase;
+        servicePerLitre = template.serviceTimePerLitre;
+        serviceSpread = template.serviceTimeSpread;
+        balkA = template.balkA;
+        balkB = template.balkB;
+        balkC = template.balkC;
+        meanInterarrival = template.meanInterarrivalTime;
+        pumps = numPumps;
+        this.endingTime = endingTime;
+        k = replications;
+
+        lcg = (seeds != null) ? new long[4 * k] : null;
+        generators = (streams != null) ? new RandomGenerator[4 * k] : null;
+        for (int r = 0; r < k; r++) {
+            for (int s = 0; s < 4; s++) {
+                if (lcg != null) lcg[4 * r + s] = (seeds[r][s] ^ MULTIPLIER) & MASK; // as new Random(seed)
+                else generators[4 * r + s] = streams[r][s];
+            }
+        }
+        variates = new double[3 * k * BLOCK];
+        cursor = new int[3 * k];
+        Arrays.fill(cursor, BLOCK);                  // every block starts used up
+
+        nextArrival = new double[k];                 // first arrival at t=0
+        busyUntil = new double[k * pumps];
+        Arrays.fill(busyUntil, IDLE);
+        litresInService = new double[k * pumps];
+        freePumps = new int[k];
+        Arrays.fill(freePumps, pumps);
+        queueArrival = new double[k * capacity];
+        queueLitres = new double[k * capacity];
+        queueHead = new int[k];
+        queueSize = new int[k];
+
+        arrivals = new int[k];
+        served = new int[k];
+        balked = new int[k];
+        litresSold = new double[k];
+        litresMissed = new double[k];
+        waitingTime = new double[k];
+        serviceTime = new double[k];
+        emptyTime = new double[k];
+        lastEmpty = new double[k];
+        empty = new boolean[k];
+        Arrays.fill(empty, true);
+    }
+
+    // ===== Main =====
+    public static void main(String[] args) {
+        if (args.length < 4) {
+            System.out.println("Usage: Lockstep numPumps endingTime replications baseSeed [threads]");
+            return;
+        }
+        int numPumps = Integer.parseInt(args[0]);
+        double endingTime = Double.parseDouble(args[1]);
+        int n = Integer.parseInt(args[2]);
+        long baseSeed = Long.parseLong(args[3]);
+        int threads = (args.length > 4) ? Integer.parseInt(args[4])
+                : Runtime.getRuntime().availableProcessors();
+
+        Summary[] summary = Replications.summarize(runAll(new Sim(), numPumps, endingTime, n, baseSeed, threads));
+        System.out.println(n + " replications of " + numPumps + " pumps to t=" + endingTime
+                + " (base seed " + baseSeed + ")");
+        Replications.print(System.out, summary);
+    }
+
+    // Replications 0..n-1 of the base seed, in lockstep batches of BATCH spread over the threads
+    public static double[][] runAll(Sim template, int numPumps, double endingTime,
+                                    int n, long baseSeed, int threads) {
+        return runAll(template, numPumps, endingTime, n, baseSeed, threads, BATCH);
+    }
+
+    // Same with `batch` replications per lockstep batch
+    public static double[][] runAll(Sim template, int numPumps, double endingTime,
+                                    int n, long baseSeed, int threads, int batch) {
+        if (batch < 1) throw new IllegalArgumentException("Batch size must be positive");
+        if (numPumps < 1) throw new IllegalArgumentException("Need at least 1 pump");
+        if (template.profile != null) throw new IllegalArgumentException("Lockstep arrivals have a constant rate");
+        if (template.forecourt != null) throw new IllegalArgumentException("Lockstep pumps are identical");
+        if (template.trace != null || template.estimateGradients || template.collectMetrics
+                || template.detectWarmup || template.targetPrecision > 0)
+            throw new IllegalArgumentException("Lockstep runs the plain model (no traces, gradients, "
+                    + "metrics or run-length control)");
+        double[][] rows = new double[n][];
+        RandomStreams streams = new RandomStreams(template.rngName, baseSeed); // (legacy: seeds only)
+        int batches = (n + batch - 1) / batch;
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, threads));
+        try {
+            pool.submit(() -> IntStream.range(0, batches).parallel().forEach(b -> {
+                int from = b * batch, to = Math.min(n, from + batch);
+                Lockstep engine;
+                if (RandomStreams.LEGACY.equals(template.rngName)) {
+                    long[][] seeds = new long[to - from][];
+                    for (int r = from; r < to; r++) seeds[r - from] = seedsFor(baseSeed, r);
+                    engine = legacy(template, numPumps, endingTime, seeds);
+                } else {
+                    RandomGenerator[][] s = new RandomGenerator[to - from][];
+                    for (int r = from; r < to; r++) s[r - from] = streams.forReplication(r);
+                    engine = new Lockstep(template, numPumps, endingTime, s);
+                }
+                double[][] part = engine.run();
+                System.arraycopy(part, 0, rows, from, part.length);
+            })).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Lockstep interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Lockstep batch failed", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+        return rows;
+    }
+
+    // The legacy seeds RandomStreams gives replication r
+    private static long[] seedsFor(long baseSeed, int r) { return Replications.seedsFor(baseSeed, r); }
+
+    // ===== Engine =====
+
+    // Run every replication to endingTime; row r is replication r's Statistics.values()
+    public double[][] run() {
+        int[] live = new int[k];                     // replications still running (unordered)
+        for (int r = 0; r < k; r++) live[r] = r;
+        int count = k;
+        while (count > 0) {
+            for (int i = 0; i < count; ) {           // one round: up to QUANTUM events per live replication
+                int r = live[i], q = 0;
+                boolean more = true;
+                while (q++ < QUANTUM && (more = step(r))) { }
+                if (more) i++;
+                else live[i] = live[--count];        // finished: drop it from the round
+            }
+        }
+        double[][] rows = new double[k][];
+        for (int r = 0; r < k; r++) rows[r] = values(r);
+        return rows;
+    }
+
+    // Handle replication r's next event; false once it has reached endingTime
+    private boolean step(int r) {
+        int base = r * pumps;
+        int next = 0;                                // earliest departure (first pump on ties)
+        double departure = busyUntil[base];
+        for (int p = 1; p < pumps; p++) {
+            double t = busyUntil[base + p];
+            if (t < departure) { departure = t; next = p; }
+        }
+        double arrival = nextArrival[r];
+        if (arrival < departure) {
+            if (!(arrival < endingTime)) return false; // the end comes first on a tie
+            arrive(r, arrival);
+        } else {
+            if (!(departure < endingTime)) return false;
+            depart(r, base + next, departure);
+        }
+        return true;
+    }
+
+    // Arrival.makeItHappen and carArrives
+    private void arrive(int r, double now) {
+        double litres = litresMin + next(r, UNIFORM) * litresRange;
+        arrivals[r]++;
+        int q = queueSize[r];
+        boolean balks = q != 0
+                && uniform(4 * r + BALKING) > (balkA + litres) / (balkB * (balkC + q));
+        if (balks) {
+            balked[r]++;
+            litresMissed[r] += litres;
+        } else if (freePumps[r] > 0) {
+            int base = r * pumps, p = base;
+            while (busyUntil[p] != IDLE) p++;        // any free pump will do
+            freePumps[r]--;
+            startService(r, p, now, litres, now);
+        } else {
+            enqueue(r, now, litres);
+        }
+        nextArrival[r] = now + meanInterarrival * next(r, EXPONENTIAL);
+    }
+
+    // Departure.makeItHappen at pump slot p
+    private void depart(int r, int p, double now) {
+        served[r]++;
+        litresSold[r] += litresInService[p];
+        if (queueSize[r] > 0) {
+            int slot = r * capacity + queueHead[r];
+            double arrivedAt = queueArrival[slot], litres = queueLitres[slot];
+            queueHead[r] = (queueHead[r] + 1) & (capacity - 1);
+            if (--queueSize[r] == 0) {
+                empty[r] = true;
+                lastEmpty[r] = now;
+            }
+            startService(r, p, arrivedAt, litres, now);
+        } else {
+            busyUntil[p] = IDLE;
+            freePumps[r]++;
+        }
+    }
+
+    // Pump.startService: draw the service time and book the departure
+    private void startService(int r, int p, double arrivedAt, double litres, double now) {
+        double t = serviceBase + servicePerLitre * litres
+                + serviceSpread * next(r, NORMAL);
+        if (t < 0.1) t = 0.1;
+        waitingTime[r] += now - arrivedAt;
+        serviceTime[r] += t;
+        busyUntil[p] = now + t;
+        litresInService[p] = litres;
+    }
+
+    // ===== Random variates =====
+
+    // Next variate of the given kind for replication r (VariateBuffer.next)
+    private double next(int r, int kind) {
+        int b = 3 * r + kind;
+        if (cursor[b] == BLOCK) refill(r, kind);
+        return variates[b * BLOCK + cursor[b]++];
+    }
+
+    // Draw a whole block from the kind's stream, in stream order (VariateBuffer.refill)
+    private void refill(int r, int kind) {
+        int b = 3 * r + kind, from = b * BLOCK, to = from + BLOCK;
+        double[] v = variates;
+        switch (kind) {
+            case EXPONENTIAL: {
+                int s = 4 * r + ARRIVALS;
+                for (int i = from; i < to; i++) v[i] = uniform(s);
+                for (int i = from; i < to; i++) v[i] = -Math.log(v[i]);
+                break;
+            }
+            case UNIFORM: {
+                int s = 4 * r + LITRES;
+                for (int i = from; i < to; i++) v[i] = uniform(s);
+                break;
+            }
+            default: {
+                int s = 4 * r + SERVICE;
+                if (lcg == null) {
+                    for (int i = from; i < to; i++) v[i] = generators[s].nextGaussian();
+                } else {
+                    for (int i = from; i < to; i += 2) {   // Random's polar method, both values of a pair
+                        double v1, v2, sq;                 // (BLOCK is even, so pairs never straddle blocks)
+                        do {
+                            v1 = 2 * uniform(s) - 1;
+                            v2 = 2 * uniform(s) - 1;
+                            sq = v1 * v1 + v2 * v2;
+                        } while (sq >= 1 || sq == 0);
+                        double m = StrictMath.sqrt(-2 * StrictMath.log(sq) / sq);
+                        v[i] = v1 * m;
+                        v[i + 1] = v2 * m;
+                    }
+                }
+            }
+        }
+        cursor[b] = 0;
+    }
+
+    // nextDouble of stream s (Random: 26 then 27 bits of the recurrence)
+    private double uniform(int s) {
+        if (lcg == null) return generators[s].nextDouble();
+        long x = (lcg[s] * MULTIPLIER + ADDEND) & MASK;
+        long hi = x >>> (48 - 26);
+        x = (x * MULTIPLIER + ADDEND) & MASK;
+        lcg[s] = x;
+        return ((hi << 27) + (x >>> (48 - 27))) * 0x1.0p-53;
+    }
+
+    // CarQueue.insert
+    private void enqueue(int r, double now, double litres) {
+        if (queueSize[r] == capacity) grow();
+        int slot = r * capacity + ((queueHead[r] + queueSize[r]) & (capacity - 1));
+        queueArrival[slot] = now;
+        queueLitres[slot] = litres;
+        if (queueSize[r] == 0 && empty[r]) {
+            emptyTime[r] += now - lastEmpty[r];
+            empty[r] = false;
+        }
+        queueSize[r]++;
+    }
+
+    // Double every ring, unrolling each so its front car sits in the row's first slot
+    private void grow() {
+        int bigger = 2 * capacity;
+        double[] a = new double[k * bigger], l = new double[k * bigger];
+        for (int r = 0; r < k; r++) {
+            for (int i = 0; i < queueSize[r]; i++) {
+                int from = r * capacity + ((queueHead[r] + i) & (capacity - 1));
+                a[r * bigger + i] = queueArrival[from];
+                l[r * bigger + i] = queueLitres[from];
+            }
+            queueHead[r] = 0;
+        }
+        queueArrival = a;
+        queueLitres = l;
+        capacity = bigger;
+    }
+
+    // Statistics.fillValues at endingTime
+    private double[] values(int r) {
+        double now = endingTime;
+        double idle = empty[r] ? emptyTime[r] + (endingTime - lastEmpty[r]) : emptyTime[r];
+        double[] v = new double[Sim.Statistics.COLUMNS.length];
+        v[0] = arrivals[r];
+        v[1] = (now > 0) ? idle / now : 0.0;
+        v[2] = (arrivals[r] > 0) ? now / arrivals[r] : Double.NaN;
+        v[3] = (arrivals[r] > 0) ? (litresSold[r] + litresMissed[r]) / arrivals[r] : Double.NaN;
+        v[4] = balked[r];
+        v[5] = (served[r] > 0) ? waitingTime[r] / served[r] : Double.NaN;
+        v[6] = (pumps > 0 && now > 0) ? serviceTime[r] / (pumps * now) : 0.0;
+        v[7] = litresSold[r] * profit - pumpCost * pumps;
+        v[8] = litresMissed[r] * profit;
+        return v;
+    }
+}
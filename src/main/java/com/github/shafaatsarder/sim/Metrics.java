@@ -0,0 +1,130 @@
+package com.github.shafaatsarder.sim; // package for your classes
+
+import java.io.PrintStream; // final summary output
+
+/**
+ * Streaming distribution statistics for one simulation context.
+ * <p>
+ * Waits and service times go into a {@link Histogram} (quantiles) and a
+ * {@link Summary} (Welford mean/variance). Queue length is recorded
+ * time-weighted: each length is weighted by how long the line stayed at it.
+ * Busy time is kept per pump, for time-weighted utilization. Memory is fixed
+ * per metric and the hooks allocate nothing.
+ * <p>
+ * Hooks: {@link #serviceStarted} from Pump.startService, {@link #queueChanged}
+ * from CarQueue.insert/takeFirstCar, {@link #pumpIdle} from Departure.
+ */
+class Metrics {
+    // Extra snapshot columns appended after Statistics.COLUMNS
+    public static final String[] COLUMNS = {
+            "Wait p50", "Wait p95", "Wait p99", "Service p95", "Mean Queue", "Queue p95", "Max Queue"};
+
+    private static final double TIME_UNIT = 0.001; // histogram resolution for times (seconds)
+
+    private final Histogram waits = new Histogram(TIME_UNIT);     // wait per served car
+    private final Histogram services = new Histogram(TIME_UNIT);  // service time per car
+    private final Histogram queue = new Histogram(1.0);           // time-weighted queue length
+    private final Summary waitMoments = new Summary();
+    private final Summary serviceMoments = new Summary();
+
+    private final double[] busyTime;   // closed busy spells per pump
+    private final double[] busySince;  // start of the open busy spell (if busy)
+    private final boolean[] busy;      // is the pump serving now?
+    private double startTime;          // time the metrics were (re)started
+    private int queueLength;           // current queue length
+    private double queueSince;         // when it last changed
+    private int maxQueue;              // high-water mark
+
+    public Metrics(int numPumps, double now) {
+        busyTime = new double[numPumps];
+        busySince = new double[numPumps];
+        busy = new boolean[numPumps];
+        startTime = now;
+        queueSince = now;
+    }
+
+    // A car started service at pump `pump` after waiting `wait` seconds
+    public void serviceStarted(int pump, double wait, double serviceTime, double now) {
+        waits.record(wait);
+        waitMoments.add(wait);
+        services.record(serviceTime);
+        serviceMoments.add(serviceTime);
+        if (!busy[pump]) {             // idle -> busy (back-to-back services stay one spell)
+            busy[pump] = true;
+            busySince[pump] = now;
+        }
+    }
+
+    // The pump went back to the free pool
+    public void pumpIdle(int pump, double now) {
+        if (!busy[pump]) return;
+        busyTime[pump] += now - busySince[pump];
+        busy[pump] = false;
+    }
+
+    // The queue now has `length` cars
+    public void queueChanged(int length, double now) {
+        queue.record(queueLength, now - queueSince); // close the spell at the old length
+        queueLength = length;
+        queueSince = now;
+        if (length > maxQueue) maxQueue = length;
+    }
+
+    // Fraction of [start, now] that pump i was busy
+    public double utilization(int pump, double now) {
+        double elapsed = now - startTime;
+        if (elapsed <= 0) return 0.0;
+        double b = busyTime[pump] + (busy[pump] ? now - busySince[pump] : 0.0);
+        return b / elapsed;
+    }
+
+    // Fill COLUMNS values into v starting at offset; the open queue spell counts up to now
+    public void fillValues(double[] v, int offset, double now) {
+        queue.record(queueLength, now - queueSince);          // bring the queue up to date
+        queueSince = now;
+        v[offset] = waits.quantile(0.50);
+        v[offset + 1] = waits.quantile(0.95);
+        v[offset + 2] = waits.quantile(0.99);
+        v[offset + 3] = services.quantile(0.95);
+        v[offset + 4] = queue.mean();
+        v[offset + 5] = queue.quantile(0.95);
+        v[offset + 6] = maxQueue;
+    }
+
+    // Forget everything before `now`, keeping the current queue length and busy pumps
+    public void reset(double now) {
+        waits.reset();
+        services.reset();
+        queue.reset();
+        waitMoments.reset();
+        serviceMoments.reset();
+        for (int i = 0; i < busyTime.length; i++) {
+            busyTime[i] = 0.0;
+            if (busy[i]) busySince[i] = now;
+        }
+        startTime = now;
+        queueSince = now;
+        maxQueue = queueLength;
+    }
+
+    // End-of-run distribution summary
+    public void printSummary(PrintStream out, double now) {
+        queue.record(queueLength, now - queueSince);
+        queueSince = now;
+        out.println();
+        out.printf("%-14s %10s %10s %10s %10s %10s %10s %10s %10s %10s%n", "Metric", "Count",
+                "Mean", "StdDev", "Min", "p50", "p90", "p95", "p99", "Max");
+        line(out, "Wait", waits, waitMoments.count(), waitMoments.mean(), waitMoments.stdDev());
+        line(out, "Service time", services, serviceMoments.count(), serviceMoments.mean(), serviceMoments.stdDev());
+        line(out, "Queue length", queue, -1, queue.mean(), Double.NaN);
+        out.print("Pump utilization:");
+        for (int i = 0; i < busy.length; i++) out.printf(" %.3f", utilization(i, now));
+        out.println();
+    }
+
+    private static void line(PrintStream out, String name, Histogram h, long count, double mean, double sd) {
+        out.printf("%-14s %10s %10.3f %10.3f %10.3f %10.3f %10.3f %10.3f %10.3f %10.3f%n", name,
+                (count >= 0) ? Long.toString(count) : "(time)", mean, sd, h.min(),
+                h.quantile(0.50), h.quantile(0.90), h.quantile(0.95), h.quantile(0.99), h.max());
+    }
+}
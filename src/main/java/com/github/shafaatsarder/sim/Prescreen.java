@@ -0,0 +1,415 @@
+package com.github.shafaatsarder.sim; // package for your classes
+
+import java.io.BufferedReader;                    // history file
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.PrintStream;                       // report output
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Instant queueing-theory estimates of a configuration's waits, utilization
+ * and profit, used to skip configurations that are clearly not worth
+ * simulating.
+ * <p>
+ * The station is modelled as an M/M/c queue with balking, as a birth-death
+ * chain on the number of cars present. A car that finds n waiting joins with
+ * probability min(1, (balkA + l) / (balkB (balkC + n))), averaged over the
+ * uniform litres l, as in Arrival.doesCarBalk. The chain's stationary
+ * distribution gives the balking-adjusted arrival rate, the balks, the
+ * litres sold and the time the line is empty. Joining cars need more litres
+ * than average, so the mean service time of served cars is solved as a fixed
+ * point. The waiting time follows Allen-Cunneen: the chain's M/M/c wait times
+ * (ca^2 + cs^2) / 2, with Poisson arrivals (ca^2 = 1) and cs^2 from the
+ * per-litre spread and the Gaussian noise. The offered load lambda E[S] / c
+ * ignores balking, so a value above 1 means more work arrives than the pumps
+ * can do and heavy balking is certain.
+ * <p>
+ * Every pump count in [minPumps, maxPumps] gets a profit estimate with a band.
+ * Without calibration the band is +-tolerance of the estimate. A pump count is
+ * PRUNED when the top of its band is below the best bottom of any band. It is
+ * PROMISING when its estimate reaches that best bottom, and UNCERTAIN
+ * otherwise. Only PROMISING and UNCERTAIN counts need full simulation.
+ * <p>
+ * A {@link Surrogate} sharpens the profit estimates using earlier full
+ * simulations kept in a history file. It regresses simulated profit on the
+ * analytic profit and the offered load. For estimates inside the range of
+ * recorded analytic profits, the regression's prediction band replaces the
+ * tolerance band. Outside that range the regression would extrapolate, so
+ * the analytic estimate and tolerance band stay.
+ * <p>
+ * Usage: {@code Prescreen key=value ...} with keys pumps=lo..hi, end, mean,
+ * balkA, balkB, balkC (comma-separated lists for a grid), tolerance, history
+ * (file of earlier results), simulate (true = replicate the kept pump counts,
+ * calibrate the later grid points on them and append them to the history),
+ * reps, seed, threads.
+ */
+public class Prescreen {
+    public enum Verdict { PROMISING, UNCERTAIN, PRUNED }
+
+    // ===== Prescreen parameters =====
+    public int minPumps = 1;                 // smallest pump count screened
+    public int maxPumps = 10;                // largest pump count screened
+    public double endingTime = 86400.0;      // horizon the estimates are for
+    public double tolerance = 0.10;          // relative half-width of an uncalibrated profit band
+    public Surrogate surrogate;              // calibration from earlier simulations (null = analytic only)
+
+    private static final int QUADRATURE = 256;   // midpoints over the litres range
+    private static final int MAX_CARS = 100000;  // chain cut-off when balking cannot stop growth
+
+    // Analytic outcome for one pump count
+    public static class Estimate {
+        public final int numPumps;
+        public final double offeredLoad;     // lambda E[S] / c, ignoring balking
+        public final double[] values;        // as Statistics.values(): Total Cars .. Lost Profit
+        public double profit, low, high;     // profit used for screening, with its band
+        public Verdict verdict;
+
+        Estimate(int numPumps, double offeredLoad, double[] values) {
+            this.numPumps = numPumps;
+            this.offeredLoad = offeredLoad;
+            this.values = values;
+            this.profit = values[Sim.Statistics.TOTAL_PROFIT];
+        }
+    }
+
+    // ===== Main =====
+    public static void main(String[] args) throws IOException {
+        Prescreen screen = new Prescreen();
+        Sim template = new Sim();
+        Sweep.Grid grid = new Sweep.Grid(template);
+        Path history = null;
+        boolean simulate = false;
+        int reps = 10, threads = Runtime.getRuntime().availableProcessors();
+        long seed = 1;
+        for (String arg : args) {
+            String[] kv = Sweep.keyValue(arg);
+            String key = kv[0], value = kv[1];
+            if (grid.parse(key, value)) continue;
+            switch (key) {
+                case "pumps":
+                    int[] range = Sweep.parseRange(value);
+                    screen.minPumps = range[0];
+                    screen.maxPumps = range[1];
+                    break;
+                case "end":       screen.endingTime = Double.parseDouble(value); break;
+                case "tolerance": screen.tolerance = Double.parseDouble(value); break;
+                case "history":   history = Path.of(value); break;
+                case "simulate":  simulate = Boolean.parseBoolean(value); break;
+                case "reps":      reps = Integer.parseInt(value); break;
+                case "seed":      seed = Long.parseLong(value); break;
+                case "threads":   threads = Integer.parseInt(value); break;
+                default: throw new IllegalArgumentException("Unknown option " + key);
+            }
+        }
+        if (history != null) screen.surrogate = Surrogate.load(history);
+        else if (simulate) screen.surrogate = new Surrogate();     // calibrates on this run's simulations
+
+        int kept = 0, total = 0;
+        for (Sim point : grid.points(template)) {
+            System.out.println(Sweep.Grid.label(point)
+                    + (screen.surrogate != null && screen.surrogate.ready(screen.endingTime)
+                       ? " (calibrated on " + screen.surrogate.size(screen.endingTime) + " runs)" : ""));
+            Estimate[] est = screen.screen(point);
+            double[] simulated = new double[est.length];
+            for (int i = 0; i < est.length; i++) {
+                total++;
+                simulated[i] = Double.NaN;
+                if (est[i].verdict == Verdict.PRUNED) continue;
+                kept++;
+                if (!simulate) continue;
+                Summary s = Replications.summarize(Replications.runAll(point, est[i].numPumps,
+                        screen.endingTime, reps, seed, threads))[Sim.Statistics.TOTAL_PROFIT];
+                simulated[i] = s.mean();
+                screen.surrogate.add(point, est[i], screen.endingTime, s.mean(), reps); // later points use it
+                if (history != null)
+                    Surrogate.append(history, point, est[i], screen.endingTime, s.mean(), reps);
+            }
+            print(System.out, est, simulated);
+            System.out.println();
+        }
+        System.out.println(kept + " of " + total + " configurations kept for simulation");
+    }
+
+    // ===== Screening =====
+
+    // Estimate every pump count and give each a verdict
+    public Estimate[] screen(Sim template) {
+        if (minPumps < 1 || maxPumps < minPumps) throw new IllegalArgumentException("Bad pump range");
+        Estimate[] out = new Estimate[maxPumps - minPumps + 1];
+        boolean calibrated = surrogate != null && surrogate.ready(endingTime);
+        double bestLow = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < out.length; i++) {
+            Estimate e = estimate(template, minPumps + i, endingTime);
+            double h;
+            if (calibrated && surrogate.covers(e, endingTime)) {
+                e.profit = surrogate.predict(e, endingTime);
+                h = surrogate.halfWidth(e, endingTime);
+            } else {
+                h = tolerance * Math.abs(e.profit);
+            }
+            e.low = e.profit - h;
+            e.high = e.profit + h;
+            bestLow = Math.max(bestLow, e.low);
+            out[i] = e;
+        }
+        for (Estimate e : out) {
+            if (e.high < bestLow) e.verdict = Verdict.PRUNED;
+            else if (e.profit >= bestLow) e.verdict = Verdict.PROMISING;
+            else e.verdict = Verdict.UNCERTAIN;
+        }
+        return out;
+    }
+
+    // Analytic Statistics.values() for one configuration over [0, endingTime]
+    public static Estimate estimate(Sim t, int c, double endingTime) {
+        if (t.profile != null || t.forecourt != null || t.trace != null)
+            throw new IllegalArgumentException("The pre-screen covers constant-rate arrivals at identical pumps");
+        if (c < 1) throw new IllegalArgumentException("Need at least 1 pump");
+        double lambda = 1.0 / t.meanInterarrivalTime;
+        double meanLitres = t.litresNeededMin + 0.5 * t.litresNeededRange;
+        double meanService = t.serviceTimeBase + t.serviceTimePerLitre * meanLitres;
+        double varService = t.serviceTimePerLitre * t.serviceTimePerLitre
+                * t.litresNeededRange * t.litresNeededRange / 12.0 + t.serviceTimeSpread * t.serviceTimeSpread;
+        double cs2 = varService / (meanService * meanService);
+
+        // Per line length n: P(join), E[litres; join], E[service; join], filled as the chain grows
+        List<double[]> joins = new ArrayList<>();
+        double served = meanService;                 // mean service of cars that join
+        double[] pi = null;
+        int size = 0;
+        boolean saturated = false;
+        for (int iter = 0; iter < 50; iter++) {
+            double mu = 1.0 / served;
+            // log pi(N), from pi(N+1) / pi(N) = birth(N) / death(N+1)
+            double[] logPi = new double[64];
+            double max = 0.0;
+            int n = 0;
+            saturated = false;
+            while (true) {
+                double birth = lambda * join(t, joins, Math.max(0, n - c))[0];
+                double death = Math.min(n + 1, c) * mu;
+                if (n + 1 == logPi.length) logPi = Arrays.copyOf(logPi, 2 * logPi.length);
+                logPi[n + 1] = (birth > 0) ? logPi[n] + Math.log(birth / death) : Double.NEGATIVE_INFINITY;
+                n++;
+                max = Math.max(max, logPi[n]);
+                if (n >= c && birth < death && logPi[n] < max - 40.0) break; // tail below 1e-17
+                if (n - c >= MAX_CARS) { saturated = true; break; }
+            }
+            size = n + 1;
+            pi = new double[size];
+            double z = 0.0;
+            for (int k = 0; k < size; k++) z += pi[k] = Math.exp(logPi[k] - max);
+            for (int k = 0; k < size; k++) pi[k] /= z;
+            double rate = 0.0, work = 0.0;
+            for (int k = 0; k < size; k++) {
+                double[] j = join(t, joins, Math.max(0, k - c));
+                rate += pi[k] * j[0];
+                work += pi[k] * j[2];
+            }
+            double next = work / rate;
+            boolean converged = Math.abs(next - served) <= 1e-12 * served;
+            served = next;
+            if (converged) break;
+        }
+
+        double joinRate = 0.0, litresRate = 0.0, queue = 0.0, empty = 0.0;
+        for (int k = 0; k < size; k++) {
+            double[] j = join(t, joins, Math.max(0, k - c));
+            joinRate += pi[k] * lambda * j[0];
+            litresRate += pi[k] * lambda * j[1];
+            queue += pi[k] * Math.max(0, k - c);
+            if (k <= c) empty += pi[k];
+        }
+        double wait = saturated ? Double.POSITIVE_INFINITY : (1.0 + cs2) / 2.0 * queue / joinRate; // Allen-Cunneen
+        double[] v = new double[Sim.Statistics.COLUMNS.length];
+        v[0] = lambda * endingTime;                                  // Total Cars
+        v[1] = empty;                                                // NoQueue Fraction
+        v[2] = t.meanInterarrivalTime;                               // Car->Car Time
+        v[3] = meanLitres;                                           // Average Litres
+        v[4] = (lambda - joinRate) * endingTime;                     // Number Balked
+        v[5] = wait;                                                 // Average Wait
+        v[6] = Math.min(1.0, joinRate * served / c);                 // Pump Usage
+        v[7] = litresRate * endingTime * t.profit - t.pumpCost * c;  // Total Profit
+        v[8] = (lambda * meanLitres - litresRate) * endingTime * t.profit; // Lost Profit
+        return new Estimate(c, lambda * meanService / c, v);
+    }
+
+    // {P(join), E[litres; join], E[service; join]} for a car finding n waiting
+    private static double[] join(Sim t, List<double[]> joins, int n) {
+        while (joins.size() <= n) {
+            int k = joins.size();
+            double p = 0.0, l = 0.0, s = 0.0;
+            for (int i = 0; i < QUADRATURE; i++) {
+                double litres = t.litresNeededMin + t.litresNeededRange * (i + 0.5) / QUADRATURE;
+                double q = (k == 0) ? 1.0
+                        : Math.min(1.0, Math.max(0.0, (t.balkA + litres) / (t.balkB * (t.balkC + k))));
+                p += q;
+                l += q * litres;
+                s += q * (t.serviceTimeBase + t.serviceTimePerLitre * litres);
+            }
+            joins.add(new double[] {p / QUADRATURE, l / QUADRATURE, s / QUADRATURE});
+        }
+        return joins.get(n);
+    }
+
+    // Estimates with verdicts, plus the simulated profit where one was run (NaN = not run)
+    public static void print(PrintStream out, Estimate[] est, double[] simulated) {
+        out.printf("%6s %6s %6s %10s %8s %10s %10s %10s %10s  %s%n", "Pumps", "Load", "Usage", "Avg wait",
+                "Balked", "Profit", "Band low", "Band high", "Simulated", "Verdict");
+        for (int i = 0; i < est.length; i++) {
+            Estimate e = est[i];
+            out.printf("%6d %6.3f %6.3f %10.2f %8.1f %10.2f %10.2f %10.2f %10s  %s%n", e.numPumps,
+                    e.offeredLoad, e.values[6], e.values[5], e.values[4], e.profit, e.low, e.high,
+                    Double.isNaN(simulated[i]) ? "-" : String.format("%.2f", simulated[i]),
+                    e.verdict.name().toLowerCase());
+        }
+    }
+
+    // ===== Surrogate =====
+    // Simulated profit ~ b0 + b1 * analytic profit + b2 * offered load, least squares
+    // over earlier runs with the same horizon
+    public static class Surrogate {
+        static final String HEADER = "pumps,mean,balkA,balkB,balkC,end,analytic,load,simulated,reps";
+        private final List<double[]> records = new ArrayList<>(); // HEADER columns
+        private double fittedFor = Double.NaN;                     // horizon of the current fit
+        private double[] beta;                                     // coefficients
+        private double[][] inverse;                                // (X'X)^-1, for the leverage
+        private double spread;                                     // residual standard deviation
+
+        // Earlier runs from a history file (empty if there is none yet)
+        public static Surrogate load(Path file) throws IOException {
+            Surrogate s = new Surrogate();
+            if (!Files.exists(file)) return s;
+            try (BufferedReader in = Files.newBufferedReader(file)) {
+                for (String line; (line = in.readLine()) != null; ) {
+                    line = line.trim();
+                    if (line.isEmpty() || line.startsWith("#") || line.startsWith("pumps")) continue;
+                    String[] f = line.split(",");
+                    if (f.length != 10) throw new IllegalArgumentException("Expected " + HEADER + " in history line: " + line);
+                    double[] r = new double[10];
+                    for (int i = 0; i < 10; i++) r[i] = Double.parseDouble(f[i].trim());
+                    s.records.add(r);
+                }
+            }
+            return s;
+        }
+
+        // Record one simulated configuration at the end of a history file
+        public static void append(Path file, Sim t, Estimate e, double endingTime, double simulated, int reps)
+                throws IOException {
+            boolean fresh = !Files.exists(file);
+            try (BufferedWriter w = Files.newBufferedWriter(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                if (fresh) w.write(HEADER + "\n");
+                w.write(e.numPumps + "," + t.meanInterarrivalTime + "," + t.balkA + "," + t.balkB + "," + t.balkC
+                        + "," + endingTime + "," + e.values[Sim.Statistics.TOTAL_PROFIT] + "," + e.offeredLoad
+                        + "," + simulated + "," + reps + "\n");
+            }
+        }
+
+        // Record one simulated configuration in memory only (the fit is redone on next use)
+        public void add(Sim t, Estimate e, double endingTime, double simulated, int reps) {
+            records.add(new double[] {e.numPumps, t.meanInterarrivalTime, t.balkA, t.balkB, t.balkC, endingTime,
+                    e.values[Sim.Statistics.TOTAL_PROFIT], e.offeredLoad, simulated, reps});
+            fittedFor = Double.NaN;
+        }
+
+        // Runs recorded for this horizon
+        public int size(double endingTime) {
+            int n = 0;
+            for (double[] r : records) if (r[5] == endingTime) n++;
+            return n;
+        }
+
+        // Enough runs at this horizon to fit three coefficients and their spread
+        public boolean ready(double endingTime) { return size(endingTime) >= 6; }
+
+        // Is the analytic profit within the range of the recorded runs? (no extrapolation)
+        public boolean covers(Estimate e, double endingTime) {
+            double lo = Double.POSITIVE_INFINITY, hi = Double.NEGATIVE_INFINITY;
+            for (double[] r : records) {
+                if (r[5] != endingTime) continue;
+                lo = Math.min(lo, r[6]);
+                hi = Math.max(hi, r[6]);
+            }
+            double p = e.values[Sim.Statistics.TOTAL_PROFIT];
+            return p >= lo && p <= hi;
+        }
+
+        // Calibrated profit for an analytic estimate at this horizon
+        public double predict(Estimate e, double endingTime) {
+            fit(endingTime);
+            double[] x = features(e.values[Sim.Statistics.TOTAL_PROFIT], e.offeredLoad);
+            return beta[0] * x[0] + beta[1] * x[1] + beta[2] * x[2];
+        }
+
+        // Half-width of the prediction band: two residual standard deviations,
+        // widened by the leverage of the estimate (far from the recorded runs = wider)
+        public double halfWidth(Estimate e, double endingTime) {
+            fit(endingTime);
+            double[] x = features(e.values[Sim.Statistics.TOTAL_PROFIT], e.offeredLoad);
+            double leverage = 0.0;
+            for (int i = 0; i < 3; i++)
+                for (int j = 0; j < 3; j++) leverage += x[i] * inverse[i][j] * x[j];
+            return 2.0 * spread * Math.sqrt(1.0 + leverage);
+        }
+
+        private static double[] features(double analyticProfit, double offeredLoad) {
+            return new double[] {1.0, analyticProfit, offeredLoad};
+        }
+
+        // Least squares through the inverse of X'X (Gauss-Jordan with partial pivoting)
+        private void fit(double endingTime) {
+            if (endingTime == fittedFor) return;
+            double[][] a = new double[3][6];              // [X'X | I]
+            double[] xty = new double[3];
+            int n = 0;
+            for (double[] r : records) {
+                if (r[5] != endingTime) continue;
+                double[] x = features(r[6], r[7]);
+                for (int i = 0; i < 3; i++) {
+                    for (int j = 0; j < 3; j++) a[i][j] += x[i] * x[j];
+                    xty[i] += x[i] * r[8];
+                }
+                n++;
+            }
+            if (n < 6) throw new IllegalStateException("Surrogate needs at least 6 runs at t=" + endingTime);
+            for (int i = 0; i < 3; i++) {
+                a[i][i] += 1e-9 * (1.0 + a[i][i]);        // ridge against collinear runs
+                a[i][3 + i] = 1.0;
+            }
+            for (int p = 0; p < 3; p++) {
+                int best = p;
+                for (int i = p + 1; i < 3; i++) if (Math.abs(a[i][p]) > Math.abs(a[best][p])) best = i;
+                double[] tmp = a[p]; a[p] = a[best]; a[best] = tmp;
+                double d = a[p][p];
+                for (int j = 0; j < 6; j++) a[p][j] /= d;
+                for (int i = 0; i < 3; i++) {
+                    if (i == p) continue;
+                    double f = a[i][p];
+                    for (int j = 0; j < 6; j++) a[i][j] -= f * a[p][j];
+                }
+            }
+            inverse = new double[3][3];
+            beta = new double[3];
+            for (int i = 0; i < 3; i++)
+                for (int j = 0; j < 3; j++) {
+                    inverse[i][j] = a[i][3 + j];
+                    beta[i] += inverse[i][j] * xty[j];
+                }
+            double sse = 0.0;
+            for (double[] r : records) {
+                if (r[5] != endingTime) continue;
+                double[] x = features(r[6], r[7]);
+                double d = r[8] - (beta[0] * x[0] + beta[1] * x[1] + beta[2] * x[2]);
+                sse += d * d;
+            }
+            spread = Math.sqrt(sse / (n - 3));
+            fittedFor = endingTime;
+        }
+    }
+}
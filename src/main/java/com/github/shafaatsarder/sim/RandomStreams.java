@@ -0,0 +1,81 @@
+package com.github.shafaatsarder.sim; // package for your classes
+
+import java.util.ArrayList;                        // replication roots built so far
+import java.util.List;
+import java.util.Random;                           // legacy generator
+import java.util.random.RandomGenerator;           // common stream type
+import java.util.random.RandomGeneratorFactory;    // named java.util.random algorithms
+
+/**
+ * The four model streams (arrivals, litres, balking, service noise) of every
+ * replication, for a given generator algorithm and base seed.
+ * <ul>
+ *   <li>{@code legacy}: {@link java.util.Random} seeded with
+ *       {@link Replications#seedsFor}, the same streams as before. Normals come from its
+ *       polar method, so results match earlier runs exactly.</li>
+ *   <li>Jumpable algorithms such as {@code Xoshiro256PlusPlus}: one root generator
+ *       from the base seed. Replication r starts r leaps (2^192 steps) into it, and
+ *       stream k of that replication k jumps (2^128 steps) further on, so the
+ *       substreams cannot overlap.</li>
+ *   <li>Other java.util.random algorithms such as {@code L64X128MixRandom}: one
+ *       generator per stream, seeded like the legacy streams.</li>
+ * </ul>
+ * The java.util.random generators are not synchronized and draw normals with the
+ * JDK's modified ziggurat sampler instead of the polar method.
+ * <p>
+ * Streams depend only on (algorithm, base seed, replication), never on the order
+ * in which replications ask for them.
+ */
+class RandomStreams {
+    public static final String LEGACY = "legacy";
+    public static final int STREAMS = 4;           // arrivals, litres, balking, service
+
+    private final String algorithm;
+    private final long baseSeed;
+    private final List<RandomGenerator.LeapableGenerator> roots = new ArrayList<>(); // roots.get(r) = replication r
+
+    public RandomStreams(String algorithm, long baseSeed) {
+        this.algorithm = algorithm;
+        this.baseSeed = baseSeed;
+        if (!LEGACY.equals(algorithm)) create(algorithm, baseSeed); // fail fast on a bad name
+    }
+
+    // One generator of the named algorithm ("legacy" = java.util.Random)
+    public static RandomGenerator create(String algorithm, long seed) {
+        if (LEGACY.equals(algorithm)) return new Random(seed);
+        return RandomGeneratorFactory.of(algorithm).create(seed);
+    }
+
+    // Fresh copies of the four streams of one replication
+    public RandomGenerator[] forReplication(int replication) {
+        RandomGenerator[] streams = new RandomGenerator[STREAMS];
+        RandomGenerator.LeapableGenerator root = rootOf(replication);
+        if (root != null) {
+            RandomGenerator.JumpableGenerator g = root.copy();
+            for (int k = 0; k < STREAMS; k++) {
+                streams[k] = g.copy();
+                g.jump();
+            }
+        } else {
+            long[] seeds = Replications.seedsFor(baseSeed, replication);
+            for (int k = 0; k < STREAMS; k++) streams[k] = create(algorithm, seeds[k]);
+        }
+        return streams;
+    }
+
+    // Root of a replication for leapable algorithms (null otherwise), built in order
+    private synchronized RandomGenerator.LeapableGenerator rootOf(int replication) {
+        if (LEGACY.equals(algorithm)) return null;
+        if (roots.isEmpty()) {
+            RandomGenerator g = create(algorithm, baseSeed);
+            if (!(g instanceof RandomGenerator.LeapableGenerator)) return null;
+            roots.add((RandomGenerator.LeapableGenerator) g);
+        }
+        while (roots.size() <= replication) {
+            RandomGenerator.LeapableGenerator next = roots.get(roots.size() - 1).copy();
+            next.leap();
+            roots.add(next);
+        }
+        return roots.get(replication);
+    }
+}
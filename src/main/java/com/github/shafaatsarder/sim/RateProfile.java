@@ -0,0 +1,158 @@
+package com.github.shafaatsarder.sim; // package for your classes
+
+import java.io.BufferedReader;                    // profile files are short text
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A time-varying arrival rate that repeats every period (normally a day), for
+ * non-homogeneous Poisson arrivals in place of a constant meanInterarrivalTime.
+ * <p>
+ * The profile is a list of (time, rate) breakpoints, with times in seconds from
+ * 0 up to the period and rates in cars per hour. The last breakpoint ends the
+ * period. STEP holds each rate until the next breakpoint, so the last rate is
+ * not used. LINEAR interpolates between breakpoints, ending at the last rate.
+ * Arrivals are drawn by inverting the cumulative intensity L(t): with a standard
+ * exponential E, the next arrival after `now` is the t where
+ * L(t) - L(now) = E. So each arrival costs one exponential and a binary search
+ * over the breakpoints, nothing is rejected however sharp the peaks, and
+ * zero-rate stretches (closed hours) are skipped over exactly. The first car
+ * is drawn the same way from time 0, so there is no extra car at midnight.
+ * <p>
+ * Instances are immutable, so contexts and threads can share one. File format:
+ * one {@code time,rate} line per breakpoint; blank lines, {@code #} comments
+ * and a header line are skipped. Sim reads one with {@code -Dsim.profile=file}
+ * and {@code -Dsim.profile.shape=step|linear}.
+ */
+public class RateProfile {
+    public enum Shape { STEP, LINEAR }
+
+    private final Shape shape;
+    private final double[] times;          // breakpoints, times[0] = 0, last = period
+    private final double[] rates;          // cars per second at each breakpoint
+    private final double[] cumulative;     // L(times[i]) within a period
+    private final double period;
+    private final double perPeriod;        // expected arrivals per period
+
+    public RateProfile(double[] times, double[] carsPerHour, Shape shape) {
+        int n = times.length;
+        if (n < 2 || carsPerHour.length != n) throw new IllegalArgumentException("Need at least two (time, rate) rows");
+        if (times[0] != 0.0) throw new IllegalArgumentException("Profile must start at time 0");
+        this.shape = shape;
+        this.times = times.clone();
+        rates = new double[n];
+        cumulative = new double[n];
+        for (int i = 0; i < n; i++) {
+            if (!(carsPerHour[i] >= 0) || Double.isInfinite(carsPerHour[i]))
+                throw new IllegalArgumentException("Bad rate " + carsPerHour[i] + " in profile row " + (i + 1));
+            rates[i] = carsPerHour[i] / 3600.0;
+            if (i > 0) {
+                if (!(times[i] > times[i - 1])) throw new IllegalArgumentException("Profile times must increase");
+                cumulative[i] = cumulative[i - 1] + area(i - 1, times[i] - times[i - 1]);
+            }
+        }
+        period = times[n - 1];
+        perPeriod = cumulative[n - 1];
+        if (!(perPeriod > 0)) throw new IllegalArgumentException("Profile has no arrivals");
+    }
+
+    // Read `time,rate` rows from a text file
+    public static RateProfile load(Path file, Shape shape) throws IOException {
+        List<double[]> rows = new ArrayList<>();
+        try (BufferedReader in = Files.newBufferedReader(file)) {
+            for (String line; (line = in.readLine()) != null; ) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                if (rows.isEmpty() && Character.isLetter(line.charAt(0))) continue;   // header
+                String[] f = line.split(",");
+                if (f.length < 2) throw new IllegalArgumentException("Expected time,rate in profile line: " + line);
+                rows.add(new double[] {Double.parseDouble(f[0].trim()), Double.parseDouble(f[1].trim())});
+            }
+        }
+        double[] t = new double[rows.size()], r = new double[rows.size()];
+        for (int i = 0; i < t.length; i++) {
+            t[i] = rows.get(i)[0];
+            r[i] = rows.get(i)[1];
+        }
+        return new RateProfile(t, r, shape);
+    }
+
+    // Shape named in -Dsim.profile.shape
+    public static Shape shape(String name) {
+        switch (name) {
+            case "step":   return Shape.STEP;
+            case "linear": return Shape.LINEAR;
+            default: throw new IllegalArgumentException("Unknown profile shape " + name + " (step|linear)");
+        }
+    }
+
+    public double getPeriod() { return period; }
+    public double getArrivalsPerPeriod() { return perPeriod; }
+
+    // Arrival rate at time t, cars per second
+    public double rate(double t) {
+        double u = t - Math.floor(t / period) * period;
+        int i = segment(u);
+        if (shape == Shape.STEP) return rates[i];
+        return rates[i] + slope(i) * (u - times[i]);
+    }
+
+    // Expected arrivals in [0, t]
+    public double cumulative(double t) {
+        double k = Math.floor(t / period);
+        double u = t - k * period;
+        int i = segment(u);
+        return k * perPeriod + cumulative[i] + area(i, u - times[i]);
+    }
+
+    // The next arrival after `now`, given a standard exponential e
+    public double next(double now, double e) {
+        double target = cumulative(now) + e;
+        double k = Math.floor(target / perPeriod);
+        double rem = target - k * perPeriod;
+        if (rem >= perPeriod) { rem -= perPeriod; k++; }   // rounding at a period end
+        int i = firstAbove(rem) - 1;                       // segment whose cumulative range holds rem
+        double d = rem - cumulative[i], s;
+        if (shape == Shape.STEP) {
+            s = d / rates[i];
+        } else {                                           // a s + b s^2 / 2 = d, stable root
+            double a = rates[i], b = slope(i);
+            s = 2 * d / (a + Math.sqrt(Math.max(0.0, a * a + 2 * b * d)));
+        }
+        s = Math.min(s, times[i + 1] - times[i]);
+        return k * period + times[i] + s;
+    }
+
+    // Expected arrivals in the first `s` seconds of segment i
+    private double area(int i, double s) {
+        if (shape == Shape.STEP) return rates[i] * s;
+        return rates[i] * s + 0.5 * slope(i) * s * s;
+    }
+
+    private double slope(int i) {
+        return (i + 1 < rates.length) ? (rates[i + 1] - rates[i]) / (times[i + 1] - times[i]) : 0.0;
+    }
+
+    // Last breakpoint at or before u (0 <= u < period)
+    private int segment(double u) {
+        int lo = 0, hi = times.length - 2;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (times[mid] <= u) lo = mid; else hi = mid - 1;
+        }
+        return lo;
+    }
+
+    // First breakpoint whose cumulative count exceeds c (0 <= c < perPeriod)
+    private int firstAbove(double c) {
+        int lo = 1, hi = cumulative.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (cumulative[mid] > c) hi = mid; else lo = mid + 1;
+        }
+        return lo;
+    }
+}
@@ -0,0 +1,130 @@
+package com.github.shafaatsarder.sim; // package for your classes
+
+import java.io.PrintStream;                       // report output
+import java.util.Arrays;                          // appending gradient columns
+import java.util.concurrent.ExecutionException;   // failure inside a worker
+import java.util.concurrent.ForkJoinPool;         // pool that runs the replications
+import java.util.random.RandomGenerator;          // per-replication streams
+import java.util.stream.IntStream;                // parallel loop over replication numbers
+
+/**
+ * Independent replications of the station, run side by side on a fork-join pool.
+ * <p>
+ * Every replication gets its own {@link Sim} context and its own four streams
+ * from {@link RandomStreams}, which depend only on the generator, the base seed
+ * and the replication number. Results are
+ * stored by replication number and summarized in that order, so the output is
+ * bit-identical whatever the thread count.
+ * <p>
+ * Usage: {@code Replications numPumps endingTime replications baseSeed [threads]}
+ */
+public class Replications {
+
+    public static final double CONFIDENCE = 0.95; // level of the reported intervals
+
+    // ===== Main =====
+    public static void main(String[] args) {
+        if (args.length < 4) {
+            System.out.println("Usage: Replications numPumps endingTime replications baseSeed [threads]");
+            System.out.println("  (-Dsim.gradients=true adds the sensitivity columns)");
+            return;
+        }
+        int numPumps = Integer.parseInt(args[0]);
+        double endingTime = Double.parseDouble(args[1]);
+        int n = Integer.parseInt(args[2]);
+        long baseSeed = Long.parseLong(args[3]);
+        int threads = (args.length > 4) ? Integer.parseInt(args[4])
+                : Runtime.getRuntime().availableProcessors();
+
+        Sim template = new Sim();                   // default model parameters
+        Summary[] summary = summarize(runAll(template, numPumps, endingTime, n, baseSeed, threads));
+        System.out.println(n + " replications of " + numPumps + " pumps to t=" + endingTime
+                + " (base seed " + baseSeed + ")");
+        print(System.out, summary);
+    }
+
+    // Four stream seeds for one replication (SplitMix64 over base seed and index)
+    public static long[] seedsFor(long baseSeed, int replication) {
+        long[] seeds = new long[4];
+        for (int k = 0; k < 4; k++)
+            seeds[k] = mix64(baseSeed + 0x9E3779B97F4A7C15L * (4L * replication + k + 1));
+        return seeds;
+    }
+
+    // SplitMix64 finalizer: spreads nearby inputs over the whole 64-bit range
+    static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    // Run one silent replication and return its final Statistics.values() row
+    // (followed by the Gradients.values() when the template estimates gradients)
+    public static double[] runOne(Sim template, int numPumps, double endingTime, long[] seeds) {
+        Sim sim = new Sim(template);      // private context, silent (no report sink)
+        sim.seed(seeds[0], seeds[1], seeds[2], seeds[3]);
+        return runSeeded(sim, numPumps, endingTime);
+    }
+
+    // Same, with the replication's streams (arrivals, litres, balking, service)
+    public static double[] runOne(Sim template, int numPumps, double endingTime, RandomGenerator[] streams) {
+        Sim sim = new Sim(template);
+        sim.seed(streams);
+        return runSeeded(sim, numPumps, endingTime);
+    }
+
+    private static double[] runSeeded(Sim sim, int numPumps, double endingTime) {
+        sim.reportInterval = Double.POSITIVE_INFINITY;
+        sim.run(numPumps, endingTime);
+        double[] v = sim.stats.values();
+        if (sim.gradients == null) return v;
+        double[] g = sim.gradients.values();
+        double[] row = Arrays.copyOf(v, v.length + g.length);
+        System.arraycopy(g, 0, row, v.length, g.length);
+        return row;
+    }
+
+    // Run n replications on a pool of the given size; row r belongs to replication r
+    public static double[][] runAll(Sim template, int numPumps, double endingTime,
+                                    int n, long baseSeed, int threads) {
+        double[][] rows = new double[n][];
+        RandomStreams streams = new RandomStreams(template.rngName, baseSeed);
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, threads));
+        try {
+            pool.submit(() -> IntStream.range(0, n).parallel().forEach(r ->
+                    rows[r] = runOne(template, numPumps, endingTime, streams.forReplication(r)))).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Replications interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Replication failed", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+        return rows;
+    }
+
+    // One Summary per column, fed in replication order
+    public static Summary[] summarize(double[][] rows) {
+        Summary[] s = new Summary[(rows.length > 0) ? rows[0].length : Sim.Statistics.COLUMNS.length];
+        for (int c = 0; c < s.length; c++) s[c] = new Summary();
+        for (double[] row : rows)
+            for (int c = 0; c < s.length; c++) s[c].add(row[c]);
+        return s;
+    }
+
+    // Table of mean, variance and confidence interval for every column
+    public static void print(PrintStream out, Summary[] s) {
+        out.printf("%-18s %14s %14s %14s %14s%n", "Column", "Mean", "Variance", "95% CI low", "95% CI high");
+        for (int c = 0; c < s.length; c++) {
+            out.printf("%-18s %14.4f %14.4f %14.4f %14.4f%n", columnName(c),
+                    s[c].mean(), s[c].variance(), s[c].lower(CONFIDENCE), s[c].upper(CONFIDENCE));
+        }
+    }
+
+    // Statistics columns first, then the Gradients columns
+    static String columnName(int c) {
+        int n = Sim.Statistics.COLUMNS.length;
+        return (c < n) ? Sim.Statistics.COLUMNS[c] : Gradients.COLUMNS[c - n];
+    }
+}
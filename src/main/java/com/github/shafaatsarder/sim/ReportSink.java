@@ -0,0 +1,265 @@
+package com.github.shafaatsarder.sim; // package for your classes
+
+import java.io.IOException;               // channel write failures
+import java.io.OutputStream;              // where the bytes end up
+import java.io.UncheckedIOException;      // surfaced from inside events
+import java.nio.ByteBuffer;               // reusable output buffer
+import java.nio.ByteOrder;                // binary rows are little-endian
+import java.nio.channels.Channels;        // stream -> channel adapter
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets; // ASCII header text
+
+/**
+ * Destination for Statistics snapshot rows.
+ * <p>
+ * Rows are formatted straight into one reusable byte buffer, which is written
+ * to the channel only when it fills up or on {@link #flush()}, so reporting
+ * allocates nothing per row. Three formats:
+ * <ul>
+ *   <li>{@code table}: the fixed-width console table, byte-for-byte as before</li>
+ *   <li>{@code csv}: one comma-separated line per row, six decimals, empty for Unknown</li>
+ *   <li>{@code binary}: an 8-byte magic and the column count as a long, then per
+ *       row the time and the column values as little-endian doubles (NaN for Unknown)</li>
+ * </ul>
+ */
+abstract class ReportSink {
+    private static final int BUFFER_SIZE = 1 << 16;  // bytes buffered between writes
+
+    protected final ByteBuffer buf = ByteBuffer.allocate(BUFFER_SIZE);
+    private final OutputStream stream;               // flushed after the channel write
+    private final WritableByteChannel channel;       // buffered bytes go through here
+
+    protected ReportSink(OutputStream stream) {
+        this.stream = stream;
+        this.channel = Channels.newChannel(stream);
+    }
+
+    // Build a sink by format name: "table", "csv" or "binary"
+    static ReportSink open(String format, OutputStream stream) {
+        switch (format.trim().toLowerCase()) {
+            case "table":  return new Table(stream);
+            case "csv":    return new Csv(stream);
+            case "binary": return new Binary(stream);
+            default:
+                throw new IllegalArgumentException("Unknown report format: " + format);
+        }
+    }
+
+    // Once, before the first row; columns is the length of every values array
+    // (Statistics.COLUMNS, followed by Metrics.COLUMNS when metrics are on)
+    public abstract void header(int columns);
+    public abstract void row(double time, double[] values); // values in column order
+
+    // Write out everything buffered so far
+    public void flush() {
+        try {
+            drain();
+            stream.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Make room for n more bytes
+    protected void reserve(int n) {
+        if (buf.remaining() < n) {
+            try {
+                drain();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private void drain() throws IOException {
+        buf.flip();
+        while (buf.hasRemaining()) channel.write(buf);
+        buf.clear();
+    }
+
+    protected void putAscii(byte[] text) {
+        reserve(text.length);
+        buf.put(text);
+    }
+
+    protected void putSpaces(int n) {
+        for (int i = 0; i < n; i++) buf.put((byte) ' ');
+    }
+
+    // Number of characters Long.toString(v) would produce
+    protected static int decimalLength(long v) {
+        int n = (v < 0) ? 2 : 1;
+        long a = Math.abs(v);
+        while (a >= 10) { a /= 10; n++; }
+        return n;
+    }
+
+    // Digit (or '-') at position i of Long.toString(v), which is len chars long
+    protected static byte decimalChar(long v, int len, int i) {
+        if (v < 0) {
+            if (i == 0) return '-';
+            v = -v;
+        }
+        for (int k = len - 1; k > i; k--) v /= 10;
+        return (byte) ('0' + (v % 10));
+    }
+
+    protected static final byte[] NEWLINE = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+
+    // ===== Table =====
+    static class Table extends ReportSink {
+        private static final byte[] HEADER = (
+                "Current  Total  NoQueue  Car->Car  Average  Number  Average    Pump    Total     Lost"
+                        + System.lineSeparator()
+                        + "  Time    Cars  Fraction   Time     Litres  Balked    Wait     Usage   Profit   Profit"
+                        + System.lineSeparator()
+                        + "-".repeat(90) + System.lineSeparator()).getBytes(StandardCharsets.US_ASCII);
+        private static final byte[] METRICS_HEADER = (
+                "Current  Total  NoQueue  Car->Car  Average  Number  Average    Pump    Total     Lost"
+                        + "     Wait     Wait     Wait  Service     Mean    Queue      Max"
+                        + System.lineSeparator()
+                        + "  Time    Cars  Fraction   Time     Litres  Balked    Wait     Usage   Profit   Profit"
+                        + "      p50      p95      p99      p95    Queue      p95    Queue"
+                        + System.lineSeparator()
+                        + "-".repeat(153) + System.lineSeparator()).getBytes(StandardCharsets.US_ASCII);
+        private static final byte[] UNKNOWN = "   Unknown".getBytes(StandardCharsets.US_ASCII);
+        private static final byte[] UNKNOWN9 = "  Unknown".getBytes(StandardCharsets.US_ASCII);
+
+        Table(OutputStream stream) { super(stream); }
+
+        @Override
+        public void header(int columns) {
+            putAscii(columns > Sim.Statistics.COLUMNS.length ? METRICS_HEADER : HEADER);
+        }
+
+        @Override
+        public void row(double time, double[] v) {
+            reserve(256);                                   // a row is about 90 bytes
+            putFixed(time, 8, 0);                           // time column
+            putInt((int) v[0], 7);                          // arrivals so far
+            putFixed(v[1], 9, 3);                           // no-queue fraction
+            if (Double.isNaN(v[2])) {                       // no arrivals yet
+                buf.put(UNKNOWN).put(UNKNOWN);
+            } else {
+                putFixed(v[2], 9, 3);                       // car-to-car time
+                putFixed(v[3], 8, 3);                       // average litres
+            }
+            putInt((int) v[4], 8);                          // how many balked
+            if (Double.isNaN(v[5])) buf.put(UNKNOWN);       // nobody served yet
+            else putFixed(v[5], 9, 3);                      // average wait
+            putFixed(v[6], 8, 3);                           // pump usage
+            putFixed(v[7], 10, 2);                          // total profit
+            putFixed(v[8], 9, 2);                           // lost profit
+            if (v.length > Sim.Statistics.COLUMNS.length) { // Metrics columns
+                for (int c = 9; c < 15; c++) {
+                    if (Double.isNaN(v[c])) buf.put(UNKNOWN9); // no samples yet
+                    else putFixed(v[c], 9, 3);
+                }
+                putInt((int) v[15], 9);                     // max queue
+            }
+            buf.put(NEWLINE);
+        }
+
+        // Same text as the original fmtDbl: round with (int)(x*10^prec + 0.5),
+        // zero-pad to prec+1 characters, insert the point, left-pad with spaces
+        private void putFixed(double num, int width, int prec) {
+            double scale = 1.0;                             // 10^prec for rounding
+            for (int i = 0; i < prec; i++) scale *= 10.0;
+            int v = (int) (num * scale + 0.5);
+            int n = decimalLength(v);
+            if (prec == 0) {
+                putSpaces(width - n);
+                for (int i = 0; i < n; i++) buf.put(decimalChar(v, n, i));
+                return;
+            }
+            int zeros = Math.max(0, prec + 1 - n);         // leading '0' padding
+            int digits = zeros + n;
+            int point = digits - prec;                      // '.' goes before this char
+            putSpaces(width - digits - 1);
+            for (int i = 0; i < digits; i++) {
+                if (i == point) buf.put((byte) '.');
+                buf.put(i < zeros ? (byte) '0' : decimalChar(v, n, i - zeros));
+            }
+        }
+
+        // Same text as the original fmtInt
+        private void putInt(int v, int width) {
+            int n = decimalLength(v);
+            putSpaces(width - n);
+            for (int i = 0; i < n; i++) buf.put(decimalChar(v, n, i));
+        }
+    }
+
+    // ===== CSV =====
+    static class Csv extends ReportSink {
+        private static final String HEADER = "time,total_cars,no_queue_fraction,car_to_car_time,"
+                + "average_litres,number_balked,average_wait,pump_usage,total_profit,lost_profit";
+        private static final String METRICS_HEADER =
+                ",wait_p50,wait_p95,wait_p99,service_p95,mean_queue,queue_p95,max_queue";
+        private static final int DECIMALS = 6;             // digits after the point
+        private static final double SCALE = 1e6;           // 10^DECIMALS
+
+        Csv(OutputStream stream) { super(stream); }
+
+        @Override
+        public void header(int columns) {
+            String h = (columns > Sim.Statistics.COLUMNS.length) ? HEADER + METRICS_HEADER : HEADER;
+            putAscii((h + System.lineSeparator()).getBytes(StandardCharsets.US_ASCII));
+        }
+
+        @Override
+        public void row(double time, double[] v) {
+            reserve(64 * (v.length + 1));
+            putNumber(time);
+            for (double x : v) {
+                buf.put((byte) ',');
+                putNumber(x);
+            }
+            buf.put(NEWLINE);
+        }
+
+        // Fixed six decimals, trailing zeros trimmed; NaN -> empty field
+        private void putNumber(double x) {
+            if (Double.isNaN(x)) return;
+            if (Double.isInfinite(x) || Math.abs(x) >= 9e12) {  // out of long range when scaled
+                putAscii(Double.toString(x).getBytes(StandardCharsets.US_ASCII));
+                return;
+            }
+            long scaled = Math.round(Math.abs(x) * SCALE);
+            if (x < 0 && scaled != 0) buf.put((byte) '-');
+            long whole = scaled / (long) SCALE;
+            long frac = scaled % (long) SCALE;
+            int n = decimalLength(whole);
+            for (int i = 0; i < n; i++) buf.put(decimalChar(whole, n, i));
+            if (frac == 0) return;
+            int keep = DECIMALS;
+            while (frac % 10 == 0) { frac /= 10; keep--; }  // trim trailing zeros
+            buf.put((byte) '.');
+            for (int i = 0; i < keep; i++) buf.put(decimalChar(frac, keep, i)); // zero-padded
+        }
+    }
+
+    // ===== Binary =====
+    static class Binary extends ReportSink {
+        static final long MAGIC = 0x3176525453534147L;     // "GASSTRv1" little-endian
+
+        Binary(OutputStream stream) {
+            super(stream);
+            buf.order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        @Override
+        public void header(int columns) {
+            reserve(16);
+            buf.putLong(MAGIC);
+            buf.putLong(columns);
+        }
+
+        @Override
+        public void row(double time, double[] v) {
+            reserve(8 * (v.length + 1));
+            buf.putDouble(time);
+            for (double x : v) buf.putDouble(x);
+        }
+    }
+}
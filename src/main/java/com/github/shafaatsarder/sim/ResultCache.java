@@ -0,0 +1,229 @@
+package com.github.shafaatsarder.sim; // package for your classes
+
+import java.io.ByteArrayOutputStream;             // computed rows
+import java.io.IOException;                       // store failures
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;                       // key encoding, row decoding
+import java.nio.ByteOrder;                        // binary rows are little-endian
+import java.nio.charset.StandardCharsets;         // strings in the key
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;          // last use, for disk eviction
+import java.security.MessageDigest;               // SHA-256 of the key
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;                   // in-memory LRU tier
+import java.util.List;
+
+/**
+ * Content-addressed cache of report rows, so a scenario that was simulated once
+ * is served again without simulating.
+ * <p>
+ * The key is the SHA-256 of a canonical encoding of every parameter that
+ * shapes the rows: the Sim parameters, generator, metrics/warm-up/precision
+ * settings, pump count, ending time, the four seeds and {@link #MODEL_VERSION}.
+ * The FEL backend is left out, since every backend gives the same rows. The
+ * value is the run's rows in the binary report format (header and every
+ * snapshot row, the last one being the final Statistics). Both hits and
+ * misses are rendered from these doubles through the same {@link ReportSink},
+ * so cached and computed output are byte-equal.
+ * <p>
+ * Two tiers: an LRU map in memory bounded by maxMemoryBytes, and one file per
+ * key in the cache directory bounded by maxDiskBytes. When the directory is
+ * over the bound, the least recently used files are deleted, using file times
+ * that are touched on every hit. Files are written to a temporary name and
+ * moved into place, so readers never see half an entry.
+ * <p>
+ * Only the rows are cached. Runs with Metrics, SteadyState, instrumentation or gradients
+ * also print end-of-run summaries, so {@link #canCache} sends those past the cache,
+ * and so it does with rate profiles and forecourts, which the key does not cover.
+ * <p>
+ * Bump MODEL_VERSION whenever a change to the model alters its results.
+ */
+public class ResultCache {
+    public static final int MODEL_VERSION = 1;        // part of every key
+    private static final String SUFFIX = ".rows";     // entry files: <sha256 hex>.rows
+
+    private final Path dir;
+    private final long maxDiskBytes;
+    private final long maxMemoryBytes;
+    private final LinkedHashMap<String, byte[]> memory = new LinkedHashMap<>(16, 0.75f, true); // access order
+    private long memoryBytes;                         // sum of cached row images in memory
+    private long hits, misses;
+
+    public ResultCache(Path dir, long maxDiskBytes, long maxMemoryBytes) {
+        this.dir = dir;
+        this.maxDiskBytes = maxDiskBytes;
+        this.maxMemoryBytes = maxMemoryBytes;
+        try {
+            Files.createDirectories(dir);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Cache in `dir`, bounds from -Dsim.cache.disk and -Dsim.cache.memory (bytes)
+    public static ResultCache open(Path dir) {
+        return new ResultCache(dir, Long.getLong("sim.cache.disk", 256L << 20),
+                Long.getLong("sim.cache.memory", 32L << 20));
+    }
+
+    // Are the rows everything this run prints?
+    public static boolean canCache(Sim template) {
+        return !template.collectMetrics && !template.detectWarmup && !(template.targetPrecision > 0)
+                && !template.instrument && !template.estimateGradients && template.profile == null
+                && template.forecourt == null;
+    }
+
+    // Hex SHA-256 of the canonical scenario encoding
+    public static String key(Sim t, int numPumps, double endingTime, long[] seeds) {
+        ByteBuffer b = ByteBuffer.allocate(512).order(ByteOrder.LITTLE_ENDIAN);
+        b.putInt(MODEL_VERSION);
+        for (double v : new double[] {t.reportInterval, t.profit, t.pumpCost, t.litresNeededMin,
+                t.litresNeededRange, t.serviceTimeBase, t.serviceTimePerLitre, t.serviceTimeSpread,
+                t.balkA, t.balkB, t.balkC, t.meanInterarrivalTime, t.targetPrecision, endingTime}) {
+            b.putDouble(v == 0.0 ? 0.0 : v);          // -0.0 and 0.0 behave the same
+        }
+        b.put((byte) (t.collectMetrics ? 1 : 0)).put((byte) (t.detectWarmup ? 1 : 0));
+        byte[] rng = t.rngName.getBytes(StandardCharsets.UTF_8);
+        b.putInt(rng.length).put(rng);
+        b.putInt(numPumps);
+        b.putInt(seeds.length);
+        for (long s : seeds) b.putLong(s);
+        try {
+            MessageDigest sha = MessageDigest.getInstance("SHA-256");
+            sha.update(b.array(), 0, b.position());
+            StringBuilder hex = new StringBuilder(64);
+            for (byte x : sha.digest())
+                hex.append(Character.forDigit((x >> 4) & 15, 16)).append(Character.forDigit(x & 15, 16));
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    // The run's rows (binary report format), from the cache or by simulating
+    public byte[] rows(Sim template, int numPumps, double endingTime, long[] seeds) {
+        String key = key(template, numPumps, endingTime, seeds);
+        byte[] rows = lookup(key);
+        if (rows != null) return rows;
+        rows = compute(template, numPumps, endingTime, seeds);   // outside the lock
+        store(key, rows);
+        return rows;
+    }
+
+    // Simulate silently into binary rows
+    static byte[] compute(Sim template, int numPumps, double endingTime, long[] seeds) {
+        Sim sim = new Sim(template);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        sim.report = ReportSink.open("binary", bytes);
+        sim.seed(seeds[0], seeds[1], seeds[2], seeds[3]);
+        sim.run(numPumps, endingTime);
+        sim.report.flush();
+        return bytes.toByteArray();
+    }
+
+    // Send cached rows to a sink of any format, header first
+    public static void replay(byte[] rows, ReportSink sink) {
+        ByteBuffer b = ByteBuffer.wrap(rows).order(ByteOrder.LITTLE_ENDIAN);
+        if (!valid(b)) throw new IllegalArgumentException("Not a row image");
+        int columns = (int) b.getLong(8);
+        sink.header(columns);
+        double[] values = new double[columns];
+        for (int p = 16; p < rows.length; ) {
+            double time = b.getDouble(p);
+            p += 8;
+            for (int c = 0; c < columns; c++, p += 8) values[c] = b.getDouble(p);
+            sink.row(time, values);
+        }
+    }
+
+    // Magic, a sane column count and whole rows
+    private static boolean valid(ByteBuffer b) {
+        int n = b.limit();
+        if (n < 16 || b.getLong(0) != ReportSink.Binary.MAGIC) return false;
+        long columns = b.getLong(8);
+        return columns > 0 && columns < 1024 && (n - 16) % (8 * (columns + 1)) == 0;
+    }
+
+    private synchronized byte[] lookup(String key) {
+        byte[] rows = memory.get(key);
+        if (rows != null) {
+            hits++;
+            return rows;
+        }
+        Path file = dir.resolve(key + SUFFIX);
+        try {
+            if (Files.exists(file)) {
+                rows = Files.readAllBytes(file);
+                if (valid(ByteBuffer.wrap(rows).order(ByteOrder.LITTLE_ENDIAN))) {
+                    Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+                    remember(key, rows);
+                    hits++;
+                    return rows;
+                }
+                Files.deleteIfExists(file);           // damaged entry: simulate again
+            }
+        } catch (IOException e) {
+            // unreadable entry counts as a miss
+        }
+        misses++;
+        return null;
+    }
+
+    private synchronized void store(String key, byte[] rows) {
+        remember(key, rows);
+        try {
+            Path tmp = Files.createTempFile(dir, key, ".tmp");
+            Files.write(tmp, rows);
+            Files.move(tmp, dir.resolve(key + SUFFIX), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            evictDisk();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Into the memory tier, dropping least recently used entries over the bound
+    private void remember(String key, byte[] rows) {
+        if (rows.length > maxMemoryBytes) return;     // would evict everything else
+        byte[] old = memory.put(key, rows);
+        if (old != null) memoryBytes -= old.length;
+        memoryBytes += rows.length;
+        Iterator<byte[]> it = memory.values().iterator(); // eldest first
+        while (memoryBytes > maxMemoryBytes && it.hasNext()) {
+            memoryBytes -= it.next().length;
+            it.remove();
+        }
+    }
+
+    // Delete the least recently used files until the directory fits
+    private void evictDisk() throws IOException {
+        List<Path> files = new ArrayList<>();
+        long total = 0;
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir, "*" + SUFFIX)) {
+            for (Path p : entries) {
+                files.add(p);
+                total += Files.size(p);
+            }
+        }
+        if (total <= maxDiskBytes) return;
+        List<FileTime> times = new ArrayList<>();
+        for (Path p : files) times.add(Files.getLastModifiedTime(p));
+        Integer[] order = new Integer[files.size()];
+        for (int i = 0; i < order.length; i++) order[i] = i;
+        Arrays.sort(order, (x, y) -> times.get(x).compareTo(times.get(y)));
+        for (int i = 0; i < order.length && total > maxDiskBytes; i++) {
+            Path p = files.get(order[i]);
+            total -= Files.size(p);
+            Files.deleteIfExists(p);
+        }
+    }
+
+    public synchronized long getHits() { return hits; }
+    public synchronized long getMisses() { return misses; }
+}
@@ -3,78 +3,195 @@ package com.github.shafaatsarder.sim; // package for your classes
 import java.io.BufferedReader;        // to read text line-by-line
 import java.io.IOException;           // for input exception handling
 import java.io.InputStreamReader;     // to wrap System.in
-import java.util.Random;              // random-number generator
+import java.io.PrintStream;           // banner destination
+import java.nio.file.Path;            // result cache directory
+import java.util.Arrays;              // growing the object pools
+import java.util.random.RandomGenerator; // random-number stream
 
 public class Sim {
 
-    // ===== Global parameters =====
-    public static double simulationTime;     // current simulated time
-    public static double reportInterval;     // how often we print a stats snapshot
+    // ===== Run parameters (per simulation context) =====
+    public double simulationTime;     // current simulated time
+    public double reportInterval;     // how often we print a stats snapshot
 
-    public static double profit = 0.025;     // profit per litre of fuel sold
-    public static double pumpCost = 20.0;    // daily cost per pump (flat cost)
+    public double profit = 0.025;     // profit per litre of fuel sold
+    public double pumpCost = 20.0;    // daily cost per pump (flat cost)
 
-    public static double litresNeededMin = 10.0;    // min litres a car needs
-    public static double litresNeededRange = 50.0;  // additional random range (so 10..60)
+    public double litresNeededMin = 10.0;    // min litres a car needs
+    public double litresNeededRange = 50.0;  // additional random range (so 10..60)
 
-    public static double serviceTimeBase = 150.0;   // base seconds per service
-    public static double serviceTimePerLitre = 0.5; // extra seconds per litre pumped
-    public static double serviceTimeSpread = 30.0;  // std dev for normal noise
+    public double serviceTimeBase = 150.0;   // base seconds per service
+    public double serviceTimePerLitre = 0.5; // extra seconds per litre pumped
+    public double serviceTimeSpread = 30.0;  // std dev for normal noise
 
-    public static double balkA = 40.0;  // balk formula constant A
-    public static double balkB = 25.0;  // balk formula constant B
-    public static double balkC = 3.0;   // balk formula constant C
+    public double balkA = 40.0;  // balk formula constant A
+    public double balkB = 25.0;  // balk formula constant B
+    public double balkC = 3.0;   // balk formula constant C
 
-    public static double meanInterarrivalTime = 50.0; // mean time between car arrivals
+    public double meanInterarrivalTime = 50.0; // mean time between car arrivals
+    public RateProfile profile;                // time-varying arrival rate (null = constant mean above)
+    public Forecourt forecourt;                // fuel grades, pump types, dispatch (null = identical pumps, one line)
+
+    public String fesName = System.getProperty("sim.fes", "list"); // FEL backend (-Dsim.fes=list|heap|calendar)
+    public ReportSink report;         // where snapshots go (null = silent)
+    public boolean collectMetrics = Boolean.getBoolean("sim.metrics"); // percentiles etc. (-Dsim.metrics=true)
+    public boolean detectWarmup = Boolean.getBoolean("sim.warmup");    // MSER-5 truncation (-Dsim.warmup=true)
+    public double targetPrecision =                                     // stop at this relative half-width
+            Double.parseDouble(System.getProperty("sim.precision", "0")); // (0 = run to endingTime)
+    public boolean instrument = Boolean.getBoolean("sim.instrument"); // JFR/JMX loop counters (-Dsim.instrument=true)
+    public boolean estimateGradients = Boolean.getBoolean("sim.gradients"); // IPA/LR sensitivities (-Dsim.gradients=true)
+    public String rngName = System.getProperty("sim.rng", RandomStreams.LEGACY); // generator (-Dsim.rng=legacy|L64X128MixRandom|Xoshiro256PlusPlus|...)
 
     // Independent random streams for different stochastic components
-    public static Random arrivalStream;  // randomness for arrivals
-    public static Random litreStream;    // randomness for litres needed
-    public static Random balkingStream;  // randomness for balk decision
-    public static Random serviceStream;  // randomness for service-time noise
+    public RandomGenerator arrivalStream;  // randomness for arrivals
+    public RandomGenerator litreStream;    // randomness for litres needed
+    public RandomGenerator balkingStream;  // randomness for balk decision
+    public RandomGenerator serviceStream;  // randomness for service-time noise
+
+    // Variates drawn ahead in blocks from the streams above (same sequences)
+    final VariateBuffer arrivalVariates = new VariateBuffer(VariateBuffer.Kind.EXPONENTIAL); // interarrival / mean
+    final VariateBuffer litreVariates = new VariateBuffer(VariateBuffer.Kind.UNIFORM);       // litres fraction
+    final VariateBuffer serviceVariates = new VariateBuffer(VariateBuffer.Kind.NORMAL);      // service noise
+
+    // Major model objects (one set per context, so contexts can run side by side)
+    public FutureEventSet eventList; // future events sorted by time
+    public CarQueue carQueue;     // FIFO queue of waiting cars
+    public PumpStand pumpStand;   // pool of pumps
+    public Statistics stats;      // collects & prints statistics
+    public Metrics metrics;       // distributions (null unless collectMetrics)
+    public SteadyState steadyState; // warm-up / batch means (null unless asked for)
+    public Corridor.Station onward; // where balking cars drive on to (null = they leave)
+    public Trace trace;           // recorded arrivals replayed instead of drawn (null = synthetic)
+    public EngineMonitor monitor; // event-loop counters (null unless instrument)
+    public Gradients gradients;   // parameter sensitivities (null unless estimateGradients)
+    public Dispatcher dispatcher; // grade lines and pump sets (null unless forecourt)
+
+    // Recycled objects, so the steady-state event loop allocates nothing
+    private Car[] freeCars = new Car[16];             // stack of spare cars
+    private int freeCarCount;
+    private Departure[] freeDepartures = new Departure[16]; // stack of spare departures
+    private int freeDepartureCount;
+
+    public Sim() { } // default parameters, no streams yet
+
+    // Copy the parameters (not the model state) of another context
+    public Sim(Sim template) {
+        reportInterval = template.reportInterval;
+        profit = template.profit;
+        pumpCost = template.pumpCost;
+        litresNeededMin = template.litresNeededMin;
+        litresNeededRange = template.litresNeededRange;
+        serviceTimeBase = template.serviceTimeBase;
+        serviceTimePerLitre = template.serviceTimePerLitre;
+        serviceTimeSpread = template.serviceTimeSpread;
+        balkA = template.balkA;
+        balkB = template.balkB;
+        balkC = template.balkC;
+        meanInterarrivalTime = template.meanInterarrivalTime;
+        profile = template.profile;                 // immutable, so shared
+        forecourt = template.forecourt;             // likewise
+        fesName = template.fesName;
+        collectMetrics = template.collectMetrics;
+        detectWarmup = template.detectWarmup;
+        targetPrecision = template.targetPrecision;
+        rngName = template.rngName;
+        instrument = template.instrument;
+        estimateGradients = template.estimateGradients;
+    }
 
-    // Major model objects (singletons for this run)
-    public static EventList eventList;   // future events sorted by time
-    public static CarQueue carQueue;     // FIFO queue of waiting cars
-    public static PumpStand pumpStand;   // pool of pumps
-    public static Statistics stats;      // collects & prints statistics
+    // Build the four independent streams from their seeds, with the rngName generator
+    public void seed(long arrivalSeed, long litreSeed, long balkingSeed, long serviceSeed) {
+        arrivalStream = RandomStreams.create(rngName, arrivalSeed);
+        litreStream = RandomStreams.create(rngName, litreSeed);
+        balkingStream = RandomStreams.create(rngName, balkingSeed);
+        serviceStream = RandomStreams.create(rngName, serviceSeed);
+    }
+
+    // Use ready-made streams (arrivals, litres, balking, service), e.g. from RandomStreams
+    public void seed(RandomGenerator[] streams) {
+        arrivalStream = streams[0];
+        litreStream = streams[1];
+        balkingStream = streams[2];
+        serviceStream = streams[3];
+    }
 
     // ===== Main =====
     public static void main(String[] args) throws IOException {
         // Reader to get parameters from stdin (one value per line)
         BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+        Sim sim = new Sim();
 
         // 1) read general run parameters
-        reportInterval = Double.parseDouble(in.readLine().trim()); // snapshot period
+        sim.reportInterval = Double.parseDouble(in.readLine().trim()); // snapshot period
         double endingTime = Double.parseDouble(in.readLine().trim()); // when to stop
         int numPumps = Integer.parseInt(in.readLine().trim());        // pump count
 
-        // Show configuration header
-        System.out.print("This simulation run uses " + numPumps + " pumps");
-        System.out.println(" and the following random number seeds:");
-
-        // 2) read seeds and build independent Random streams
-        int seed = Integer.parseInt(in.readLine().trim()); // seed for arrivals
-        arrivalStream = new Random(seed);
-        System.out.print(seed + " ");
+        // table (default), csv or binary rows; the banner stays off machine-readable output
+        String format = System.getProperty("sim.report", "table");
+        PrintStream banner = format.equals("table") ? System.out : System.err;
 
-        seed = Integer.parseInt(in.readLine().trim());     // seed for litres
-        litreStream = new Random(seed);
-        System.out.print(seed + " ");
-
-        seed = Integer.parseInt(in.readLine().trim());     // seed for balking
-        balkingStream = new Random(seed);
-        System.out.print(seed + " ");
+        // Show configuration header
+        banner.print("This simulation run uses " + numPumps + " pumps");
+        banner.println(" and the following random number seeds:");
+
+        // 2) read seeds for the independent Random streams
+        int[] seeds = new int[4]; // arrivals, litres, balking, service time
+        for (int i = 0; i < seeds.length; i++) {
+            seeds[i] = Integer.parseInt(in.readLine().trim());
+            if (i < seeds.length - 1) banner.print(seeds[i] + " ");
+            else banner.println(seeds[i]);                          // end line of seeds banner
+        }
+        sim.seed(seeds[0], seeds[1], seeds[2], seeds[3]);
+
+        String profilePath = System.getProperty("sim.profile");     // rush hours (-Dsim.profile=file)
+        if (profilePath != null)
+            sim.profile = RateProfile.load(Path.of(profilePath),
+                    RateProfile.shape(System.getProperty("sim.profile.shape", "step")));
+        sim.forecourt = Forecourt.fromProperties();                  // grades (-Dsim.grades/-Dsim.pumps/-Dsim.dispatch)
+
+        String cacheDir = System.getProperty("sim.cache");          // reuse identical earlier runs (-Dsim.cache=dir)
+        if (cacheDir != null && ResultCache.canCache(sim) && System.getProperty("sim.trace") == null) {
+            long[] key = {seeds[0], seeds[1], seeds[2], seeds[3]};
+            ReportSink out = ReportSink.open(format, System.out);
+            ResultCache.replay(ResultCache.open(Path.of(cacheDir)).rows(sim, numPumps, endingTime, key), out);
+            out.flush();
+            return;
+        }
+
+        String tracePath = System.getProperty("sim.trace");          // replay a log (-Dsim.trace=file)
+        if (tracePath != null) sim.trace = Trace.open(Path.of(tracePath));
+
+        sim.report = ReportSink.open(format, System.out);           // buffered onto stdout
+        sim.run(numPumps, endingTime);
+        sim.report.flush();
+        if (sim.metrics != null) sim.metrics.printSummary(banner, sim.simulationTime); // final distributions
+        if (sim.steadyState != null) sim.steadyState.printSummary(banner);             // warm-up, batch means
+        if (sim.monitor != null) sim.monitor.printSummary(banner);                     // loop counters
+        if (sim.gradients != null) sim.gradients.printSummary(banner);                 // sensitivities
+        if (sim.dispatcher != null) sim.dispatcher.printSummary(banner);               // per-grade service
+    }
 
-        seed = Integer.parseInt(in.readLine().trim());     // seed for service time
-        serviceStream = new Random(seed);
-        System.out.println(seed); // end line of seeds banner
+    // Run one replication from an empty station at t=0 until endingTime
+    public void run(int numPumps, double endingTime) {
+        start(numPumps, endingTime);
+        while (step()) { }  // main simulation loop
+    }
 
+    // Build an empty station and schedule the initial events; seed first (a rate
+    // profile draws the first arrival here)
+    public void start(int numPumps, double endingTime) {
         // 3) create model components
-        eventList = new EventList();          // empty future-event list
-        carQueue = new CarQueue();            // empty waiting line
-        pumpStand = new PumpStand(numPumps);  // stand with N pumps
-        stats = new Statistics();             // stats printer/collector
+        simulationTime = 0.0;
+        eventList = FutureEventSet.create(fesName); // empty future-event list
+        carQueue = new CarQueue(this);              // empty waiting line
+        pumpStand = new PumpStand(this, numPumps);  // stand with N pumps
+        dispatcher = (forecourt != null) ? new Dispatcher(this, forecourt) : null; // optional grades
+        metrics = collectMetrics ? new Metrics(numPumps, 0.0) : null; // optional distributions
+        steadyState = (detectWarmup || targetPrecision > 0)         // optional run-length control
+                ? new SteadyState(this, detectWarmup, targetPrecision) : null;
+        stats = new Statistics(this);               // stats printer/collector
+        monitor = instrument ? new EngineMonitor(this) : null; // optional loop counters
+        gradients = estimateGradients ? new Gradients(this, numPumps) : null; // optional sensitivities
 
         // 4) schedule initial events
         EndOfSimulation endEvent = new EndOfSimulation(endingTime); // stop marker
@@ -83,20 +200,72 @@ public class Sim {
         if (reportInterval <= endingTime)                           // only if useful
             eventList.insert(new Report(reportInterval));           // first snapshot
 
-        eventList.insert(new Arrival(0.0));     // first arrival at time 0
+        if (trace == null && profile != null)                      // first car of the profile,
+            eventList.insert(new Arrival(profile.next(0.0,           // not one at midnight
+                    arrivalVariates.next(arrivalStream))));
+        else if (trace == null) eventList.insert(new Arrival(0.0)); // first arrival at time 0
+        else if (trace.next()) eventList.insert(new TraceArrival(trace.time())); // first logged car
+    }
 
-        // 5) main simulation loop: pop next event, jump time, execute, repeat
-        while (true) {
-            Event currentEvent = eventList.takeNextEvent(); // earliest future event
-            simulationTime = currentEvent.getTime();        // advance clock to it
-            currentEvent.makeItHappen();                    // execute event logic
-            if (currentEvent instanceof EndOfSimulation)    // if that was the stop
-                break;                                      // exit the loop
+    // 5) one turn of the loop: pop next event, jump time, execute; false after the stop
+    public boolean step() {
+        Event currentEvent = eventList.takeNextEvent(); // earliest future event
+        simulationTime = currentEvent.getTime();        // advance clock to it
+        currentEvent.makeItHappen(this);                // execute event logic
+        boolean more = !(currentEvent instanceof EndOfSimulation); // was that the stop?
+        if (monitor != null) {
+            monitor.eventDone(currentEvent);
+            if (!more) monitor.finish();
+        }
+        return more;
+    }
+
+    // Run every event before `limit`; false once the EndOfSimulation has run
+    public boolean stepUntil(double limit) {
+        while (eventList.nextTime() < limit) {
+            if (!step()) return false;
         }
+        return true;
+    }
+
+    // ===== Object pools =====
+
+    // A spare car (litres/arrival time are stale until the caller sets them)
+    Car obtainCar() {
+        return (freeCarCount > 0) ? freeCars[--freeCarCount] : new Car();
+    }
+
+    // Give back a car that has left the station
+    void recycle(Car c) {
+        if (freeCarCount == freeCars.length) freeCars = Arrays.copyOf(freeCars, freeCarCount * 2);
+        freeCars[freeCarCount++] = c;
+    }
+
+    // A departure event at the given time for the given pump
+    Departure obtainDeparture(double time, Pump p) {
+        Departure d = (freeDepartureCount > 0) ? freeDepartures[--freeDepartureCount] : new Departure(time);
+        d.setTime(time);
+        d.setPump(p);
+        return d;
+    }
+
+    // Give back a departure that has happened
+    void recycle(Departure d) {
+        d.setPump(null);
+        if (freeDepartureCount == freeDepartures.length)
+            freeDepartures = Arrays.copyOf(freeDepartures, freeDepartureCount * 2);
+        freeDepartures[freeDepartureCount++] = d;
     }
 
     // ===== Statistics =====
     static class Statistics {
+        // Names of the values() columns, in order (the time column is left out)
+        public static final String[] COLUMNS = {
+                "Total Cars", "NoQueue Fraction", "Car->Car Time", "Average Litres", "Number Balked",
+                "Average Wait", "Pump Usage", "Total Profit", "Lost Profit"};
+        public static final int TOTAL_PROFIT = 7; // index of Total Profit in values()
+
+        private final Sim sim;                // context whose clock/queue/pumps we read
         private int totalArrivals = 0;        // number of cars that showed up
         private int customersServed = 0;      // number actually served
         private int balkingCustomers = 0;     // number who left without service
@@ -104,9 +273,13 @@ public class Sim {
         private double totalLitresMissed = 0.0;   // litres we could have sold
         private double totalWaitingTime = 0.0;    // sum of waits for served cars
         private double totalServiceTime = 0.0;    // sum of pump busy time
+        private final double[] row;           // reused by snapshot()
+        private double startTime = 0.0;       // accumulators cover [startTime, now]
 
-        public Statistics() {
-            printHeaders(); // print table headers at the start
+        public Statistics(Sim sim) {
+            this.sim = sim;
+            row = new double[COLUMNS.length + (sim.metrics != null ? Metrics.COLUMNS.length : 0)];
+            if (sim.report != null) sim.report.header(row.length); // print table headers at the start
         }
 
         public void accumBalk(double litres) {
@@ -131,181 +304,270 @@ public class Sim {
             totalArrivals++;          // bump total arrivals
         }
 
-        // Format a double with width/precision (left pads with spaces)
-        private static String fmtDbl(double num, int width, int prec) {
-            double scale = 1.0;                   // 10^prec for rounding
-            for (int i = 0; i < prec; i++) scale *= 10.0;
-            String result = "" + (int) (num * scale + 0.5); // round to int string
-
-            if (prec > 0) {                       // reinsert decimal point
-                while (result.length() < prec + 1) result = "0" + result;
-                int insertPos = result.length() - prec;
-                result = result.substring(0, insertPos) + "." + result.substring(insertPos);
-            }
-            while (result.length() < width) result = " " + result; // left-pad spaces
-            return result;
-        }
-
-        // Format an int with fixed width (left pads with spaces)
-        private static String fmtInt(int num, int width) {
-            String result = "" + num;
-            while (result.length() < width) result = " " + result;
-            return result;
-        }
-
-        // Print the table heading once
-        private static void printHeaders() {
-            System.out.println("Current  Total  NoQueue  Car->Car  Average  Number  Average    Pump    Total     Lost");
-            System.out.println("  Time    Cars  Fraction   Time     Litres  Balked    Wait     Usage   Profit   Profit");
-            for (int i = 0; i < 90; i++) System.out.print("-"); // underline
-            System.out.println();
-        }
-
-        // Print a single snapshot line with all current aggregates
-        public void snapshot() {
-            System.out.print(fmtDbl(Sim.simulationTime, 8, 0)); // time column
-            System.out.print(fmtInt(totalArrivals, 7));          // arrivals so far
-
+        public double getLitresMissed() { return totalLitresMissed; } // litres balking cars wanted
+
+        // Drop everything accumulated so far (end of warm-up); averages restart now
+        public void reset() {
+            totalArrivals = 0;
+            customersServed = 0;
+            balkingCustomers = 0;
+            totalLitresSold = 0.0;
+            totalLitresMissed = 0.0;
+            totalWaitingTime = 0.0;
+            totalServiceTime = 0.0;
+            startTime = sim.simulationTime;
+        }
+
+        // Accumulators into / out of a snapshot image
+        void save(Snapshot out) {
+            out.putInt(totalArrivals);
+            out.putInt(customersServed);
+            out.putInt(balkingCustomers);
+            out.putDouble(totalLitresSold);
+            out.putDouble(totalLitresMissed);
+            out.putDouble(totalWaitingTime);
+            out.putDouble(totalServiceTime);
+            out.putDouble(startTime);
+        }
+
+        void load(Snapshot in) {
+            totalArrivals = in.getInt();
+            customersServed = in.getInt();
+            balkingCustomers = in.getInt();
+            totalLitresSold = in.getDouble();
+            totalLitresMissed = in.getDouble();
+            totalWaitingTime = in.getDouble();
+            totalServiceTime = in.getDouble();
+            startTime = in.getDouble();
+        }
+
+        // Current aggregates as numbers, in COLUMNS order (NaN where the table says Unknown)
+        public double[] values() {
+            double[] v = new double[COLUMNS.length];
+            fillValues(v);
+            return v;
+        }
+
+        // Same as values(), into a caller-supplied array
+        public void fillValues(double[] v) {
+            double now = sim.simulationTime - startTime; // time covered by the accumulators
+            int pumps = sim.pumpStand.getNumberOfPumps();
+            v[0] = totalArrivals;
             // fraction of time the queue has been empty so far
-            double noQueueFrac = (Sim.simulationTime > 0)
-                    ? (Sim.carQueue.getEmptyTime() / Sim.simulationTime)
-                    : 0.0;
-            System.out.print(fmtDbl(noQueueFrac, 9, 3));
-
+            v[1] = (now > 0) ? sim.carQueue.getEmptyTime() / now : 0.0;
             // average interarrival and litres per arrival
-            if (totalArrivals > 0) {
-                double carToCar = Sim.simulationTime / totalArrivals; // mean time/arrival
-                double avgLitres = (totalLitresSold + totalLitresMissed) / totalArrivals;
-                System.out.print(fmtDbl(carToCar, 9, 3));
-                System.out.print(fmtDbl(avgLitres, 8, 3));
-            } else {
-                System.out.print("   Unknown   Unknown");
-            }
-
-            System.out.print(fmtInt(balkingCustomers, 8)); // how many balked
-
+            v[2] = (totalArrivals > 0) ? now / totalArrivals : Double.NaN;
+            v[3] = (totalArrivals > 0) ? (totalLitresSold + totalLitresMissed) / totalArrivals : Double.NaN;
+            v[4] = balkingCustomers;
             // average waiting time per served customer
-            if (customersServed > 0) {
-                double avgWait = totalWaitingTime / customersServed;
-                System.out.print(fmtDbl(avgWait, 9, 3));
-            } else {
-                System.out.print("   Unknown");
-            }
-
+            v[5] = (customersServed > 0) ? totalWaitingTime / customersServed : Double.NaN;
             // pump utilization fraction = busy / (pumps * time)
-            double pumpUsage = (Sim.pumpStand.getNumberOfPumps() > 0 && Sim.simulationTime > 0)
-                    ? totalServiceTime / (Sim.pumpStand.getNumberOfPumps() * Sim.simulationTime)
-                    : 0.0;
-            System.out.print(fmtDbl(pumpUsage, 8, 3));
-
+            v[6] = (pumps > 0 && now > 0) ? totalServiceTime / (pumps * now) : 0.0;
             // profits: earned minus pump fixed cost, and lost profit from balks
-            double totalProfit = totalLitresSold * Sim.profit - Sim.pumpCost * Sim.pumpStand.getNumberOfPumps();
-            double lostProfit = totalLitresMissed * Sim.profit;
-            System.out.print(fmtDbl(totalProfit, 10, 2));
-            System.out.print(fmtDbl(lostProfit, 9, 2));
-            System.out.println();
+            v[7] = totalLitresSold * sim.profit - sim.pumpCost * pumps;
+            v[8] = totalLitresMissed * sim.profit;
+        }
+
+        // Send a single snapshot line with all current aggregates to the report sink
+        public void snapshot() {
+            if (sim.report == null) return;   // silent context
+            fillValues(row);
+            if (sim.metrics != null) sim.metrics.fillValues(row, COLUMNS.length, sim.simulationTime);
+            sim.report.row(sim.simulationTime, row);
         }
     }
 
     // ===== Car =====
     static class Car {
         private double arrivalTime;         // when this car arrived to the system
-        private final double litresNeeded;  // litres requested by this car
+        private double litresNeeded;        // litres requested by this car
+        private double serviceTime = Double.NaN; // recorded service time (NaN = draw one)
+        private int grade;                  // fuel grade needed (forecourt runs only)
 
-        public Car() {
-            // sample litres uniformly in [min, min+range]
-            this.litresNeeded = Sim.litresNeededMin
-                    + Sim.litreStream.nextDouble() * Sim.litresNeededRange;
+        Car() { }                           // blank car for the pool
+
+        public Car(Sim sim) { sampleLitres(sim); }
+
+        // sample litres uniformly in [min, min+range]
+        public void sampleLitres(Sim sim) {
+            this.litresNeeded = sim.litresNeededMin
+                    + sim.litreVariates.next(sim.litreStream) * sim.litresNeededRange;
+            this.serviceTime = Double.NaN;
         }
 
         public double getArrivalTime() { return arrivalTime; }     // read arrival time
         public double getLitresNeeded() { return litresNeeded; }   // read litres
         public void setArrivalTime(double time) { this.arrivalTime = time; } // set arrival
+        public void setLitresNeeded(double litres) { this.litresNeeded = litres; } // set litres
+        public double getServiceTime() { return serviceTime; }     // recorded service time
+        public void setServiceTime(double t) { this.serviceTime = t; } // (NaN = draw one)
+        public int getGrade() { return grade; }                    // fuel grade
+        public void setGrade(int g) { this.grade = g; }            // (index into the forecourt's grades)
     }
 
     // ===== CarQueue =====
     static class CarQueue {
-        // Node in the singly linked list (each node holds a Car + link to next)
-        private class QueueItem {
-            public Car data;       // the car in this node
-            public QueueItem next; // next node (null if this is the tail)
-        }
-
-        private QueueItem first;              // head of the queue
-        private QueueItem last;               // tail of the queue
+        // Ring buffer of waiting cars, stored as parallel primitive arrays
+        // (capacity is a power of two; the Car objects go back to the pool)
+        private double[] arrivalTimes = new double[16]; // arrival time of each waiting car
+        private double[] litres = new double[16];       // litres needed by each waiting car
+        private double[] serviceTimes = new double[16]; // recorded service time (NaN = draw)
+        private int mask = 15;                          // capacity - 1
+
+        private final Sim sim;                // context whose clock and pool we use
+        private int head;                     // slot of the front car
         private int size;                     // current number of waiting cars
         private double totalEmptyQueueTime;   // accumulated time with size==0
         private boolean empty = true;         // are we currently empty?
         private double lastEmptyTime = 0.0;   // time when we last became empty
 
+        public CarQueue(Sim sim) { this.sim = sim; }
+
         // Total empty time so far (includes the ongoing empty spell, if any)
         public double getEmptyTime() {
             if (empty)
-                return totalEmptyQueueTime + (Sim.simulationTime - lastEmptyTime);
+                return totalEmptyQueueTime + (sim.simulationTime - lastEmptyTime);
             return totalEmptyQueueTime;
         }
 
         public int getQueueSize() { return size; } // current queue length
 
+        // Restart the empty-time tally at the current time (end of warm-up)
+        public void resetEmptyTime() {
+            totalEmptyQueueTime = 0.0;
+            lastEmptyTime = sim.simulationTime;   // an ongoing empty spell counts from now
+        }
+
         // Add a car to the end (tail) of the queue
         public void insert(Car car) {
-            QueueItem item = new QueueItem(); // create a new node
-            item.data = car;                   // store the car
-            item.next = null;                  // will be the tail
-
-            if (last == null) {                // queue was empty
-                first = item;                  // head and tail are this node
-                last = item;
-                size = 1;                      // size becomes 1
-                if (empty) {                   // end an empty spell; record it
-                    totalEmptyQueueTime += (Sim.simulationTime - lastEmptyTime);
-                    empty = false;             // mark as non-empty now
-                }
-            } else {                            // queue already had items
-                last.next = item;               // link old tail -> new tail
-                last = item;                    // update tail pointer
-                size++;                         // increase length
+            if (size > mask) grow();                  // ring full -> double it
+            int tail = (head + size) & mask;          // slot after the last car
+            arrivalTimes[tail] = car.getArrivalTime();
+            litres[tail] = car.getLitresNeeded();
+            serviceTimes[tail] = car.getServiceTime();
+            sim.recycle(car);                         // the queue keeps only the numbers
+            countIn();
+        }
+
+        // One more car waiting (a forecourt Dispatcher keeps the cars in its grade lines)
+        void countIn() {
+            if (size == 0 && empty) {                 // end an empty spell; record it
+                totalEmptyQueueTime += (sim.simulationTime - lastEmptyTime);
+                empty = false;                        // mark as non-empty now
             }
+            size++;                                   // increase length
+            if (sim.metrics != null) sim.metrics.queueChanged(size, sim.simulationTime);
+            if (sim.monitor != null) sim.monitor.queueLength(size);
         }
 
         // Remove and return the front car (head of the queue)
         public Car takeFirstCar() {
-            if (size <= 0 || first == null) {            // safety check
+            if (size <= 0) {                              // safety check
                 System.out.println("Error! car queue unexpectedly empty");
                 return null;
             }
-            Car c = first.data;                           // grab the car
+            Car c = sim.obtainCar();                      // rebuild the front car
+            c.setArrivalTime(arrivalTimes[head]);
+            c.setLitresNeeded(litres[head]);
+            c.setServiceTime(serviceTimes[head]);
+            head = (head + 1) & mask;                     // move head forward
+            countOut();
+            return c;                                     // return the car to caller
+        }
+
+        // One fewer car waiting
+        void countOut() {
             size--;                                       // shrink size
-            first = first.next;                           // move head forward
-            if (first == null) {                          // queue became empty
-                last = null;                              // clear tail too
+            if (size == 0) {                              // queue became empty
                 empty = true;                             // mark empty state
-                lastEmptyTime = Sim.simulationTime;       // start timing new empty spell
+                lastEmptyTime = sim.simulationTime;       // start timing new empty spell
             }
-            return c;                                     // return the car to caller
+            if (sim.metrics != null) sim.metrics.queueChanged(size, sim.simulationTime);
+        }
+
+        // Waiting cars (front first) and the empty-time tally into / out of a snapshot image
+        void save(Snapshot out) {
+            out.putInt(size);
+            for (int i = 0; i < size; i++) {
+                out.putDouble(arrivalTimes[(head + i) & mask]);
+                out.putDouble(litres[(head + i) & mask]);
+                out.putDouble(serviceTimes[(head + i) & mask]);
+            }
+            out.putDouble(totalEmptyQueueTime);
+            out.putBoolean(empty);
+            out.putDouble(lastEmptyTime);
+        }
+
+        void load(Snapshot in) {                      // into an empty queue
+            int n = in.getInt();
+            for (int i = 0; i < n; i++) {
+                if (size > mask) grow();
+                int tail = (head + size) & mask;
+                arrivalTimes[tail] = in.getDouble();
+                litres[tail] = in.getDouble();
+                serviceTimes[tail] = in.getDouble();
+                size++;
+            }
+            totalEmptyQueueTime = in.getDouble();
+            empty = in.getBoolean();
+            lastEmptyTime = in.getDouble();
+        }
+
+        // Double the ring, unrolling it so the front car sits in slot 0
+        private void grow() {
+            int n = arrivalTimes.length;
+            double[] t = new double[2 * n];
+            double[] l = new double[2 * n];
+            double[] s = new double[2 * n];
+            for (int i = 0; i < size; i++) {
+                t[i] = arrivalTimes[(head + i) & mask];
+                l[i] = litres[(head + i) & mask];
+                s[i] = serviceTimes[(head + i) & mask];
+            }
+            arrivalTimes = t;
+            litres = l;
+            serviceTimes = s;
+            head = 0;
+            mask = 2 * n - 1;
         }
     }
 
     // ===== Pump =====
     static class Pump {
+        private final Sim sim;    // context this pump belongs to
+        private final int id;     // position in the stand (0..numPumps-1)
         private Car carInService; // car currently being served at this pump
+        private double timeFactor = 1.0; // per-litre time multiplier (1 / relative flow rate)
+
+        public Pump(Sim sim, int id) {
+            this.sim = sim;
+            this.id = id;
+        }
+
+        public int getId() { return id; } // which pump this is
 
         public Car getCarInService() { return carInService; } // read the car
 
         // Setter to clear/set the car currently attached to the pump
         public void setCarInService(Car c) { this.carInService = c; }
 
+        void setTimeFactor(double f) { this.timeFactor = f; } // slower or faster nozzle
+
         // Compute the duration of service for the current car (with noise)
         private double serviceTime() {
             if (carInService == null) {                          // sanity check
                 System.out.println("Error! no car in service when expected");
                 return -1.0;
             }
+            if (!Double.isNaN(carInService.getServiceTime())) return carInService.getServiceTime(); // from a trace
             // base + per-litre + Gaussian noise
-            double t = Sim.serviceTimeBase
-                    + Sim.serviceTimePerLitre * carInService.getLitresNeeded()
-                    + Sim.serviceTimeSpread * Sim.serviceStream.nextGaussian();
-            if (t < 0.1) t = 0.1; // clamp tiny negatives from Gaussian tails
+            double z = sim.serviceVariates.next(sim.serviceStream);
+            double t = sim.serviceTimeBase
+                    + sim.serviceTimePerLitre * carInService.getLitresNeeded() * timeFactor
+                    + sim.serviceTimeSpread * z;
+            boolean clamped = t < 0.1;
+            if (clamped) t = 0.1; // clamp tiny negatives from Gaussian tails
+            if (sim.gradients != null) sim.gradients.serviceDrawn(carInService.getLitresNeeded(), z, clamped);
             return t;
         }
 
@@ -313,27 +575,72 @@ public class Sim {
         public void startService(Car car) {
             carInService = car;                             // attach car to pump
             final double pumpTime = serviceTime();          // draw service time
-            Sim.stats.accumWaitingTime(Sim.simulationTime   // record wait = now - arrival
-                    - carInService.getArrivalTime());
-            Sim.stats.accumServiceTime(pumpTime);           // add busy time
-            Departure dep = new Departure(Sim.simulationTime + pumpTime); // make departure
-            dep.setPump(this);                              // tell it which pump
-            Sim.eventList.insert(dep);                      // schedule the departure
+            final double wait = sim.simulationTime          // wait = now - arrival
+                    - carInService.getArrivalTime();
+            sim.stats.accumWaitingTime(wait);               // record wait
+            sim.stats.accumServiceTime(pumpTime);           // add busy time
+            if (sim.metrics != null) sim.metrics.serviceStarted(id, wait, pumpTime, sim.simulationTime);
+            if (sim.gradients != null) sim.gradients.serviceStarted(id, carInService.getArrivalTime());
+            if (sim.dispatcher != null) sim.dispatcher.serviceStarted(carInService.getGrade(), wait);
+            if (sim.steadyState != null) sim.steadyState.observe(wait); // warm-up / batch means
+            sim.eventList.insert(sim.obtainDeparture(       // schedule the departure
+                    sim.simulationTime + pumpTime, this));  // (pooled event, tied to this pump)
         }
     }
 
     // ===== PumpStand =====
     static class PumpStand {
         private final Pump[] pumps; // array acting like a stack of free pumps
+        private final Pump[] all;   // every pump, by id
         private final int numPumps; // total pumps
         private int topPump;        // index of top free pump (>=0 means available)
 
-        public PumpStand(int n) {
+        public PumpStand(Sim sim, int n) {
             if (n < 1) throw new IllegalArgumentException("Need at least 1 pump");
             pumps = new Pump[n];                // allocate array
+            all = new Pump[n];
             numPumps = n;                       // store count
             topPump = n - 1;                    // all pumps start free (stack full)
-            for (int i = 0; i < n; i++) pumps[i] = new Pump(); // create each pump
+            for (int i = 0; i < n; i++) pumps[i] = all[i] = new Pump(sim, i); // create each pump
+        }
+
+        public Pump getPump(int id) { return all[id]; } // pump by id, busy or free
+
+        // Occupancy and free-stack order into / out of a snapshot image
+        void save(Snapshot out) {
+            out.putInt(numPumps);
+            for (Pump p : all) {
+                Car c = p.getCarInService();
+                out.putBoolean(c != null);
+                if (c != null) {
+                    out.putDouble(c.getArrivalTime());
+                    out.putDouble(c.getLitresNeeded());
+                }
+            }
+            out.putInt(topPump + 1);
+            for (int i = 0; i <= topPump; i++) out.putInt(pumps[i].getId()); // bottom first
+        }
+
+        // Into a fresh stand, which may have more or fewer pumps than the saved one:
+        // extra pumps start free (below the saved ones), missing ones must have been idle
+        void load(Snapshot in, Sim sim) {
+            int saved = in.getInt();
+            for (int id = 0; id < saved; id++) {
+                if (!in.getBoolean()) continue;
+                if (id >= numPumps)
+                    throw new IllegalArgumentException("Pump " + id + " is busy in the snapshot and cannot be removed");
+                Car c = sim.obtainCar();
+                c.setArrivalTime(in.getDouble());
+                c.setLitresNeeded(in.getDouble());
+                all[id].setCarInService(c);
+            }
+            topPump = -1;
+            for (int id = saved; id < numPumps; id++) pumps[++topPump] = all[id];
+            int free = in.getInt();
+            for (int i = 0; i < free; i++) {
+                int id = in.getInt();
+                if (id < numPumps) pumps[++topPump] = all[id];
+            }
         }
 
         public boolean aPumpIsAvailable() { return topPump >= 0; } // any free pump?
@@ -370,11 +677,11 @@ public class Sim {
         public void setTime(double t) {   // change (reschedule) event time
             this.time = t;
         }
-        public abstract void makeItHappen(); // polymorphic event logic
+        public abstract void makeItHappen(Sim sim); // polymorphic event logic, run in context sim
     }
 
     // ===== EventList =====
-    static class EventList {
+    static class EventList implements FutureEventSet {
         // Node in linked list of future events (sorted by time)
         private class ListItem {
             public Event data;    // the event
@@ -382,10 +689,22 @@ public class Sim {
         }
 
         private ListItem first;   // head of the list (earliest event)
+        private ListItem spare;   // recycled nodes (avoids garbage)
+        private int size;         // number of pending events
+
+        @Override
+        public int size() { return size; } // pending event count
+
+        @Override
+        public double nextTime() {         // head of the list, if any
+            return (first != null) ? first.data.getTime() : Double.POSITIVE_INFINITY;
+        }
 
         // Insert event e into the list keeping time order
+        @Override
         public void insert(Event e) {
-            ListItem item = new ListItem(); // create node
+            ListItem item = spare;          // reuse a node if we have one
+            if (item != null) spare = item.next; else item = new ListItem();
             item.data = e;                  // store event
             double t = e.getTime();         // time to compare on
 
@@ -402,16 +721,23 @@ public class Sim {
                 behind.next = item;         // splice item between behind and ahead
                 item.next = ahead;
             }
+            size++;                         // one more pending
         }
 
         // Remove and return the earliest event
+        @Override
         public Event takeNextEvent() {
             if (first == null) {                        // nothing left -> error
                 System.out.println("Error! ran out of events");
                 return null;
             }
-            Event e = first.data;                       // grab head event
-            first = first.next;                         // drop head
+            ListItem head = first;
+            Event e = head.data;                        // grab head event
+            first = head.next;                          // drop head
+            head.data = null;                           // recycle the node
+            head.next = spare;
+            spare = head;
+            size--;                                     // one fewer pending
             return e;                                   // return it
         }
     }
@@ -421,39 +747,97 @@ public class Sim {
         public Arrival(double time) { super(time); } // set arrival time
 
         // Decide if the arriving car balks given litres and queue length
-        private boolean doesCarBalk(double litres, int queueLength) {
+        private static boolean doesCarBalk(Sim sim, double litres, int queueLength) {
             if (queueLength == 0) return false; // never balk if no line
-            double pNotBalk = (Sim.balkA + litres) / (Sim.balkB * (Sim.balkC + queueLength));
-            return Sim.balkingStream.nextDouble() > pNotBalk; // true means it balks
+            double pNotBalk = (sim.balkA + litres) / (sim.balkB * (sim.balkC + queueLength));
+            return sim.balkingStream.nextDouble() > pNotBalk; // true means it balks
         }
 
-        // Draw exponential interarrival time using inverse CDF
-        private double interarrivalTime() {
-            double u = Sim.arrivalStream.nextDouble(); // uniform(0,1)
-            return -Sim.meanInterarrivalTime * Math.log(u); // exponential(mean)
+        // Draw exponential interarrival time (inverse CDF, precomputed per block)
+        private double interarrivalTime(Sim sim) {
+            double e = sim.arrivalVariates.next(sim.arrivalStream); // standard exponential
+            if (sim.gradients != null) sim.gradients.interarrivalDrawn(e);
+            if (sim.profile != null)                                // invert the cumulative rate
+                return sim.profile.next(sim.simulationTime, e) - sim.simulationTime;
+            return sim.meanInterarrivalTime * e;                    // exponential(mean)
         }
 
         @Override
-        public void makeItHappen() {
-            Car arrivingCar = new Car();            // create new car
-            Sim.stats.countArrival();               // bump arrivals stat
+        public void makeItHappen(Sim sim) {
+            Car arrivingCar = sim.obtainCar();      // new (recycled) car
+            arrivingCar.sampleLitres(sim);          // draw its demand
+            carArrives(sim, arrivingCar);
+
+            // Schedule the next arrival using the same event object (reschedule-and-reinsert)
+            setTime(sim.simulationTime + interarrivalTime(sim));
+            sim.eventList.insert(this);
+        }
+
+        // A car (with its litres set) pulls in now: balk, take a pump or join the line
+        static void carArrives(Sim sim, Car arrivingCar) {
+            sim.stats.countArrival();               // bump arrivals stat
             double litres = arrivingCar.getLitresNeeded(); // its demand
+            Dispatcher d = sim.dispatcher;
+            int line;                               // the line this car would join
+            if (d != null) {
+                arrivingCar.setGrade(d.drawGrade());
+                line = d.arrived(arrivingCar.getGrade());
+            } else {
+                line = sim.carQueue.getQueueSize();
+            }
 
-            if (doesCarBalk(litres, Sim.carQueue.getQueueSize())) {
-                Sim.stats.accumBalk(litres);       // record lost opportunity
+            if (doesCarBalk(sim, litres, line)) {
+                sim.stats.accumBalk(litres);       // record lost opportunity
+                if (sim.gradients != null) sim.gradients.balked();
+                if (d != null) d.balked(arrivingCar.getGrade());
+                if (sim.onward != null) sim.onward.passOn(litres, sim.simulationTime); // try the next station
+                sim.recycle(arrivingCar);          // the car drives off
             } else {
-                arrivingCar.setArrivalTime(Sim.simulationTime); // remember when
-                if (Sim.pumpStand.aPumpIsAvailable()) {         // free pump?
-                    Pump p = Sim.pumpStand.takeAvailablePump(); // take it
+                arrivingCar.setArrivalTime(sim.simulationTime); // remember when
+                if (d != null) {
+                    d.place(arrivingCar);                       // compatible pump or grade line
+                } else if (sim.pumpStand.aPumpIsAvailable()) {         // free pump?
+                    Pump p = sim.pumpStand.takeAvailablePump(); // take it
                     if (p != null) p.startService(arrivingCar); // and start service
                 } else {
-                    Sim.carQueue.insert(arrivingCar);           // otherwise wait in line
+                    sim.carQueue.insert(arrivingCar);           // otherwise wait in line
                 }
             }
+        }
+    }
 
-            // Schedule the next arrival using the same event object (reschedule-and-reinsert)
-            setTime(Sim.simulationTime + interarrivalTime());
-            Sim.eventList.insert(this);
+    // ===== ThroughArrival =====
+    // A car that balked upstream reaching this station (no new arrival is scheduled)
+    static class ThroughArrival extends Event {
+        private final double litres;                // demand carried over from upstream
+        public ThroughArrival(double time, double litres) { super(time); this.litres = litres; }
+        public double getLitres() { return litres; }
+
+        @Override
+        public void makeItHappen(Sim sim) {
+            Car car = sim.obtainCar();
+            car.setLitresNeeded(litres);
+            car.setServiceTime(Double.NaN);
+            Arrival.carArrives(sim, car);
+        }
+    }
+
+    // ===== TraceArrival =====
+    // The current row of sim.trace arriving; reschedules itself for the next row,
+    // so only one logged arrival is ever pending
+    static class TraceArrival extends Event {
+        public TraceArrival(double time) { super(time); }
+
+        @Override
+        public void makeItHappen(Sim sim) {
+            Car car = sim.obtainCar();
+            car.setLitresNeeded(sim.trace.litres());
+            car.setServiceTime(sim.trace.serviceTime());
+            Arrival.carArrives(sim, car);
+            if (sim.trace.next()) {                 // next logged car, if any
+                setTime(sim.trace.time());
+                sim.eventList.insert(this);
+            }
         }
     }
 
@@ -462,18 +846,28 @@ public class Sim {
         private Pump pump;                          // the pump this departure is for
         public Departure(double time) { super(time); } // set departure time
         public void setPump(Pump p) { this.pump = p; } // link to pump
+        public Pump getPump() { return pump; }          // which pump
 
         @Override
-        public void makeItHappen() {
+        public void makeItHappen(Sim sim) {
             if (pump == null || pump.getCarInService() == null) return; // guard
             Car departingCar = pump.getCarInService();  // finished car
-            Sim.stats.accumSale(departingCar.getLitresNeeded()); // record litres sold
-            if (Sim.carQueue.getQueueSize() > 0) {      // anyone waiting?
-                pump.startService(Sim.carQueue.takeFirstCar()); // start next immediately
+            sim.stats.accumSale(departingCar.getLitresNeeded()); // record litres sold
+            if (sim.gradients != null) sim.gradients.sold(departingCar.getLitresNeeded());
+            Car next;                                   // anyone waiting (that this pump can serve)?
+            if (sim.dispatcher != null) next = sim.dispatcher.nextCarFor(pump);
+            else next = (sim.carQueue.getQueueSize() > 0) ? sim.carQueue.takeFirstCar() : null;
+            if (next != null) {
+                pump.startService(next);                // start next immediately
             } else {
                 pump.setCarInService(null);             // detach car
-                Sim.pumpStand.releasePump(pump);        // return pump to pool
+                if (sim.dispatcher != null) sim.dispatcher.release(pump); // back to its type's set
+                else sim.pumpStand.releasePump(pump);   // return pump to pool
+                if (sim.metrics != null) sim.metrics.pumpIdle(pump.getId(), sim.simulationTime);
+                if (sim.gradients != null) sim.gradients.pumpIdle(pump.getId());
             }
+            sim.recycle(departingCar);                  // the car has left
+            sim.recycle(this);                          // event done; reuse it later
         }
     }
 
@@ -482,10 +876,10 @@ public class Sim {
         public Report(double time) { super(time); } // first report time
 
         @Override
-        public void makeItHappen() {
-            Sim.stats.snapshot();                         // print one line
-            setTime(Sim.simulationTime + Sim.reportInterval); // schedule next report
-            Sim.eventList.insert(this);                   // reinsert into FEL
+        public void makeItHappen(Sim sim) {
+            sim.stats.snapshot();                         // print one line
+            setTime(sim.simulationTime + sim.reportInterval); // schedule next report
+            sim.eventList.insert(this);                   // reinsert into FEL
         }
     }
 
@@ -494,8 +888,8 @@ public class Sim {
         public EndOfSimulation(double time) { super(time); } // stop time
 
         @Override
-        public void makeItHappen() {
-            Sim.stats.snapshot(); // print final snapshot; loop will break in main
+        public void makeItHappen(Sim sim) {
+            sim.stats.snapshot(); // print final snapshot; loop will break in run
         }
     }
-}
\ No newline at end of file
+}
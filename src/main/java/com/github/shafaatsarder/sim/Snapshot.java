@@ -0,0 +1,315 @@
+package com.github.shafaatsarder.sim; // package for your classes
+
+import java.io.ByteArrayInputStream;              // Random state in / out
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;                       // file and serialization failures
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;                       // the image
+import java.nio.ByteOrder;                        // little-endian, like the binary report
+import java.nio.channels.FileChannel;             // memory-mapped image files
+import java.nio.charset.StandardCharsets;         // names in the image
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.random.RandomGenerator;          // the four streams
+
+/**
+ * A checkpoint of a running station as a compact binary image, so what-if
+ * branches can start from time t instead of replaying [0, t].
+ * <p>
+ * The image holds the model parameters, the clock, the four streams and their
+ * unused pre-drawn variates, the pending events (in the order they will come
+ * out, so ties still break FIFO), the waiting cars, every pump's car and the
+ * free-pump order, and the Statistics accumulators. {@link #restore()} builds a
+ * new context from it. Continuing that context unchanged gives exactly what the
+ * uninterrupted run gives. Parameters may be changed before continuing, and
+ * {@link #restore(int)} also changes the pump count. Pumps can only be removed
+ * if they are idle at the checkpoint. Added pumps take the waiting cars at
+ * once, front first, as a departure would. A new profit or pumpCost applies to the
+ * whole run's totals, because Statistics keeps litres, not money.
+ * <p>
+ * Streams are stored with Java serialization, so the legacy
+ * {@link java.util.Random} streams work. The java.util.random algorithms do not
+ * expose their state, so snapshots of those contexts are refused, and so are
+ * contexts with Metrics, SteadyState, a corridor link, a trace, Gradients or a
+ * rate profile.
+ * <p>
+ * Layout (little-endian): magic, then the body written by {@link #take}; the
+ * image can be written to a file and mapped back with {@link #map}.
+ * <p>
+ * Usage: {@code Snapshot key=value ...} with keys pumps, at, end, seed, fork
+ * (comma-separated pump counts for the branches), file (image path).
+ */
+public class Snapshot {
+    static final long MAGIC = 0x3150414E53534147L;    // "GASSNAP1" little-endian
+
+    // Event tags in the image
+    private static final byte ARRIVAL = 1, DEPARTURE = 2, REPORT = 3, END = 4, THROUGH = 5;
+
+    private ByteBuffer buf;                          // image being written or read
+
+    private Snapshot(ByteBuffer buf) { this.buf = buf.order(ByteOrder.LITTLE_ENDIAN); }
+
+    // ===== Main =====
+    public static void main(String[] args) throws IOException {
+        int pumps = 3;
+        double at = 21600.0, end = 86400.0;
+        long seed = 1;
+        double[] fork = {3, 4, 5, 6};
+        Path file = null;
+        for (String arg : args) {
+            String[] kv = Sweep.keyValue(arg);
+            String key = kv[0], value = kv[1];
+            switch (key) {
+                case "pumps": pumps = Integer.parseInt(value); break;
+                case "at":    at = Double.parseDouble(value); break;
+                case "end":   end = Double.parseDouble(value); break;
+                case "seed":  seed = Long.parseLong(value); break;
+                case "fork":  fork = Sweep.parseList(value); break;
+                case "file":  file = Path.of(value); break;
+                default: throw new IllegalArgumentException("Unknown option " + key);
+            }
+        }
+        Sim sim = new Sim();
+        sim.reportInterval = Double.POSITIVE_INFINITY;
+        sim.seed(new RandomStreams(sim.rngName, seed).forReplication(0));
+        sim.start(pumps, end);
+        sim.stepUntil(at);
+        Snapshot snap = take(sim);
+        if (file != null) {
+            snap.writeTo(file);
+            snap = map(file);
+        }
+        System.out.println(pumps + " pumps to t=" + at + ", then branches to t=" + end
+                + " (seed " + seed + ", image " + snap.size() + " bytes)");
+        System.out.printf("%6s", "Pumps");
+        for (String c : Sim.Statistics.COLUMNS) System.out.printf(" %16s", c);
+        System.out.println();
+        for (double n : fork) {
+            Sim branch = snap.restore((int) n);
+            while (branch.step()) { }
+            System.out.printf("%6d", (int) n);
+            for (double v : branch.stats.values()) System.out.printf(" %16.3f", v);
+            System.out.println();
+        }
+    }
+
+    // ===== Taking a snapshot =====
+
+    // Checkpoint a context between events (e.g. after stepUntil)
+    public static Snapshot take(Sim sim) {
+        if (sim.metrics != null || sim.steadyState != null || sim.onward != null || sim.trace != null
+                || sim.gradients != null || sim.profile != null || sim.dispatcher != null)
+            throw new IllegalStateException("Snapshots do not cover Metrics, SteadyState, corridor links, traces, "
+                    + "gradients, rate profiles or forecourts");
+        Snapshot out = new Snapshot(ByteBuffer.allocate(4096));
+        out.putLong(MAGIC);
+        double[] params = {sim.reportInterval, sim.profit, sim.pumpCost, sim.litresNeededMin,
+                sim.litresNeededRange, sim.serviceTimeBase, sim.serviceTimePerLitre, sim.serviceTimeSpread,
+                sim.balkA, sim.balkB, sim.balkC, sim.meanInterarrivalTime};
+        out.putInt(params.length);
+        for (double p : params) out.putDouble(p);
+        out.putString(sim.fesName);
+        out.putString(sim.rngName);
+        out.putDouble(sim.simulationTime);
+
+        RandomGenerator[] streams = {sim.arrivalStream, sim.litreStream, sim.balkingStream, sim.serviceStream};
+        for (RandomGenerator g : streams) out.putStream(g);
+        sim.arrivalVariates.save(out, sim.arrivalStream);
+        sim.litreVariates.save(out, sim.litreStream);
+        sim.serviceVariates.save(out, sim.serviceStream);
+
+        // Pending events in take order; put back in that order, so ties keep their turn
+        int n = sim.eventList.size();
+        Sim.Event[] pending = new Sim.Event[n];
+        for (int i = 0; i < n; i++) pending[i] = sim.eventList.takeNextEvent();
+        for (Sim.Event e : pending) sim.eventList.insert(e);
+        out.putInt(n);
+        for (Sim.Event e : pending) out.putEvent(e);
+
+        sim.carQueue.save(out);
+        sim.pumpStand.save(out);
+        sim.stats.save(out);
+
+        out.buf.flip();
+        return out;
+    }
+
+    private void putEvent(Sim.Event e) {
+        if (e instanceof Sim.Arrival) putByte(ARRIVAL);
+        else if (e instanceof Sim.Departure) putByte(DEPARTURE);
+        else if (e instanceof Sim.Report) putByte(REPORT);
+        else if (e instanceof Sim.EndOfSimulation) putByte(END);
+        else if (e instanceof Sim.ThroughArrival) putByte(THROUGH);
+        else throw new IllegalStateException("Cannot snapshot event " + e.getClass().getName());
+        putDouble(e.getTime());
+        if (e instanceof Sim.Departure) putInt(((Sim.Departure) e).getPump().getId());
+        if (e instanceof Sim.ThroughArrival) putDouble(((Sim.ThroughArrival) e).getLitres());
+    }
+
+    private void putStream(RandomGenerator g) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream o = new ObjectOutputStream(bytes)) {
+            o.writeObject(g);
+        } catch (NotSerializableException e) {
+            throw new IllegalStateException("Cannot snapshot " + g.getClass().getName()
+                    + " streams; use -Dsim.rng=legacy", e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        byte[] b = bytes.toByteArray();
+        putInt(b.length);
+        reserve(b.length);
+        buf.put(b);
+    }
+
+    // ===== Restoring =====
+
+    // A new context continuing from the checkpoint, with the saved pump count
+    public Sim restore() { return restore(-1); }
+
+    // Same with numPumps pumps (-1 = as saved); silent until a report sink is set
+    public Sim restore(int numPumps) {
+        Snapshot in = new Snapshot(buf.duplicate());        // independent read position
+        if (in.getLong() != MAGIC) throw new IllegalArgumentException("Not a snapshot image");
+        Sim sim = new Sim();
+        double[] params = new double[in.getInt()];
+        for (int i = 0; i < params.length; i++) params[i] = in.getDouble();
+        sim.reportInterval = params[0];
+        sim.profit = params[1];
+        sim.pumpCost = params[2];
+        sim.litresNeededMin = params[3];
+        sim.litresNeededRange = params[4];
+        sim.serviceTimeBase = params[5];
+        sim.serviceTimePerLitre = params[6];
+        sim.serviceTimeSpread = params[7];
+        sim.balkA = params[8];
+        sim.balkB = params[9];
+        sim.balkC = params[10];
+        sim.meanInterarrivalTime = params[11];
+        sim.fesName = in.getString();
+        sim.rngName = in.getString();
+        sim.collectMetrics = false;
+        sim.detectWarmup = false;
+        sim.targetPrecision = 0.0;
+        sim.simulationTime = in.getDouble();
+
+        sim.seed(new RandomGenerator[] {in.getStream(), in.getStream(), in.getStream(), in.getStream()});
+        sim.arrivalVariates.load(in, sim.arrivalStream);
+        sim.litreVariates.load(in, sim.litreStream);
+        sim.serviceVariates.load(in, sim.serviceStream);
+
+        // The stand is needed before the departures; its size is read ahead of the events
+        sim.eventList = FutureEventSet.create(sim.fesName);
+        int n = in.getInt();
+        int eventsStart = in.buf.position();
+        for (int i = 0; i < n; i++) in.skipEvent();
+        sim.carQueue = new Sim.CarQueue(sim);
+        sim.carQueue.load(in);
+        int standStart = in.buf.position();
+        int saved = in.getInt();
+        in.buf.position(standStart);
+        sim.pumpStand = new Sim.PumpStand(sim, (numPumps > 0) ? numPumps : saved);
+        sim.pumpStand.load(in, sim);
+        sim.stats = new Sim.Statistics(sim);
+        sim.stats.load(in);
+
+        in.buf.position(eventsStart);
+        for (int i = 0; i < n; i++) sim.eventList.insert(in.getEvent(sim));
+        // Added pumps must not sit idle while cars wait; serve them in queue order
+        while (sim.carQueue.getQueueSize() > 0 && sim.pumpStand.aPumpIsAvailable())
+            sim.pumpStand.takeAvailablePump().startService(sim.carQueue.takeFirstCar());
+        return sim;
+    }
+
+    private Sim.Event getEvent(Sim sim) {
+        byte tag = getByte();
+        double time = getDouble();
+        switch (tag) {
+            case ARRIVAL: return new Sim.Arrival(time);
+            case DEPARTURE:
+                Sim.Pump p = sim.pumpStand.getPump(getInt());
+                return sim.obtainDeparture(time, p);
+            case REPORT:  return new Sim.Report(time);
+            case END:     return new Sim.EndOfSimulation(time);
+            case THROUGH: return new Sim.ThroughArrival(time, getDouble());
+            default: throw new IllegalArgumentException("Bad event tag " + tag);
+        }
+    }
+
+    private void skipEvent() {
+        byte tag = getByte();
+        getDouble();
+        if (tag == DEPARTURE) getInt();
+        if (tag == THROUGH) getDouble();
+    }
+
+    private RandomGenerator getStream() {
+        byte[] b = new byte[getInt()];
+        buf.get(b);
+        try (ObjectInputStream o = new ObjectInputStream(new ByteArrayInputStream(b))) {
+            return (RandomGenerator) o.readObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalArgumentException("Bad stream in snapshot", e);
+        }
+    }
+
+    // ===== Files =====
+
+    public int size() { return buf.limit(); } // image length in bytes
+
+    // Write the image to a file through a mapped buffer
+    public void writeTo(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ch.map(FileChannel.MapMode.READ_WRITE, 0, size()).put(buf.duplicate());
+        }
+    }
+
+    // Map an image file read-only; branches restore straight from the mapping
+    public static Snapshot map(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new Snapshot(ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()));
+        }
+    }
+
+    // ===== Primitive access (used by the Sim classes' save/load) =====
+
+    private void reserve(int n) {
+        if (buf.remaining() >= n) return;
+        ByteBuffer bigger = ByteBuffer.allocate(Math.max(2 * buf.capacity(), buf.position() + n))
+                .order(ByteOrder.LITTLE_ENDIAN);
+        buf.flip();
+        bigger.put(buf);
+        buf = bigger;
+    }
+
+    void putByte(byte v)       { reserve(1); buf.put(v); }
+    void putBoolean(boolean v) { putByte(v ? (byte) 1 : (byte) 0); }
+    void putInt(int v)         { reserve(4); buf.putInt(v); }
+    void putLong(long v)       { reserve(8); buf.putLong(v); }
+    void putDouble(double v)   { reserve(8); buf.putDouble(v); }
+
+    void putString(String s) {
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        putInt(b.length);
+        reserve(b.length);
+        buf.put(b);
+    }
+
+    byte getByte()       { return buf.get(); }
+    boolean getBoolean() { return buf.get() != 0; }
+    int getInt()         { return buf.getInt(); }
+    long getLong()       { return buf.getLong(); }
+    double getDouble()   { return buf.getDouble(); }
+
+    String getString() {
+        byte[] b = new byte[getInt()];
+        buf.get(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,215 @@
+package com.github.shafaatsarder.sim; // package for your classes
+
+import java.io.PrintStream;                       // report output
+import java.util.ArrayList;                       // entrance states of a level
+import java.util.List;
+import java.util.random.RandomGenerator;          // streams of one trial
+import java.util.concurrent.ExecutionException;   // failure inside a worker
+import java.util.concurrent.ForkJoinPool;         // pool that runs the independent estimates
+import java.util.stream.IntStream;                // parallel loop over them
+
+/**
+ * Probability of a rare episode within one horizon, such as the queue reaching
+ * a large length or the lost profit from balking exceeding a budget, estimated
+ * by fixed-effort multilevel splitting.
+ * <p>
+ * The measure (queue length or lost profit so far) is checked after every event
+ * against increasing levels l1 &lt; l2 &lt; ... &lt; lk, the last one being the
+ * threshold of interest. Stage 0 runs {@code effort} fresh stations from t=0
+ * until they reach l1 or the horizon. Every station that reaches it is cloned
+ * with a {@link Snapshot} at that moment. Stage i runs {@code effort} trials,
+ * spread evenly over the clones of stage i-1 and each given fresh streams, until
+ * they reach l(i+1) or the horizon. The product of the stage hit fractions is
+ * an unbiased estimate of P(measure reaches lk before the horizon). A stage with
+ * no hits makes that estimate 0.
+ * <p>
+ * {@code runs} independent estimates are made, one per fork-join task. Their
+ * mean is reported with its relative error, the standard error over the mean,
+ * so the error does not rely on the stages being independent. Trial streams
+ * come from {@link RandomStreams}, with one replication number per (run, stage,
+ * trial), so results are the same for any thread count. Snapshots need the
+ * legacy generator and refuse rate profiles, forecourts and traces, so those
+ * templates are refused up front.
+ * <p>
+ * Usage: {@code Splitting key=value ...} with keys pumps, end, measure
+ * (queue|lost), levels (comma-separated, last = threshold), effort, runs, seed,
+ * threads, crude (plain replications to run for comparison, default 0).
+ */
+public class Splitting {
+
+    // ===== Splitting parameters =====
+    public int numPumps = 3;                 // pumps at the station
+    public double endingTime = 86400.0;      // horizon: one day
+    public String measure = "queue";         // queue (cars waiting) or lost (lost profit so far)
+    public double[] levels = {4, 6, 8, 10, 12}; // increasing; the last is the threshold
+    public int effort = 1000;                // trials per stage
+    public int runs = 10;                    // independent estimates (for the relative error)
+    public long baseSeed = 1;
+    public int threads = Runtime.getRuntime().availableProcessors();
+
+    // One splitting estimate and what it cost
+    public static class Estimate {
+        public final double probability;     // product of the stage fractions
+        public final int[] hits;             // trials reaching each level
+        public final long events;            // events simulated
+
+        Estimate(double probability, int[] hits, long events) {
+            this.probability = probability;
+            this.hits = hits;
+            this.events = events;
+        }
+    }
+
+    // ===== Main =====
+    public static void main(String[] args) {
+        Splitting s = new Splitting();
+        int crude = 0;
+        for (String arg : args) {
+            String[] kv = Sweep.keyValue(arg);
+            String key = kv[0], value = kv[1];
+            switch (key) {
+                case "pumps":   s.numPumps = Integer.parseInt(value); break;
+                case "end":     s.endingTime = Double.parseDouble(value); break;
+                case "measure": s.measure = value; break;
+                case "levels":  s.levels = Sweep.parseList(value); break;
+                case "effort":  s.effort = Integer.parseInt(value); break;
+                case "runs":    s.runs = Integer.parseInt(value); break;
+                case "seed":    s.baseSeed = Long.parseLong(value); break;
+                case "threads": s.threads = Integer.parseInt(value); break;
+                case "crude":   crude = Integer.parseInt(value); break;
+                default: throw new IllegalArgumentException("Unknown option " + key);
+            }
+        }
+        Sim template = new Sim();
+        System.out.println("P(" + s.measure + " >= " + s.levels[s.levels.length - 1] + " before t="
+                + s.endingTime + ") with " + s.numPumps + " pumps (base seed " + s.baseSeed + ")");
+        long t0 = System.nanoTime();
+        Estimate[] estimates = s.run(template);
+        double seconds = (System.nanoTime() - t0) * 1e-9;
+        s.print(System.out, estimates, seconds);
+        if (crude > 0) {
+            t0 = System.nanoTime();
+            long[] counts = s.crude(template, crude);
+            seconds = (System.nanoTime() - t0) * 1e-9;
+            double p = (double) counts[0] / crude;
+            System.out.printf("Crude: %d of %d replications, p = %.4g, relative error %.3f, %d events, %.2f s%n",
+                    counts[0], crude, p, Math.sqrt((1 - p) / (crude * p)), counts[1], seconds);
+        }
+    }
+
+    // ===== Splitting =====
+
+    // `runs` independent estimates; estimate r belongs to run r
+    public Estimate[] run(Sim template) {
+        if (levels.length == 0) throw new IllegalArgumentException("Need at least one level");
+        for (int k = 1; k < levels.length; k++)
+            if (!(levels[k] > levels[k - 1])) throw new IllegalArgumentException("Levels must increase");
+        if (template.profile != null || template.forecourt != null || template.trace != null)
+            throw new IllegalArgumentException("Splitting clones stations with snapshots, which refuse "
+                    + "rate profiles, forecourts and traces");
+        if (!RandomStreams.LEGACY.equals(template.rngName))
+            throw new IllegalArgumentException("Splitting clones stations with snapshots; use -Dsim.rng=legacy");
+        measureOf(new Sim());                          // fail fast on a bad measure name
+        Estimate[] out = new Estimate[runs];
+        RandomStreams streams = new RandomStreams(template.rngName, baseSeed);
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, threads));
+        try {
+            pool.submit(() -> IntStream.range(0, runs).parallel().forEach(r ->
+                    out[r] = estimate(template, streams, r))).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Splitting interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Splitting run failed", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+        return out;
+    }
+
+    // One fixed-effort estimate
+    Estimate estimate(Sim template, RandomStreams streams, int run) {
+        int[] hits = new int[levels.length];
+        long[] events = new long[1];
+        List<Snapshot> entrances = new ArrayList<>();
+        double p = 1.0;
+        for (int k = 0; k < levels.length; k++) {
+            List<Snapshot> reached = new ArrayList<>();
+            for (int j = 0; j < effort; j++) {
+                RandomGenerator[] future = streams.forReplication((run * levels.length + k) * effort + j);
+                Sim sim;
+                if (k == 0) {                          // fresh station, seeded before it starts
+                    sim = new Sim(template);
+                    sim.reportInterval = Double.POSITIVE_INFINITY;
+                    sim.seed(future);
+                    sim.start(numPumps, endingTime);
+                } else {                               // clone of an earlier hit, evenly assigned
+                    sim = entrances.get(j % entrances.size()).restore();
+                    sim.seed(future);                  // fresh future
+                }
+                if (advance(sim, levels[k], events)) {
+                    hits[k]++;
+                    if (k + 1 < levels.length) reached.add(Snapshot.take(sim));
+                }
+            }
+            p *= (double) hits[k] / effort;
+            if (hits[k] == 0) break;
+            entrances = reached;
+        }
+        return new Estimate(p, hits, events[0]);
+    }
+
+    // Step until the measure reaches `level` (true) or the horizon ends the run (false)
+    private boolean advance(Sim sim, double level, long[] events) {
+        boolean more = true;
+        while (more && measureOf(sim) < level) {
+            more = sim.step();
+            events[0]++;
+        }
+        return measureOf(sim) >= level;
+    }
+
+    // The quantity the levels are set on
+    double measureOf(Sim sim) {
+        switch (measure) {
+            case "queue": return (sim.carQueue != null) ? sim.carQueue.getQueueSize() : 0;
+            case "lost":  return (sim.stats != null) ? sim.stats.getLitresMissed() * sim.profit : 0.0;
+            default: throw new IllegalArgumentException("Unknown measure " + measure + " (queue|lost)");
+        }
+    }
+
+    // Plain replications for comparison: {runs reaching the threshold, events simulated}
+    public long[] crude(Sim template, int n) {
+        RandomStreams streams = new RandomStreams(template.rngName, baseSeed + 1);
+        long[] events = new long[1];
+        long hits = 0;
+        double threshold = levels[levels.length - 1];
+        for (int r = 0; r < n; r++) {
+            Sim sim = new Sim(template);
+            sim.reportInterval = Double.POSITIVE_INFINITY;
+            sim.seed(streams.forReplication(r));
+            sim.start(numPumps, endingTime);
+            if (advance(sim, threshold, events)) hits++;
+        }
+        return new long[] {hits, events[0]};
+    }
+
+    // Per-stage hits, then the mean estimate with its relative error and cost
+    public void print(PrintStream out, Estimate[] estimates, double seconds) {
+        out.printf("%6s %10s %14s%n", "Level", "Threshold", "Mean fraction");
+        for (int k = 0; k < levels.length; k++) {
+            double f = 0.0;
+            for (Estimate e : estimates) f += (double) e.hits[k] / effort;
+            out.printf("%6d %10.3f %14.4f%n", k + 1, levels[k], f / estimates.length);
+        }
+        Summary s = new Summary();
+        long events = 0;
+        for (Estimate e : estimates) {
+            s.add(e.probability);
+            events += e.events;
+        }
+        double re = (s.count() > 1 && s.mean() > 0) ? Math.sqrt(s.variance() / s.count()) / s.mean() : Double.NaN;
+        out.printf("Splitting: p = %.4g, relative error %.3f (%d runs of effort %d), %d events, %.2f s%n",
+                s.mean(), re, estimates.length, effort, events, seconds);
+    }
+}
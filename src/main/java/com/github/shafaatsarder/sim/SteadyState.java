@@ -0,0 +1,182 @@
+package com.github.shafaatsarder.sim; // package for your classes
+
+import java.io.PrintStream; // end-of-run summary
+
+/**
+ * Warm-up truncation and batch-means run length control, driven by the wait of
+ * every served car.
+ * <p>
+ * Warm-up: waits are grouped in fives and the group means fed to MSER-5. For a
+ * truncation point d, MSER is the variance of the means after d divided by the
+ * number kept. It is evaluated every 25 groups, and once its minimum falls in the
+ * first half of the series the transient is over. Statistics, the car queue's
+ * empty-time tally and Metrics are then reset, so the averages cover steady
+ * state only. The group list has a fixed capacity: when full, neighbouring
+ * groups are averaged pairwise.
+ * <p>
+ * Run length: after the warm-up, waits go into batches. When there are 2K
+ * batches, pairs are merged and the batch size doubles, so memory stays fixed.
+ * Once there are at least K batches, their lag-1 autocorrelation is small and
+ * the 95% half-width is within the target relative precision of the mean, an
+ * EndOfSimulation is scheduled for the current time instead of waiting for the
+ * fixed ending time.
+ */
+class SteadyState {
+    private static final int GROUP = 5;           // MSER-5 grouping
+    private static final int MSER_CAPACITY = 2048; // group means kept for MSER
+    private static final int MSER_MIN = 50;       // groups needed before the first check
+    private static final int MSER_EVERY = 25;     // groups between checks
+    private static final int K = 32;              // minimum batches (2K kept before merging)
+    private static final int INITIAL_BATCH = 10;  // observations per batch at the start
+    private static final double MAX_LAG1 = 0.2;   // batch means must be this uncorrelated
+
+    private final Sim sim;
+    private final double targetPrecision;         // half-width / |mean| to stop at (0 = never)
+
+    // MSER-5 state (only while the warm-up is still on)
+    private boolean warmingUp;
+    private final double[] groups = new double[MSER_CAPACITY];
+    private int groupCount;                       // group means stored
+    private int groupWeight = 1;                  // raw groups per stored mean (after merges)
+    private double groupSum;                      // raw values in the open group
+    private int groupFill;                        // how many of them
+    private int pendingGroups;                    // raw groups folded into the open stored mean
+    private double pendingSum;
+    private double warmupEnd = Double.NaN;        // time the transient was cut off
+
+    // Batch-means state
+    private final double[] batches = new double[2 * K];
+    private int batchCount;
+    private long batchSize = INITIAL_BATCH;
+    private double batchSum;
+    private long batchFill;
+    private boolean stopped;                      // EndOfSimulation already requested
+    private final Summary scratch = new Summary(); // reused for the batch statistics
+
+    public SteadyState(Sim sim, boolean detectWarmup, double targetPrecision) {
+        this.sim = sim;
+        this.warmingUp = detectWarmup;
+        this.targetPrecision = targetPrecision;
+    }
+
+    // One served car's wait
+    public void observe(double wait) {
+        if (warmingUp) {
+            groupSum += wait;
+            if (++groupFill == GROUP) {
+                addGroup(groupSum / GROUP);
+                groupSum = 0.0;
+                groupFill = 0;
+            }
+            return;
+        }
+        batchSum += wait;
+        if (++batchFill == batchSize) {
+            batches[batchCount++] = batchSum / batchSize;
+            batchSum = 0.0;
+            batchFill = 0;
+            if (batchCount == batches.length) mergeBatches();
+            if (targetPrecision > 0 && !stopped && batchCount >= K && precise()) {
+                stopped = true;
+                sim.eventList.insert(new Sim.EndOfSimulation(sim.simulationTime)); // stop here
+            }
+        }
+    }
+
+    // Store one raw group mean (averaging pairs once the store is compressed)
+    private void addGroup(double mean) {
+        pendingSum += mean;
+        if (++pendingGroups < groupWeight) return;
+        groups[groupCount++] = pendingSum / groupWeight;
+        pendingSum = 0.0;
+        pendingGroups = 0;
+        if (groupCount == MSER_CAPACITY) {           // full: halve resolution
+            for (int i = 0; i < MSER_CAPACITY / 2; i++) groups[i] = 0.5 * (groups[2 * i] + groups[2 * i + 1]);
+            groupCount = MSER_CAPACITY / 2;
+            groupWeight *= 2;
+        }
+        if (groupCount >= MSER_MIN && groupCount % MSER_EVERY == 0) {
+            int d = mserTruncation(groups, groupCount);
+            if (d < groupCount / 2) endWarmup();
+        }
+    }
+
+    // Truncation point minimizing MSER over d in [0, n/2]
+    static int mserTruncation(double[] z, int n) {
+        double s1 = 0.0, s2 = 0.0;                   // suffix sums of z and z^2
+        for (int j = n / 2 + 1; j < n; j++) { s1 += z[j]; s2 += z[j] * z[j]; }
+        int best = n / 2;
+        double bestValue = Double.POSITIVE_INFINITY;
+        for (int d = n / 2; d >= 0; d--) {
+            s1 += z[d];
+            s2 += z[d] * z[d];
+            int kept = n - d;
+            double value = (s2 - s1 * s1 / kept) / ((double) kept * kept);
+            if (value <= bestValue) { bestValue = value; best = d; } // ties -> smaller d
+        }
+        return best;
+    }
+
+    // Transient over: restart every accumulator at the current time
+    private void endWarmup() {
+        warmingUp = false;
+        warmupEnd = sim.simulationTime;
+        sim.stats.reset();
+        sim.carQueue.resetEmptyTime();
+        if (sim.metrics != null) sim.metrics.reset(sim.simulationTime);
+        if (sim.gradients != null) sim.gradients.reset();
+    }
+
+    // Merge neighbouring batches: K batches of twice the size
+    private void mergeBatches() {
+        for (int i = 0; i < K; i++) batches[i] = 0.5 * (batches[2 * i] + batches[2 * i + 1]);
+        batchCount = K;
+        batchSize *= 2;
+    }
+
+    private boolean precise() {
+        double mean = mean();
+        if (!(Math.abs(mean) > 0)) return false;
+        return lag1() <= MAX_LAG1 && halfWidth() <= targetPrecision * Math.abs(mean);
+    }
+
+    public boolean isWarmupOver() { return !warmingUp; }
+    public double getWarmupEnd() { return warmupEnd; }
+    public boolean stoppedEarly() { return stopped; }
+    public int getBatchCount() { return batchCount; }
+    public long getBatchSize() { return batchSize; }
+
+    // Grand mean of the completed batches
+    public double mean() { return batchSummary().mean(); }
+
+    // 95% half-width of the batch-means interval
+    public double halfWidth() { return batchSummary().halfWidth(0.95); }
+
+    private Summary batchSummary() {
+        scratch.reset();
+        for (int i = 0; i < batchCount; i++) scratch.add(batches[i]);
+        return scratch;
+    }
+
+    // Lag-1 autocorrelation of the batch means
+    double lag1() {
+        double mean = mean();
+        double num = 0.0, den = 0.0;
+        for (int i = 0; i < batchCount; i++) {
+            double d = batches[i] - mean;
+            den += d * d;
+            if (i > 0) num += d * (batches[i - 1] - mean);
+        }
+        return (den > 0) ? num / den : 0.0;
+    }
+
+    public void printSummary(PrintStream out) {
+        out.println();
+        if (Double.isNaN(warmupEnd)) out.println("Warm-up: " + (warmingUp ? "not detected" : "not truncated"));
+        else out.printf("Warm-up: truncated at t=%.1f (MSER-5)%n", warmupEnd);
+        if (batchCount >= 2) {
+            out.printf("Average wait (batch means): %.3f +/- %.3f (95%%, %d batches of %d)%s%n",
+                    mean(), halfWidth(), batchCount, batchSize, stopped ? ", target precision reached" : "");
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.github.shafaatsarder.sim; // package for your classes
+
+/**
+ * Running mean/variance of a sample (Welford's method) plus Student-t
+ * confidence intervals. Adding the same values in the same order always gives
+ * bit-identical results.
+ */
+public class Summary {
+    private long n;        // observations so far
+    private double mean;   // running mean
+    private double m2;     // sum of squared deviations from the mean
+
+    // Add one observation (NaN values are skipped, like "Unknown" table cells)
+    public void add(double x) {
+        if (Double.isNaN(x)) return;
+        n++;
+        double d = x - mean;
+        mean += d / n;
+        m2 += d * (x - mean);
+    }
+
+    // Fold another summary into this one (Chan et al. pairwise update)
+    public void merge(Summary o) {
+        if (o.n == 0) return;
+        if (n == 0) { n = o.n; mean = o.mean; m2 = o.m2; return; }
+        long total = n + o.n;
+        double d = o.mean - mean;
+        mean += d * o.n / total;
+        m2 += o.m2 + d * d * ((double) n * o.n / total);
+        n = total;
+    }
+
+    public void reset() { n = 0; mean = 0.0; m2 = 0.0; }
+
+    public long count() { return n; }
+    public double mean() { return (n > 0) ? mean : Double.NaN; }
+
+    // Unbiased sample variance (n-1 in the denominator)
+    public double variance() { return (n > 1) ? m2 / (n - 1) : Double.NaN; }
+    public double stdDev() { return Math.sqrt(variance()); }
+
+    // Half-width of the two-sided confidence interval for the mean
+    public double halfWidth(double confidence) {
+        if (n < 2) return Double.NaN;
+        return tQuantile(0.5 + confidence / 2.0, n - 1) * Math.sqrt(variance() / n);
+    }
+
+    public double lower(double confidence) { return mean() - halfWidth(confidence); }
+    public double upper(double confidence) { return mean() + halfWidth(confidence); }
+
+    // ===== Student t distribution =====
+
+    // Quantile of Student's t with df degrees of freedom (bisection on the CDF)
+    public static double tQuantile(double p, long df) {
+        if (p <= 0.0 || p >= 1.0 || df < 1) throw new IllegalArgumentException("bad t quantile request");
+        if (p < 0.5) return -tQuantile(1.0 - p, df);
+        double lo = 0.0, hi = 1.0;
+        while (tCdf(hi, df) < p) hi *= 2.0;           // bracket the root
+        for (int i = 0; i < 100 && hi - lo > 1e-12 * hi; i++) {
+            double mid = 0.5 * (lo + hi);
+            if (tCdf(mid, df) < p) lo = mid; else hi = mid;
+        }
+        return 0.5 * (lo + hi);
+    }
+
+    // P(T <= t) for Student's t
+    public static double tCdf(double t, long df) {
+        double x = df / (df + t * t);
+        double tail = 0.5 * regIncBeta(x, df / 2.0, 0.5); // P(|T| > |t|) / 2
+        return (t >= 0) ? 1.0 - tail : tail;
+    }
+
+    // Regularized incomplete beta I_x(a, b) (Numerical Recipes 6.4)
+    static double regIncBeta(double x, double a, double b) {
+        if (x <= 0.0) return 0.0;
+        if (x >= 1.0) return 1.0;
+        double front = Math.exp(logGamma(a + b) - logGamma(a) - logGamma(b)
+                + a * Math.log(x) + b * Math.log(1.0 - x));
+        if (x < (a + 1.0) / (a + b + 2.0)) return front * betaContinuedFraction(x, a, b) / a;
+        return 1.0 - front * betaContinuedFraction(1.0 - x, b, a) / b;
+    }
+
+    private static double betaContinuedFraction(double x, double a, double b) {
+        final double tiny = 1e-300;
+        double qab = a + b, qap = a + 1.0, qam = a - 1.0;
+        double c = 1.0, d = 1.0 - qab * x / qap;
+        if (Math.abs(d) < tiny) d = tiny;
+        d = 1.0 / d;
+        double h = d;
+        for (int m = 1; m <= 300; m++) {
+            int m2 = 2 * m;
+            double aa = m * (b - m) * x / ((qam + m2) * (a + m2));
+            d = 1.0 + aa * d; if (Math.abs(d) < tiny) d = tiny;
+            c = 1.0 + aa / c; if (Math.abs(c) < tiny) c = tiny;
+            d = 1.0 / d;
+            h *= d * c;
+            aa = -(a + m) * (qab + m) * x / ((a + m2) * (qap + m2));
+            d = 1.0 + aa * d; if (Math.abs(d) < tiny) d = tiny;
+            c = 1.0 + aa / c; if (Math.abs(c) < tiny) c = tiny;
+            d = 1.0 / d;
+            double del = d * c;
+            h *= del;
+            if (Math.abs(del - 1.0) < 1e-15) break;
+        }
+        return h;
+    }
+
+    // ln Gamma(x) for x > 0 (Lanczos approximation, g=7)
+    static double logGamma(double x) {
+        final double[] c = {0.99999999999980993, 676.5203681218851, -1259.1392167224028,
+                771.32342877765313, -176.61502916214059, 12.507343278686905,
+                -0.13857109526572012, 9.9843695780195716e-6, 1.5056327351493116e-7};
+        if (x < 0.5) return Math.log(Math.PI / Math.abs(Math.sin(Math.PI * x))) - logGamma(1.0 - x);
+        x -= 1.0;
+        double a = c[0];
+        double t = x + 7.5;
+        for (int i = 1; i < 9; i++) a += c[i] / (x + i);
+        return 0.5 * Math.log(2 * Math.PI) + (x + 0.5) * Math.log(t) - t + Math.log(a);
+    }
+}
@@ -0,0 +1,246 @@
+package com.github.shafaatsarder.sim; // package for your classes
+
+import java.io.PrintStream;                       // report output
+import java.util.ArrayList;                       // job list
+import java.util.Arrays;                          // ranking
+import java.util.List;
+import java.util.concurrent.ExecutionException;   // failure inside a worker
+import java.util.concurrent.ForkJoinPool;         // pool that runs the replications
+import java.util.stream.IntStream;                // parallel loop over (pump count, replication)
+
+/**
+ * Pump-count sweep: finds the profit-maximizing number of pumps.
+ * <p>
+ * Every pump count in [minPumps, maxPumps] is replicated with common random
+ * numbers: replication r gets the same {@link RandomStreams} substreams (same
+ * generator and base seed) for every pump count, so profit differences are paired and much less
+ * noisy than independent runs. Replications come in batches; after each batch a
+ * pump count is dropped once some other count beats it on the paired profit
+ * difference with Bonferroni-adjusted confidence (screening ranking-and-selection).
+ * Sampling stops when one count is left or every survivor has maxReplications.
+ * <p>
+ * Optionally the selection is repeated for every point of a grid over
+ * meanInterarrivalTime and the balk constants.
+ * <p>
+ * Usage: {@code Sweep key=value ...} with keys pumps=lo..hi, end, seed, mean,
+ * balkA, balkB, balkC (comma-separated lists for the grid), n0, batch, max,
+ * alpha, threads.
+ */
+public class Sweep {
+
+    // ===== Sweep parameters =====
+    public int minPumps = 1;                 // smallest pump count tried
+    public int maxPumps = 10;                // largest pump count tried
+    public double endingTime = 86400.0;      // horizon of each replication
+    public long baseSeed = 1;                // common random numbers come from this seed
+    public int initialReplications = 10;     // first-stage replications per pump count
+    public int batchReplications = 10;       // replications added per later stage
+    public int maxReplications = 200;        // cap per pump count
+    public double alpha = 0.05;              // overall error of the elimination tests
+    public int threads = Runtime.getRuntime().availableProcessors();
+
+    // Outcome for one pump count
+    public static class Candidate {
+        public final int numPumps;                 // pumps at the station
+        public final Summary profit = new Summary(); // Total Profit over replications
+        public boolean eliminated;                 // dropped as clearly dominated
+        double[] samples;                          // profit of replication r (CRN pairs)
+        int replications;                          // samples filled so far
+
+        Candidate(int numPumps, int capacity) {
+            this.numPumps = numPumps;
+            this.samples = new double[capacity];
+        }
+
+        public int getReplications() { return replications; }
+    }
+
+    // ===== Main =====
+    public static void main(String[] args) {
+        Sweep sweep = new Sweep();
+        Sim template = new Sim();
+        Grid grid = new Grid(template);
+        for (String arg : args) {
+            String[] kv = keyValue(arg);
+            String key = kv[0], value = kv[1];
+            if (grid.parse(key, value)) continue;
+            switch (key) {
+                case "pumps":
+                    int[] range = parseRange(value);
+                    sweep.minPumps = range[0];
+                    sweep.maxPumps = range[1];
+                    break;
+                case "end":     sweep.endingTime = Double.parseDouble(value); break;
+                case "seed":    sweep.baseSeed = Long.parseLong(value); break;
+                case "n0":      sweep.initialReplications = Integer.parseInt(value); break;
+                case "batch":   sweep.batchReplications = Integer.parseInt(value); break;
+                case "max":     sweep.maxReplications = Integer.parseInt(value); break;
+                case "alpha":   sweep.alpha = Double.parseDouble(value); break;
+                case "threads": sweep.threads = Integer.parseInt(value); break;
+                default: throw new IllegalArgumentException("Unknown option " + key);
+            }
+        }
+
+        for (Sim point : grid.points(template)) {
+            System.out.println(Grid.label(point));
+            print(System.out, sweep.select(point));
+            System.out.println();
+        }
+    }
+
+    // ===== Command-line helpers (shared by the other tools' mains) =====
+
+    // {key, value} of a key=value argument
+    static String[] keyValue(String arg) {
+        int eq = arg.indexOf('=');
+        if (eq < 0) throw new IllegalArgumentException("Expected key=value, got " + arg);
+        return new String[] {arg.substring(0, eq), arg.substring(eq + 1)};
+    }
+
+    static double[] parseList(String s) {
+        String[] parts = s.split(",");
+        double[] v = new double[parts.length];
+        for (int i = 0; i < parts.length; i++) v[i] = Double.parseDouble(parts[i].trim());
+        return v;
+    }
+
+    // lo..hi, or a single count, as {lo, hi}
+    static int[] parseRange(String s) {
+        String[] range = s.split("\\.\\.");
+        return new int[] {Integer.parseInt(range[0].trim()), Integer.parseInt(range[range.length - 1].trim())};
+    }
+
+    // Grid over meanInterarrivalTime and the balk constants (keys mean, balkA, balkB, balkC)
+    static final class Grid {
+        double[] mean, balkA, balkB, balkC;
+
+        Grid(Sim template) {                  // one point: the template's own values
+            mean = new double[] {template.meanInterarrivalTime};
+            balkA = new double[] {template.balkA};
+            balkB = new double[] {template.balkB};
+            balkC = new double[] {template.balkC};
+        }
+
+        // Take a grid key (true), or leave the key to the caller (false)
+        boolean parse(String key, String value) {
+            switch (key) {
+                case "mean":  mean = parseList(value); return true;
+                case "balkA": balkA = parseList(value); return true;
+                case "balkB": balkB = parseList(value); return true;
+                case "balkC": balkC = parseList(value); return true;
+                default: return false;
+            }
+        }
+
+        // A copy of the template per grid point, balkC varying fastest
+        List<Sim> points(Sim template) {
+            List<Sim> list = new ArrayList<>();
+            for (double m : mean) for (double a : balkA) for (double b : balkB) for (double c : balkC) {
+                Sim point = new Sim(template);
+                point.meanInterarrivalTime = m;
+                point.balkA = a;
+                point.balkB = b;
+                point.balkC = c;
+                list.add(point);
+            }
+            return list;
+        }
+
+        static String label(Sim point) {
+            return "meanInterarrivalTime=" + point.meanInterarrivalTime + " balkA=" + point.balkA
+                    + " balkB=" + point.balkB + " balkC=" + point.balkC;
+        }
+    }
+
+    // Run the selection for one parameter point; the best survivor comes first
+    public Candidate[] select(Sim template) {
+        if (minPumps < 1 || maxPumps < minPumps) throw new IllegalArgumentException("Bad pump range");
+        int k = maxPumps - minPumps + 1;
+        Candidate[] all = new Candidate[k];
+        for (int i = 0; i < k; i++) all[i] = new Candidate(minPumps + i, maxReplications);
+
+        RandomStreams streams = new RandomStreams(template.rngName, baseSeed);
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, threads));
+        try {
+            int target = Math.min(initialReplications, maxReplications);
+            while (true) {
+                sample(pool, template, streams, all, target);
+                eliminate(all);
+                int alive = 0;
+                for (Candidate c : all) if (!c.eliminated) alive++;
+                if (alive <= 1 || target >= maxReplications) break;
+                target = Math.min(target + batchReplications, maxReplications);
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        for (Candidate c : all)                               // summaries in replication order
+            for (int r = 0; r < c.replications; r++) c.profit.add(c.samples[r]);
+        Candidate[] ranked = all.clone();
+        Arrays.sort(ranked, (x, y) -> {
+            if (x.eliminated != y.eliminated) return x.eliminated ? 1 : -1;
+            return Double.compare(y.profit.mean(), x.profit.mean());
+        });
+        return ranked;
+    }
+
+    // Bring every surviving candidate up to `target` replications, in parallel
+    private void sample(ForkJoinPool pool, Sim template, RandomStreams streams, Candidate[] all, int target) {
+        List<int[]> jobs = new ArrayList<>();                 // (candidate, replication)
+        for (int i = 0; i < all.length; i++) {
+            if (all[i].eliminated) continue;
+            for (int r = all[i].replications; r < target; r++) jobs.add(new int[] {i, r});
+        }
+        try {
+            pool.submit(() -> IntStream.range(0, jobs.size()).parallel().forEach(j -> {
+                Candidate c = all[jobs.get(j)[0]];
+                int r = jobs.get(j)[1];
+                c.samples[r] = Replications.runOne(template, c.numPumps, endingTime,
+                        streams.forReplication(r))[Sim.Statistics.TOTAL_PROFIT];
+            })).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Sweep interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Sweep replication failed", e.getCause());
+        }
+        for (Candidate c : all) if (!c.eliminated) c.replications = target;
+    }
+
+    // Drop every candidate that some other survivor beats on the paired difference
+    private void eliminate(Candidate[] all) {
+        int alive = 0;
+        for (Candidate c : all) if (!c.eliminated) alive++;
+        if (alive < 2) return;
+        double perTest = alpha / (alive - 1);                 // Bonferroni over the rivals
+        double twoSided = 1.0 - 2.0 * perTest;                // its one-sided bound as a two-sided level
+        boolean[] drop = new boolean[all.length];
+        for (int i = 0; i < all.length; i++) {
+            if (all[i].eliminated) continue;
+            for (int j = 0; j < all.length && !drop[i]; j++) {
+                if (j == i || all[j].eliminated) continue;
+                Summary diff = new Summary();                 // X_j - X_i, same seeds
+                for (int r = 0; r < all[i].replications; r++)
+                    diff.add(all[j].samples[r] - all[i].samples[r]);
+                if (diff.count() > 1 && diff.lower(twoSided) > 0.0)
+                    drop[i] = true;
+            }
+        }
+        for (int i = 0; i < all.length; i++) if (drop[i]) all[i].eliminated = true;
+    }
+
+    // Ranked table; the first row is the recommended pump count
+    public static void print(PrintStream out, Candidate[] ranked) {
+        Candidate best = ranked[0];
+        out.printf("Best: %d pumps, profit %.2f (95%% CI %.2f .. %.2f, %d replications)%n",
+                best.numPumps, best.profit.mean(), best.profit.lower(Replications.CONFIDENCE),
+                best.profit.upper(Replications.CONFIDENCE), best.replications);
+        out.printf("%6s %6s %12s %12s %12s  %s%n", "Pumps", "Reps", "Profit", "CI low", "CI high", "Status");
+        for (Candidate c : ranked) {
+            out.printf("%6d %6d %12.2f %12.2f %12.2f  %s%n", c.numPumps, c.replications,
+                    c.profit.mean(), c.profit.lower(Replications.CONFIDENCE),
+                    c.profit.upper(Replications.CONFIDENCE), c.eliminated ? "dominated" : "kept");
+        }
+    }
+}
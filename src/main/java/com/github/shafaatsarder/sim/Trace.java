@@ -0,0 +1,241 @@
+package com.github.shafaatsarder.sim; // package for your classes
+
+import java.io.Closeable;                         // owns a file channel
+import java.io.IOException;                       // file failures
+import java.io.UncheckedIOException;              // surfaced from inside events
+import java.nio.ByteBuffer;                       // converter output buffer
+import java.nio.ByteOrder;                        // binary traces are little-endian
+import java.nio.MappedByteBuffer;                 // the current window of the file
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;         // slow-path number text
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A recorded arrival log replayed in place of the synthetic arrival, litre and
+ * service-time draws.
+ * <p>
+ * Each row is (arrival time, litres, service time) in seconds and litres; an
+ * empty or NaN service time means the model draws one as usual. Times must not
+ * decrease, and they are rebased so the first row arrives at t=0. Two formats:
+ * <ul>
+ *   <li>binary: the 8-byte magic and the column count (3) as a long, then three
+ *       little-endian doubles per row</li>
+ *   <li>CSV: one {@code time,litres,service} line per row, with an optional
+ *       header line</li>
+ * </ul>
+ * The file is memory-mapped in windows of at most 64 MiB and parsed in place.
+ * Only one row is held at a time and nothing is allocated per row, so a trace of
+ * any length runs in flat memory. CSV numbers with up to 15 significant digits
+ * and small exponents are converted exactly on a fast path. Anything else falls
+ * back to Double.parseDouble, so both formats give the same doubles.
+ * <p>
+ * Usage: {@code Trace input.csv output.bin} converts CSV to binary. Sim replays a
+ * trace with {@code -Dsim.trace=file}.
+ */
+public class Trace implements Closeable {
+    static final long MAGIC = 0x3176435254534147L;    // "GASTRCv1" little-endian
+    static final int COLUMNS = 3;                     // time, litres, service time
+    private static final long WINDOW = 64L << 20;     // bytes mapped at a time
+    private static final int MAX_LINE = 4096;         // longest CSV line accepted
+
+    private final FileChannel channel;
+    private final long fileSize;
+    private final boolean binary;
+    private MappedByteBuffer window;                  // current part of the file
+    private long windowStart;                         // file offset of window[0]
+    private final byte[] scratch = new byte[64];      // slow-path number text
+
+    private long rows;                                // rows read so far
+    private double origin = Double.NaN;               // first row's time (rebasing)
+    private double rawTime;                           // current row's time as stored
+    private double time, litres, serviceTime;         // the current row (time rebased)
+
+    private Trace(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        fileSize = channel.size();
+        mapFrom(0);
+        binary = fileSize >= 16 && window.getLong(0) == MAGIC;
+        if (binary) {
+            if (window.getLong(8) != COLUMNS) throw new IllegalArgumentException("Trace must have 3 columns");
+            window.position(16);
+        }
+    }
+
+    // Open a binary or CSV trace (told apart by the magic)
+    public static Trace open(Path file) throws IOException { return new Trace(file); }
+
+    private void mapFrom(long offset) throws IOException {
+        windowStart = offset;
+        window = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(WINDOW, fileSize - offset));
+        window.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    // Make sure `need` bytes (or the rest of the file) are in the window
+    private void ensure(int need) throws IOException {
+        if (window.remaining() < need && windowStart + window.limit() < fileSize)
+            mapFrom(windowStart + window.position());
+    }
+
+    // Advance to the next row; false at the end of the trace
+    public boolean next() {
+        double previous = time;
+        try {
+            if (binary) {
+                ensure(8 * COLUMNS);
+                if (window.remaining() < 8 * COLUMNS) return false;
+                rawTime = window.getDouble();
+                litres = window.getDouble();
+                serviceTime = window.getDouble();
+            } else if (!nextLine()) {
+                return false;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (rows++ == 0) origin = rawTime;
+        time = rawTime - origin;
+        if (time < previous && rows > 1)
+            throw new IllegalArgumentException("Trace times decrease at row " + rows);
+        return true;
+    }
+
+    public double time() { return time; }               // arrival, seconds after the first row
+    public double litres() { return litres; }           // litres needed
+    public double serviceTime() { return serviceTime; } // actual service time (NaN = draw)
+    public long getRows() { return rows; }              // rows read so far
+
+    @Override
+    public void close() throws IOException { channel.close(); }
+
+    // ===== CSV parsing =====
+
+    // Parse the next non-empty, non-header line into the current row
+    private boolean nextLine() throws IOException {
+        while (true) {
+            ensure(MAX_LINE);
+            if (!window.hasRemaining()) return false;
+            byte c = window.get(window.position());
+            if (c == '\n' || c == '\r') { window.get(); continue; } // blank line
+            if (rows == 0 && isLetter(c)) {
+                skipLine();                           // header
+                continue;
+            }
+            rawTime = number();
+            expect(',');
+            litres = number();
+            serviceTime = Double.NaN;
+            if (window.hasRemaining() && window.get(window.position()) == ',') {
+                window.get();
+                serviceTime = number();
+            }
+            skipLine();
+            return true;
+        }
+    }
+
+    private static boolean isLetter(byte c) { return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z'); }
+
+    private void skipLine() {
+        while (window.hasRemaining()) {
+            if (window.get() == '\n') return;
+        }
+    }
+
+    private void expect(char c) {
+        if (!window.hasRemaining() || window.get() != c)
+            throw new IllegalArgumentException("Expected '" + c + "' in trace row " + (rows + 1));
+    }
+
+    // One decimal number at the cursor (NaN if the field is empty)
+    private double number() {
+        while (window.hasRemaining() && window.get(window.position()) == ' ') window.get();
+        int start = window.position();
+        boolean negative = false;
+        if (window.hasRemaining() && (window.get(start) == '-' || window.get(start) == '+')) {
+            negative = window.get() == '-';
+        }
+        long mantissa = 0;
+        int digits = 0, scale = 0;
+        boolean point = false, any = false;
+        while (window.hasRemaining()) {
+            byte c = window.get(window.position());
+            if (c >= '0' && c <= '9') {
+                any = true;
+                if (mantissa == 0 && c == '0') { if (point) scale--; }  // leading zeros are free
+                else {
+                    mantissa = mantissa * 10 + (c - '0');
+                    if (++digits > 18) return slowNumber(start);   // would overflow
+                    if (point) scale--;
+                }
+            } else if (c == '.' && !point) {
+                point = true;
+            } else {
+                break;
+            }
+            window.get();
+        }
+        if (window.hasRemaining()) {
+            byte c = window.get(window.position());
+            if (c == 'e' || c == 'E' || c == 'N' || c == 'I') return slowNumber(start); // exponent, NaN, Infinity
+        }
+        if (!any) return Double.NaN;                     // empty field
+        if (digits > 15 || scale < -22) return slowNumber(start);
+        double v = (scale == 0) ? mantissa : mantissa / POWERS[-scale]; // exact inputs, one rounding
+        return negative ? -v : v;
+    }
+
+    private static final double[] POWERS = new double[23];     // 10^0 .. 10^22, all exact
+    static {
+        POWERS[0] = 1.0;
+        for (int i = 1; i < POWERS.length; i++) POWERS[i] = POWERS[i - 1] * 10.0;
+    }
+
+    // Re-read the field from `start` with Double.parseDouble (allocates; rare)
+    private double slowNumber(int start) {
+        window.position(start);
+        int n = 0;
+        while (window.hasRemaining()) {
+            byte c = window.get(window.position());
+            if (c == ',' || c == '\n' || c == '\r' || c == ' ') break;
+            if (n == scratch.length) throw new IllegalArgumentException("Number too long in trace row " + (rows + 1));
+            scratch[n++] = window.get();
+        }
+        return Double.parseDouble(new String(scratch, 0, n, StandardCharsets.US_ASCII));
+    }
+
+    // ===== Converter =====
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.out.println("Usage: Trace input.csv output.bin");
+            return;
+        }
+        long n = convert(Path.of(args[0]), Path.of(args[1]));
+        System.out.println(n + " rows written to " + args[1]);
+    }
+
+    // Rewrite a CSV trace in the binary format (times kept as they are); returns the row count
+    public static long convert(Path csv, Path bin) throws IOException {
+        ByteBuffer out = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+        long n = 0;
+        try (Trace in = open(csv);
+             FileChannel ch = FileChannel.open(bin, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            out.putLong(MAGIC).putLong(COLUMNS);
+            while (in.next()) {
+                if (out.remaining() < 8 * COLUMNS) drain(out, ch);
+                out.putDouble(in.rawTime).putDouble(in.litres()).putDouble(in.serviceTime());
+                n++;
+            }
+            drain(out, ch);
+        }
+        return n;
+    }
+
+    private static void drain(ByteBuffer out, FileChannel ch) throws IOException {
+        out.flip();
+        while (out.hasRemaining()) ch.write(out);
+        out.clear();
+    }
+}
@@ -0,0 +1,71 @@
+package com.github.shafaatsarder.sim; // package for your classes
+
+import java.util.random.RandomGenerator; // the stream behind the block
+
+/**
+ * A block of variates drawn ahead of time from one random stream.
+ * <p>
+ * Refilling draws BLOCK raw values in a row and then transforms the whole block
+ * in a second, branch-free loop (for exponentials, -log u), so the per-event
+ * cost is an array read. Values come out in the same order the stream would
+ * have produced them one at a time. Legacy results are unchanged, because
+ * mean * (-log u) rounds the same as -mean * log u.
+ * <p>
+ * The buffer is bound to the stream it was last filled from. If the context's
+ * stream field is replaced (reseeding, tests), the rest of the block is dropped
+ * and the next call refills from the new stream.
+ */
+class VariateBuffer {
+    static final int BLOCK = 256;                 // variates per refill
+
+    enum Kind {
+        UNIFORM,      // nextDouble(), in [0, 1)
+        EXPONENTIAL,  // -log(nextDouble()), mean 1
+        NORMAL        // nextGaussian(), mean 0 and sd 1
+    }
+
+    private final Kind kind;
+    private final double[] block = new double[BLOCK];
+    private int next = BLOCK;                     // index of the next unused variate
+    private RandomGenerator source;               // stream the block came from
+
+    public VariateBuffer(Kind kind) { this.kind = kind; }
+
+    // Next variate of `stream`, which should be the same stream on every call
+    public double next(RandomGenerator stream) {
+        if (next == BLOCK || stream != source) refill(stream);
+        return block[next++];
+    }
+
+    // The unused part of the block into / out of a snapshot image
+    void save(Snapshot out, RandomGenerator stream) {
+        int left = (stream == source) ? BLOCK - next : 0; // stale block counts as empty
+        out.putInt(left);
+        for (int i = next; i < next + left; i++) out.putDouble(block[i]);
+    }
+
+    void load(Snapshot in, RandomGenerator stream) {
+        int left = in.getInt();
+        next = BLOCK - left;
+        for (int i = next; i < BLOCK; i++) block[i] = in.getDouble();
+        source = stream;
+    }
+
+    private void refill(RandomGenerator stream) {
+        source = stream;
+        double[] b = block;
+        switch (kind) {
+            case UNIFORM:
+                for (int i = 0; i < BLOCK; i++) b[i] = stream.nextDouble();
+                break;
+            case EXPONENTIAL:
+                for (int i = 0; i < BLOCK; i++) b[i] = stream.nextDouble();
+                for (int i = 0; i < BLOCK; i++) b[i] = -Math.log(b[i]); // inverse CDF, whole block
+                break;
+            case NORMAL:
+                for (int i = 0; i < BLOCK; i++) b[i] = stream.nextGaussian();
+                break;
+        }
+        next = 0;
+    }
+}
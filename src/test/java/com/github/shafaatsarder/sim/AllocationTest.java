@@ -0,0 +1,52 @@
+package com.github.shafaatsarder.sim;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.lang.management.ManagementFactory;
+
+class AllocationTest {
+
+    // Bytes allocated so far by the current thread (HotSpot allocation counter)
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    @Test
+    void steadyStateEventLoopAllocatesNothing() {
+        for (String fes : new String[] {"list", "heap", "calendar"}) {
+            Sim sim = new Sim();
+            sim.fesName = fes;
+            sim.reportInterval = Double.POSITIVE_INFINITY;
+            sim.seed(1, 2, 3, 4);
+            sim.start(3, 1e12);
+            for (int i = 0; i < 200_000; i++) sim.step(); // warm up pools, buffers and JIT
+
+            allocatedBytes();                          // first call may allocate itself
+            long before = allocatedBytes();
+            for (int i = 0; i < 1_000_000; i++) sim.step();
+            long used = allocatedBytes() - before;
+
+            assertTrue(used < 1024, fes + " allocated " + used + " bytes in 10^6 events");
+        }
+    }
+
+    @Test
+    void tableReportingAndMetricsAllocateNothingPerRow() {
+        Sim sim = new Sim();
+        sim.collectMetrics = true;                     // histogram hooks on every event
+        sim.report = ReportSink.open("table", java.io.OutputStream.nullOutputStream());
+        sim.reportInterval = 10.0;                     // a row every few events
+        sim.seed(1, 2, 3, 4);
+        sim.start(3, 1e12);
+        for (int i = 0; i < 200_000; i++) sim.step();
+
+        allocatedBytes();
+        long before = allocatedBytes();
+        for (int i = 0; i < 1_000_000; i++) sim.step();
+        long used = allocatedBytes() - before;
+
+        // over 10^5 rows go out; only the channel's one-off bookkeeping may allocate
+        assertTrue(used < 8192, "reporting allocated " + used + " bytes in 10^6 events");
+    }
+}
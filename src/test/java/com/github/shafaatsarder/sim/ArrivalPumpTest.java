@@ -10,25 +10,26 @@ class ArrivalPumpTest {
     @Test
     void arrivalUsesFreePumpAndReschedulesNextArrival() {
         // Fresh world
-        Sim.eventList = new Sim.EventList();
-        Sim.carQueue = new Sim.CarQueue();
-        Sim.pumpStand = new Sim.PumpStand(1);
-        Sim.stats = new Sim.Statistics();
-        Sim.simulationTime = 0.0;
+        Sim sim = new Sim();
+        sim.eventList = new Sim.EventList();
+        sim.carQueue = new Sim.CarQueue(sim);
+        sim.pumpStand = new Sim.PumpStand(sim, 1);
+        sim.stats = new Sim.Statistics(sim);
+        sim.simulationTime = 0.0;
 
     
-        Sim.meanInterarrivalTime = 50.0;
-        Sim.arrivalStream = new Random(5);
-        Sim.litreStream = new Random(2);
-        Sim.balkingStream = new Random(3);
-        Sim.serviceStream = new Random(1);
+        sim.meanInterarrivalTime = 50.0;
+        sim.arrivalStream = new Random(5);
+        sim.litreStream = new Random(2);
+        sim.balkingStream = new Random(3);
+        sim.serviceStream = new Random(1);
 
         // Runnign arrival at t=0
         Sim.Arrival arr = new Sim.Arrival(0.0);
-        arr.makeItHappen();
+        arr.makeItHappen(sim);
 
         // One car olny
-        Sim.Pump p = Sim.pumpStand.takeAvailablePump(); // should be null because in use
+        Sim.Pump p = sim.pumpStand.takeAvailablePump(); // should be null because in use
         assertNull(p, "Pump should be busy after the arrival");
     }
     }
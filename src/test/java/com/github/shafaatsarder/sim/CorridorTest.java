@@ -0,0 +1,49 @@
+package com.github.shafaatsarder.sim;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class CorridorTest {
+
+    private static Corridor corridor(int stations, int threads) {
+        Corridor c = new Corridor();
+        c.numStations = stations;
+        c.numPumps = 1;
+        c.travelTime = new double[] {120.0};
+        c.endingTime = 20000.0;
+        c.baseSeed = 5;
+        c.threads = threads;
+        return c;
+    }
+
+    @Test
+    void resultsDoNotDependOnThreadCount() {
+        Corridor.Station[] one = corridor(12, 1).run(new Sim());
+        Corridor.Station[] many = corridor(12, 4).run(new Sim());
+        for (int i = 0; i < one.length; i++) {
+            assertArrayEquals(one[i].sim.stats.values(), many[i].sim.stats.values(), 0.0);
+            assertEquals(one[i].getReceived(), many[i].getReceived());
+        }
+    }
+
+    @Test
+    void balkingCarsReachTheNextStation() {
+        Corridor.Station[] s = corridor(4, 2).run(new Sim());
+        assertEquals(0, s[0].getReceived());
+        for (int i = 0; i + 1 < s.length; i++) {
+            assertEquals((long) s[i].sim.stats.values()[4], s[i].getPassedOn()); // every balk drives on
+            assertTrue(s[i + 1].getReceived() > 0);
+            assertTrue(s[i + 1].getReceived() <= s[i].getPassedOn());
+        }
+        assertEquals(0, s[s.length - 1].getPassedOn());
+    }
+
+    @Test
+    void singleStationMatchesAStandaloneRun() {
+        Corridor c = corridor(1, 1);
+        Corridor.Station[] s = c.run(new Sim());
+        double[] alone = Replications.runOne(new Sim(), 1, c.endingTime,
+                new RandomStreams(RandomStreams.LEGACY, c.baseSeed).forReplication(0));
+        assertArrayEquals(alone, s[0].sim.stats.values(), 0.0);
+    }
+}
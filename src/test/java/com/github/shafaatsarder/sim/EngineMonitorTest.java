@@ -0,0 +1,52 @@
+package com.github.shafaatsarder.sim;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import javax.management.ObjectName;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+class EngineMonitorTest {
+
+    @Test
+    void countersMatchTheRunAndReachJmxAndJfr() throws Exception {
+        System.setProperty("sim.instrument.period", "0");  // sample at every check
+        Path jfr = Files.createTempFile("engine", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("com.github.shafaatsarder.sim.EngineSample");
+            recording.start();
+
+            Sim sim = new Sim();
+            sim.instrument = true;
+            sim.reportInterval = 1000.0;
+            sim.seed(1, 2, 3, 4);
+            sim.start(2, 200000.0);
+            for (int i = 0; i < 5000; i++) sim.step();
+            ObjectName pattern = new ObjectName("com.github.shafaatsarder.sim:type=Engine,*");
+            assertEquals(1, ManagementFactory.getPlatformMBeanServer().queryNames(pattern, null).size());
+            while (sim.step()) { }
+            assertTrue(ManagementFactory.getPlatformMBeanServer().queryNames(pattern, null).isEmpty());
+
+            EngineMonitor m = sim.monitor;
+            assertEquals((long) sim.stats.values()[0], m.getArrivals());
+            assertEquals(200, m.getReports() + m.getEndOfSimulations());
+            assertEquals(1, m.getEndOfSimulations());
+            assertTrue(m.getQueueHighWater() > 0);
+            assertTrue(m.getEventsPerSecond() > 0);
+
+            recording.stop();
+            recording.dump(jfr);
+            List<RecordedEvent> samples = RecordingFile.readAllEvents(jfr);
+            assertFalse(samples.isEmpty());
+            assertTrue(samples.get(samples.size() - 1).getLong("arrivals") > 0);
+        } finally {
+            System.clearProperty("sim.instrument.period");
+            Files.deleteIfExists(jfr);
+        }
+    }
+}
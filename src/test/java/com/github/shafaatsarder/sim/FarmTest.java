@@ -0,0 +1,166 @@
+package com.github.shafaatsarder.sim;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+class FarmTest {
+
+    private static Farm farm(int reps, int chunk, double end) {
+        Farm f = new Farm();
+        f.replications = reps;
+        f.chunkSize = chunk;
+        f.endingTime = end;
+        f.baseSeed = 9;
+        f.timeoutSeconds = 60;
+        return f;
+    }
+
+    private static List<Farm.Scenario> scenarios(int... pumps) {
+        List<Farm.Scenario> list = new ArrayList<>();
+        for (int p : pumps) list.add(new Farm.Scenario(new Sim(), p));
+        return list;
+    }
+
+    // A worker on a daemon thread of this JVM
+    private static Thread worker(int port) {
+        Thread t = new Thread(() -> {
+            try {
+                Farm.serve("127.0.0.1", port, 1);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        t.setDaemon(true);
+        t.start();
+        return t;
+    }
+
+    private static void assertMatchesReplications(Farm f, List<Farm.Scenario> list, double[][][] rows) {
+        for (int s = 0; s < list.size(); s++) {
+            double[][] expected = Replications.runAll(list.get(s).template, list.get(s).numPumps,
+                    f.endingTime, f.replications, f.baseSeed, 1);
+            assertEquals(expected.length, rows[s].length);
+            for (int r = 0; r < expected.length; r++) assertArrayEquals(expected[r], rows[s][r], 0.0);
+        }
+    }
+
+    @Test
+    void rowsMatchReplicationsWhateverTheWorkers() throws IOException {
+        Farm f = farm(13, 5, 20000.0);                     // uneven last chunk
+        List<Farm.Scenario> list = scenarios(2, 3, 4);
+        try (Farm.Coordinator c = f.start(list)) {
+            for (int i = 0; i < 3; i++) worker(c.getPort());
+            double[][][] rows = c.await();
+            assertMatchesReplications(f, list, rows);
+            assertEquals(9, c.getChunksDone());
+            Summary profit = c.running(1, Sim.Statistics.TOTAL_PROFIT); // merged chunk by chunk
+            Summary inOrder = Replications.summarize(rows[1])[Sim.Statistics.TOTAL_PROFIT];
+            assertEquals(inOrder.count(), profit.count());
+            assertEquals(inOrder.mean(), profit.mean(), 1e-9 * Math.abs(inOrder.mean()));
+        }
+    }
+
+    @Test
+    void chunksOfALostWorkerAreReassigned() throws IOException {
+        Farm f = farm(12, 3, 20000.0);
+        List<Farm.Scenario> list = scenarios(3, 5);
+        try (Farm.Coordinator c = f.start(list)) {
+            // Alone at first, so it takes every chunk, then dies holding its first one
+            try (Socket s = new Socket("127.0.0.1", c.getPort())) {
+                DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+                in.readInt();                                  // magic
+                in.readLong();                                 // base seed
+                in.readDouble();                               // ending time
+                in.readInt();                                  // heartbeat period
+                int n = in.readInt();
+                for (int i = 0; i < n; i++) {
+                    for (int k = 0; k < 11; k++) in.readDouble();
+                    in.readUTF();
+                    in.readUTF();
+                    in.readInt();
+                }
+                assertEquals(1, in.readByte());                // a chunk
+            }
+            worker(c.getPort());
+            double[][][] rows = c.await();
+            assertMatchesReplications(f, list, rows);
+            assertEquals(1, c.getLost());
+            assertEquals(8, c.getChunksDone());
+        }
+    }
+
+    @Test
+    void idleWorkersStealFromBusyOnes() throws Exception {
+        Farm f = farm(40, 2, 86400.0 * 2);
+        List<Farm.Scenario> list = scenarios(3);
+        try (Farm.Coordinator c = f.start(list)) {
+            worker(c.getPort());
+            long deadline = System.nanoTime() + 60_000_000_000L;
+            while (c.getChunksDone() == 0) {                   // the first worker holds every chunk
+                assertTrue(System.nanoTime() < deadline, "no chunk came back");
+                Thread.sleep(5);
+            }
+            worker(c.getPort());
+            double[][][] rows = c.await();
+            assertMatchesReplications(f, list, rows);
+            assertTrue(c.getSteals() > 0);
+        }
+    }
+
+    @Test
+    void chunksLongerThanTheTimeoutAreNotMistakenForDeadWorkers() {
+        Farm f = farm(2, 2, 86400.0 * 2500);               // one chunk of well over a second
+        f.timeoutSeconds = 1;
+        List<Farm.Scenario> list = scenarios(3);
+        try (Farm.Coordinator c = f.start(list)) {
+            worker(c.getPort());
+            long t0 = System.nanoTime();
+            double[][][] rows = c.await();
+            assertTrue(System.nanoTime() - t0 > 1_500_000_000L, "chunk finished within the timeout");
+            assertMatchesReplications(f, list, rows);
+            assertEquals(0, c.getLost());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Test
+    void survivesAKilledWorkerProcess() throws Exception {
+        Farm f = farm(24, 1, 86400.0 * 10);                 // long enough to still be busy at the kill
+        List<Farm.Scenario> list = scenarios(3, 4);
+        try (Farm.Coordinator c = f.start(list)) {
+            Process doomed = Farm.launchWorker("127.0.0.1", c.getPort(), 1);
+            Process other = Farm.launchWorker("127.0.0.1", c.getPort(), 1);
+            try {
+                long deadline = System.nanoTime() + 60_000_000_000L;
+                while (c.getWorkers() < 2 || c.getChunksDone() < 2) { // both connected and working
+                    assertTrue(System.nanoTime() < deadline, "workers did not start");
+                    Thread.sleep(5);
+                }
+                doomed.destroyForcibly().waitFor();
+                double[][][] rows = c.await();
+                assertMatchesReplications(f, list, rows);
+                assertEquals(1, c.getLost());                   // its chunks were requeued, not just finished
+                assertEquals(48, c.getChunksDone());
+            } finally {
+                doomed.destroyForcibly();
+                other.destroyForcibly();
+            }
+        }
+    }
+
+    @Test
+    void extendedModelsAreRefused() {
+        Sim t = new Sim();
+        t.estimateGradients = true;
+        List<Farm.Scenario> list = List.of(new Farm.Scenario(t, 3));
+        assertThrows(IllegalArgumentException.class, () -> farm(4, 2, 100.0).start(list));
+    }
+}
@@ -0,0 +1,138 @@
+package com.github.shafaatsarder.sim;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ForecourtTest {
+
+    // A started context with the given layout and no events run yet
+    private static Sim started(Forecourt f) {
+        Sim sim = new Sim();
+        sim.forecourt = f;
+        sim.reportInterval = Double.POSITIVE_INFINITY;
+        sim.seed(1, 2, 3, 4);
+        sim.start(f.getNumberOfPumps(), 1e9);
+        return sim;
+    }
+
+    // Place a car of the given grade and litres at time 0
+    private static void arrive(Sim sim, int grade, double litres) {
+        Sim.Car c = sim.obtainCar();
+        c.setLitresNeeded(litres);
+        c.setServiceTime(Double.NaN);
+        c.setArrivalTime(sim.simulationTime);
+        c.setGrade(grade);
+        sim.dispatcher.place(c);
+    }
+
+    @Test
+    void singleGradeFifoMatchesThePlainStand() {
+        Sim plain = new Sim();
+        Sim graded = new Sim();
+        graded.forecourt = Forecourt.parse("petrol", "petrol:3", "fifo");
+        for (int r = 0; r < 5; r++) {
+            long[] seeds = Replications.seedsFor(11, r);
+            assertArrayEquals(Replications.runOne(plain, 3, 86400.0, seeds),
+                    Replications.runOne(graded, 3, 86400.0, seeds));
+        }
+    }
+
+    @Test
+    void everyCarGetsAPumpForItsGrade() {
+        for (String policy : new String[] {"fifo", "shortest", "priority"}) {
+            Forecourt f = Forecourt.parse("diesel:0.2,petrol:0.6,lpg:0.2",
+                    "petrol:80,diesel:40@1.5,diesel+petrol:60@0.8,lpg:10,petrol+lpg:10", policy);
+            Sim sim = new Sim();
+            sim.forecourt = f;
+            sim.meanInterarrivalTime = 1.2;        // enough traffic to keep lines at 200 pumps
+            sim.reportInterval = Double.POSITIVE_INFINITY;
+            long[] seeds = Replications.seedsFor(5, 0);
+            sim.seed(seeds[0], seeds[1], seeds[2], seeds[3]);
+            sim.start(f.getNumberOfPumps(), 20000.0);
+            int maxQueue = 0;
+            while (sim.step()) {
+                for (int id = 0; id < f.getNumberOfPumps(); id++) {
+                    Sim.Car c = sim.pumpStand.getPump(id).getCarInService();
+                    if (c != null) assertNotEquals(0, f.pumpMask[id] & (1 << c.getGrade()), policy + " pump " + id);
+                }
+                maxQueue = Math.max(maxQueue, sim.carQueue.getQueueSize());
+            }
+            assertTrue(maxQueue > 0, policy + " never queued");
+            assertTrue(sim.stats.getLitresMissed() > 0, policy + " never balked");
+        }
+    }
+
+    @Test
+    void mixedPumpsAreKeptForLast() {
+        Sim sim = started(Forecourt.parse("petrol,diesel", "petrol+diesel:1,petrol:1", "fifo"));
+        arrive(sim, 0, 30);
+        assertNull(sim.pumpStand.getPump(0).getCarInService());      // the petrol-only pump went first
+        assertNotNull(sim.pumpStand.getPump(1).getCarInService());
+        arrive(sim, 1, 30);
+        assertEquals(1, sim.pumpStand.getPump(0).getCarInService().getGrade());
+        arrive(sim, 1, 30);                                          // nothing left for diesel
+        assertEquals(1, sim.carQueue.getQueueSize());
+        assertNull(sim.dispatcher.nextCarFor(sim.pumpStand.getPump(1))); // petrol-only cannot serve it
+        assertEquals(1, sim.dispatcher.nextCarFor(sim.pumpStand.getPump(0)).getGrade());
+        assertEquals(0, sim.carQueue.getQueueSize());
+    }
+
+    @Test
+    void shortestTakesTheFastestPumpAndFewestLitres() {
+        Sim sim = started(Forecourt.parse("petrol", "petrol:1,petrol:1@2", "shortest"));
+        arrive(sim, 0, 40);
+        assertNotNull(sim.pumpStand.getPump(1).getCarInService());   // the faster pump
+        arrive(sim, 0, 40);
+        for (double litres : new double[] {50, 20, 30, 20}) arrive(sim, 0, litres);
+        Sim.Pump p = sim.pumpStand.getPump(0);
+        double[] order = new double[4];
+        for (int i = 0; i < 4; i++) order[i] = sim.dispatcher.nextCarFor(p).getLitresNeeded();
+        assertArrayEquals(new double[] {20, 20, 30, 50}, order);
+        assertNull(sim.dispatcher.nextCarFor(p));
+    }
+
+    @Test
+    void priorityLanesJumpEarlierArrivals() {
+        for (String policy : new String[] {"fifo", "priority"}) {
+            Sim sim = started(Forecourt.parse("diesel,petrol", "diesel+petrol:1", policy));
+            arrive(sim, 1, 30);                                      // takes the only pump
+            sim.simulationTime = 1.0;
+            arrive(sim, 1, 30);                                      // petrol waits first
+            sim.simulationTime = 2.0;
+            arrive(sim, 0, 30);                                      // then diesel
+            int next = sim.dispatcher.nextCarFor(sim.pumpStand.getPump(0)).getGrade();
+            assertEquals(policy.equals("fifo") ? 1 : 0, next, policy);
+        }
+    }
+
+    @Test
+    void linesKeepTheirOrderAcrossGrowth() {
+        Sim.Car c = new Sim.Car();
+        for (Dispatcher.Line line : new Dispatcher.Line[] {new Dispatcher.Ring(), new Dispatcher.Heap()}) {
+            int next = 0;
+            for (int i = 0; i < 20; i++) line.add(i, 10, Double.NaN);
+            for (int i = 0; i < 5; i++, next++) {
+                line.takeFirst(c);
+                assertEquals(next, c.getArrivalTime());
+            }
+            for (int i = 20; i < 40; i++) line.add(i, 10, Double.NaN); // wraps, then grows
+            while (line.size > 0) {
+                line.takeFirst(c);
+                assertEquals(next++, c.getArrivalTime());
+            }
+            assertEquals(40, next);
+        }
+    }
+
+    @Test
+    void badLayoutsAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> Forecourt.parse("petrol", "diesel:2", "fifo"));
+        assertThrows(IllegalArgumentException.class, () -> Forecourt.parse("petrol,diesel", "petrol:2", "fifo"));
+        assertThrows(IllegalArgumentException.class, () -> Forecourt.parse("petrol", "petrol:2@0", "fifo"));
+        assertThrows(IllegalArgumentException.class, () -> Forecourt.parse("petrol", "petrol:2", "random"));
+        Sim sim = new Sim();
+        sim.forecourt = Forecourt.parse("petrol", "petrol:2", "fifo");
+        sim.seed(1, 2, 3, 4);
+        assertThrows(IllegalArgumentException.class, () -> sim.start(3, 100.0));
+    }
+}
@@ -0,0 +1,61 @@
+package com.github.shafaatsarder.sim;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.Random;
+
+class FutureEventSetTest {
+
+    // Minimal event that does nothing
+    static class Marker extends Sim.Event {
+        final int id;   // creation number within one run
+        Marker(double time) { this(time, 0); }
+        Marker(double time, int id) { super(time); this.id = id; }
+        @Override public void makeItHappen(Sim sim) { }
+    }
+
+    // Hold model: take the earliest event, push it forward, put it back.
+    // Coarse times make lots of ties, so FIFO tie-breaking gets exercised.
+    private static int[] holdModel(FutureEventSet fes, int pending, int steps) {
+        Random r = new Random(42);
+        int ids = 0;
+        int[] order = new int[steps];
+        for (int i = 0; i < pending; i++) fes.insert(new Marker(r.nextInt(50), ids++));
+        for (int i = 0; i < steps; i++) {
+            double next = fes.nextTime();
+            Sim.Event e = fes.takeNextEvent();
+            assertEquals(next, e.getTime());
+            order[i] = ((Marker) e).id;
+            e.setTime(e.getTime() + r.nextInt(20));
+            fes.insert(e);
+            if (i % 7 == 0) fes.insert(new Marker(e.getTime() + r.nextInt(100), ids++)); // grow
+            if (i % 11 == 0) fes.takeNextEvent();                                         // shrink
+        }
+        return order;
+    }
+
+    @Test
+    void backendsMatchLinkedListOrderIncludingTies() {
+        int[] expected = holdModel(new Sim.EventList(), 300, 5000);
+        for (String name : new String[] {"heap2", "heap4", "calendar"}) {
+            assertArrayEquals(expected, holdModel(FutureEventSet.create(name), 300, 5000), name);
+        }
+    }
+
+    @Test
+    void equalTimesComeOutInInsertionOrder() {
+        for (String name : new String[] {"list", "heap", "calendar"}) {
+            FutureEventSet fes = FutureEventSet.create(name);
+            Sim.Event[] in = new Sim.Event[100];
+            for (int i = 0; i < in.length; i++) {
+                in[i] = new Marker(i % 2 == 0 ? 5.0 : 3.0);
+                fes.insert(in[i]);
+            }
+            assertEquals(100, fes.size());
+            for (int i = 1; i < in.length; i += 2) assertSame(in[i], fes.takeNextEvent(), name);
+            for (int i = 0; i < in.length; i += 2) assertSame(in[i], fes.takeNextEvent(), name);
+            assertTrue(fes.isEmpty());
+            assertEquals(Double.POSITIVE_INFINITY, fes.nextTime(), name);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.github.shafaatsarder.sim;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class GradientsTest {
+
+    private static final int WAIT = 5;                 // Statistics columns used below
+    private static final int USAGE = 6;
+    private static final int PROFIT = Sim.Statistics.TOTAL_PROFIT;
+    private static final int BALKED = 4;
+
+    // One replication with the given parameters; gradients appended after the Statistics
+    private static double[] run(double perLitre, double meanGap, boolean balking, long seed) {
+        return run(perLitre, meanGap, balking, seed, 20000.0);
+    }
+
+    private static double[] run(double perLitre, double meanGap, boolean balking, long seed, double end) {
+        Sim t = new Sim();
+        t.estimateGradients = true;
+        t.serviceTimePerLitre = perLitre;
+        t.meanInterarrivalTime = meanGap;
+        if (!balking) t.balkA = 1e9;                   // every car waits
+        return Replications.runOne(t, balking ? 2 : 4, end, Replications.seedsFor(seed, 0));
+    }
+
+    private static int g(int i) { return Sim.Statistics.COLUMNS.length + i; }
+
+    @Test
+    void ipaMatchesFiniteDifferencesOnTheSamePath() {
+        // Without balking the path is a smooth function of the parameters (same draws)
+        double h = 1e-6;
+        double[] base = run(0.5, 50.0, false, 7);
+        double[] up = run(0.5 + h, 50.0, false, 7), down = run(0.5 - h, 50.0, false, 7);
+        assertEquals((up[WAIT] - down[WAIT]) / (2 * h), base[g(0)], 1e-4 * Math.abs(base[g(0)]));
+        assertEquals((up[USAGE] - down[USAGE]) / (2 * h), base[g(2)], 1e-6);
+        up = run(0.5, 50.0 + h, false, 7);
+        down = run(0.5, 50.0 - h, false, 7);
+        assertEquals((up[WAIT] - down[WAIT]) / (2 * h), base[g(1)], 1e-4 * Math.abs(base[g(1)]));
+        assertTrue(base[g(0)] > 0 && base[g(1)] < 0);  // slower pumps wait longer, sparser cars less
+    }
+
+    @Test
+    void priceDerivativeIsLitresSold() {
+        double[] a = run(0.5, 50.0, true, 3);
+        Sim t = new Sim();
+        double litres = (a[PROFIT] + t.pumpCost * 2) / t.profit;
+        assertEquals(litres, a[g(3)], 1e-6 * litres);
+    }
+
+    @Test
+    void likelihoodRatioAgreesWithFiniteDifferencesOnAverage() {
+        // Balking makes profit and balks jump, so compare LR means with wide CRN differences
+        int n = 2000;
+        double end = 3000.0, hGap = 5.0, hLitre = 0.05;
+        Summary[] lr = new Summary[4], fd = new Summary[4]; // profit/gap, balks/gap, profit/litre, balks/litre
+        for (int i = 0; i < 4; i++) { lr[i] = new Summary(); fd[i] = new Summary(); }
+        for (int r = 0; r < n; r++) {
+            double[] base = run(0.5, 50.0, true, 100 + r, end);
+            lr[0].add(base[g(5)]);
+            lr[1].add(base[g(7)]);
+            lr[2].add(base[g(4)]);
+            lr[3].add(base[g(6)]);
+            double[] up = run(0.5, 50.0 + hGap, true, 100 + r, end), down = run(0.5, 50.0 - hGap, true, 100 + r, end);
+            fd[0].add((up[PROFIT] - down[PROFIT]) / (2 * hGap));
+            fd[1].add((up[BALKED] - down[BALKED]) / (2 * hGap));
+            up = run(0.5 + hLitre, 50.0, true, 100 + r, end);
+            down = run(0.5 - hLitre, 50.0, true, 100 + r, end);
+            fd[2].add((up[PROFIT] - down[PROFIT]) / (2 * hLitre));
+            fd[3].add((up[BALKED] - down[BALKED]) / (2 * hLitre));
+        }
+        for (int i = 0; i < 4; i++)
+            assertEquals(fd[i].mean(), lr[i].mean(), lr[i].halfWidth(0.99) + fd[i].halfWidth(0.99), "estimate " + i);
+        assertTrue(lr[1].upper(0.95) < 0);             // sparser cars, fewer balks
+        assertTrue(lr[3].lower(0.95) > 0);             // slower pumps, more balks
+    }
+
+    @Test
+    void offByDefaultAndRefusedWhereUnsupported() {
+        assertEquals(Sim.Statistics.COLUMNS.length,
+                Replications.runOne(new Sim(), 2, 1000.0, new long[] {1, 2, 3, 4}).length);
+        Sim t = new Sim();
+        t.estimateGradients = true;
+        assertFalse(ResultCache.canCache(t));
+        Corridor c = new Corridor();
+        c.numStations = 2;
+        assertThrows(IllegalArgumentException.class, () -> c.run(t));
+    }
+}
@@ -0,0 +1,39 @@
+package com.github.shafaatsarder.sim;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.Arrays;
+import java.util.Random;
+
+class HistogramTest {
+
+    @Test
+    void quantilesWithinOnePercentOfExact() {
+        Random r = new Random(3);
+        Histogram h = new Histogram(0.001);
+        double[] xs = new double[100_000];
+        for (int i = 0; i < xs.length; i++) {
+            xs[i] = -100.0 * Math.log(r.nextDouble());      // exponential, mean 100
+            h.record(xs[i]);
+        }
+        Arrays.sort(xs);
+        for (double q : new double[] {0.5, 0.9, 0.95, 0.99, 0.999}) {
+            double exact = xs[(int) Math.ceil(q * xs.length) - 1];
+            assertEquals(exact, h.quantile(q), 0.01 * exact, "q=" + q);
+        }
+        assertEquals(xs[0], h.min(), 0.0);
+        assertEquals(xs[xs.length - 1], h.max(), 0.0);
+    }
+
+    @Test
+    void timeWeightedQueueLength() {
+        Metrics m = new Metrics(1, 0.0);
+        m.queueChanged(1, 10.0);   // empty for 10 s
+        m.queueChanged(2, 20.0);   // one car for 10 s
+        m.queueChanged(0, 40.0);   // two cars for 20 s
+        double[] v = new double[Metrics.COLUMNS.length];
+        m.fillValues(v, 0, 60.0);  // empty again for 20 s
+        assertEquals((0 * 10 + 1 * 10 + 2 * 20 + 0 * 20) / 60.0, v[4], 1e-12); // mean queue
+        assertEquals(2.0, v[6]);                                             // max queue
+    }
+}
@@ -0,0 +1,54 @@
+package com.github.shafaatsarder.sim;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class LockstepTest {
+
+    private static void assertSameRows(Sim template, int pumps, double end, int n, int batch) {
+        double[][] objects = Replications.runAll(template, pumps, end, n, 5L, 1);
+        double[][] arrays = Lockstep.runAll(template, pumps, end, n, 5L, 2, batch);
+        for (int r = 0; r < n; r++) assertArrayEquals(objects[r], arrays[r], 0.0, "replication " + r);
+    }
+
+    @Test
+    void matchesTheObjectEngineWithLegacyStreams() {
+        Sim template = new Sim();
+        for (int pumps : new int[] {1, 3, 6}) assertSameRows(template, pumps, 86400.0, 40, 16);
+        assertSameRows(template, 2, 50000.0, 37, 1);
+        assertSameRows(template, 2, 50000.0, 37, 100);
+    }
+
+    @Test
+    void matchesWithOtherGenerators() {
+        for (String rng : new String[] {"L64X128MixRandom", "Xoshiro256PlusPlus"}) {
+            Sim template = new Sim();
+            template.rngName = rng;
+            assertSameRows(template, 3, 50000.0, 20, 8);
+        }
+    }
+
+    @Test
+    void matchesWithLongQueuesAndOtherParameters() {
+        Sim template = new Sim();
+        template.balkA = 1e9;                          // nobody balks: the rings must grow
+        template.meanInterarrivalTime = 30.0;
+        template.serviceTimeSpread = 200.0;            // clamped service times too
+        assertSameRows(template, 2, 30000.0, 12, 4);
+    }
+
+    @Test
+    void rejectsBadSettings() {
+        assertThrows(IllegalArgumentException.class, () -> Lockstep.runAll(new Sim(), 0, 100.0, 2, 1L, 1));
+        assertThrows(IllegalArgumentException.class, () -> Lockstep.runAll(new Sim(), 3, 100.0, 2, 1L, 1, 0));
+        Sim gradients = new Sim();
+        gradients.estimateGradients = true;
+        assertThrows(IllegalArgumentException.class, () -> Lockstep.runAll(gradients, 3, 100.0, 2, 1L, 1));
+        Sim precision = new Sim();
+        precision.targetPrecision = 0.05;
+        assertThrows(IllegalArgumentException.class, () -> Lockstep.runAll(precision, 3, 100.0, 2, 1L, 1));
+        Sim metrics = new Sim();
+        metrics.collectMetrics = true;
+        assertThrows(IllegalArgumentException.class, () -> Lockstep.runAll(metrics, 3, 100.0, 2, 1L, 1));
+    }
+}
@@ -0,0 +1,113 @@
+package com.github.shafaatsarder.sim;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+class PrescreenTest {
+
+    @Test
+    void estimatesTrackTheSimulation() {
+        Sim template = new Sim();
+        for (int c = 2; c <= 6; c++) {
+            Prescreen.Estimate e = Prescreen.estimate(template, c, 86400.0);
+            Summary[] sim = Replications.summarize(Replications.runAll(template, c, 86400.0, 10, 3, 1));
+            double profit = sim[Sim.Statistics.TOTAL_PROFIT].mean();
+            assertEquals(profit, e.values[Sim.Statistics.TOTAL_PROFIT], 0.05 * profit, c + " pumps");
+            assertEquals(sim[6].mean(), e.values[6], 0.05, c + " pumps usage");
+            assertEquals(sim[4].mean(), e.values[4], 0.25 * sim[4].mean() + 10, c + " pumps balked");
+        }
+    }
+
+    @Test
+    void withoutBalkingTheWaitIsAllenCunneenOnErlangC() {
+        Sim t = new Sim();
+        t.balkA = 1e12;                                 // everyone joins
+        t.meanInterarrivalTime = 100.0;
+        t.litresNeededRange = 0.0;                      // constant service: cs^2 = 0
+        t.serviceTimeSpread = 0.0;
+        double s = t.serviceTimeBase + t.serviceTimePerLitre * t.litresNeededMin, lambda = 0.01;
+        double a = lambda * s, rho = a / 2;              // two pumps
+        double tail = a * a / 2 / (1 - rho);
+        double erlangC = tail / (1 + a + tail);
+        double wq = erlangC / (2 / s - lambda);
+        Prescreen.Estimate e = Prescreen.estimate(t, 2, 86400.0);
+        assertEquals(0.5 * wq, e.values[5], 1e-6 * wq);
+        assertEquals(0.0, e.values[4], 1e-6);
+        assertEquals(rho, e.values[6], 1e-9);
+    }
+
+    @Test
+    void overloadWithoutBalkingSaturates() {
+        Sim t = new Sim();
+        t.balkA = 1e12;
+        Prescreen.Estimate e = Prescreen.estimate(t, 2, 86400.0);   // offered load 1.675
+        assertTrue(e.offeredLoad > 1);
+        assertEquals(Double.POSITIVE_INFINITY, e.values[5]);
+        assertEquals(1.0, e.values[6], 1e-6);
+    }
+
+    @Test
+    void clearlyBadPumpCountsArePruned() {
+        Prescreen p = new Prescreen();
+        p.minPumps = 1;
+        p.maxPumps = 10;
+        Prescreen.Estimate[] est = p.screen(new Sim());
+        assertEquals(Prescreen.Verdict.PRUNED, est[0].verdict);      // one pump: offered load 3.35
+        assertEquals(Prescreen.Verdict.PRUNED, est[1].verdict);
+        Prescreen.Estimate best = est[0];
+        for (Prescreen.Estimate e : est) if (e.profit > best.profit) best = e;
+        assertEquals(Prescreen.Verdict.PROMISING, best.verdict);
+        assertEquals(6, best.numPumps);
+    }
+
+    @Test
+    void surrogateLearnsABiasFromTheHistory() throws IOException {
+        Path file = Files.createTempFile("prescreen", ".csv");
+        Files.delete(file);
+        Sim t = new Sim();
+        for (int c = 3; c <= 8; c++) {                  // pretend the simulation runs 3% high plus 12
+            Prescreen.Estimate e = Prescreen.estimate(t, c, 86400.0);
+            double sim = 1.03 * e.values[Sim.Statistics.TOTAL_PROFIT] + 12.0 + ((c % 2 == 0) ? 0.5 : -0.5);
+            Prescreen.Surrogate.append(file, t, e, 86400.0, sim, 10);
+        }
+        Prescreen.Surrogate s = Prescreen.Surrogate.load(file);
+        Files.delete(file);
+        assertTrue(s.ready(86400.0));
+        assertFalse(s.ready(3600.0));
+        Prescreen.Estimate e = Prescreen.estimate(t, 5, 86400.0);
+        assertTrue(s.covers(e, 86400.0));
+        assertFalse(s.covers(Prescreen.estimate(t, 1, 86400.0), 86400.0));
+        assertEquals(1.03 * e.values[Sim.Statistics.TOTAL_PROFIT] + 12.0, s.predict(e, 86400.0), 2.0);
+        assertTrue(s.halfWidth(e, 86400.0) < 5.0);
+
+        Prescreen p = new Prescreen();
+        p.maxPumps = 10;
+        p.surrogate = s;
+        Prescreen.Estimate[] est = p.screen(t);
+        assertEquals(s.predict(est[4], 86400.0), est[4].profit, 0.0);   // calibrated inside the runs
+        assertEquals(est[0].values[Sim.Statistics.TOTAL_PROFIT], est[0].profit, 0.0); // analytic outside
+    }
+
+    @Test
+    void addingRunsRefitsWithoutAHistoryFile() {
+        Prescreen.Surrogate s = new Prescreen.Surrogate();
+        Sim t = new Sim();
+        assertFalse(s.ready(86400.0));
+        for (int c = 3; c <= 8; c++) {                  // the simulation runs 20 below the formula
+            Prescreen.Estimate e = Prescreen.estimate(t, c, 86400.0);
+            s.add(t, e, 86400.0, e.values[Sim.Statistics.TOTAL_PROFIT] - 20.0 + ((c % 2 == 0) ? 0.5 : -0.5), 10);
+        }
+        assertTrue(s.ready(86400.0));
+        Prescreen.Estimate e = Prescreen.estimate(t, 5, 86400.0);
+        double before = s.predict(e, 86400.0);
+        assertEquals(e.values[Sim.Statistics.TOTAL_PROFIT] - 20.0, before, 2.0);
+        for (int c = 3; c <= 8; c++) {                  // later runs 40 higher pull the fit up
+            Prescreen.Estimate f = Prescreen.estimate(t, c, 86400.0);
+            s.add(t, f, 86400.0, f.values[Sim.Statistics.TOTAL_PROFIT] + 20.0, 10);
+        }
+        assertTrue(s.predict(e, 86400.0) > before + 10.0);
+    }
+}
@@ -0,0 +1,50 @@
+package com.github.shafaatsarder.sim;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.Random;
+import java.util.random.RandomGenerator;
+
+class RandomStreamsTest {
+
+    @Test
+    void legacyStreamsAreTheOldSeededRandoms() {
+        long[] seeds = Replications.seedsFor(11L, 5);
+        RandomGenerator[] streams = new RandomStreams("legacy", 11L).forReplication(5);
+        for (int k = 0; k < seeds.length; k++) {
+            Random old = new Random(seeds[k]);
+            for (int i = 0; i < 100; i++) assertEquals(old.nextGaussian(), streams[k].nextGaussian());
+        }
+    }
+
+    @Test
+    void substreamsDoNotDependOnRequestOrder() {
+        for (String rng : new String[] {"L64X128MixRandom", "Xoshiro256PlusPlus"}) {
+            RandomStreams forward = new RandomStreams(rng, 3L);
+            RandomStreams backward = new RandomStreams(rng, 3L);
+            long[][] a = new long[10][];
+            long[][] b = new long[10][];
+            for (int r = 0; r < 10; r++) a[r] = firstLongs(forward.forReplication(r));
+            for (int r = 9; r >= 0; r--) b[r] = firstLongs(backward.forReplication(r));
+            for (int r = 0; r < 10; r++) assertArrayEquals(a[r], b[r], rng);
+            assertArrayEquals(a[4], firstLongs(forward.forReplication(4)), rng); // fresh copies
+            assertNotEquals(a[0][0], a[1][0], rng);
+            assertNotEquals(a[0][0], a[0][1], rng);
+        }
+    }
+
+    @Test
+    void replicationsWithSplittableStreamsDoNotDependOnThreadCount() {
+        Sim template = new Sim();
+        template.rngName = "Xoshiro256PlusPlus";
+        double[][] one = Replications.runAll(template, 3, 20000.0, 8, 7L, 1);
+        double[][] many = Replications.runAll(template, 3, 20000.0, 8, 7L, 4);
+        for (int r = 0; r < one.length; r++) assertArrayEquals(one[r], many[r], 0.0);
+    }
+
+    private static long[] firstLongs(RandomGenerator[] streams) {
+        long[] v = new long[streams.length];
+        for (int k = 0; k < v.length; k++) v[k] = streams[k].nextLong();
+        return v;
+    }
+}
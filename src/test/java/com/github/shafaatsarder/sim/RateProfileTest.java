@@ -0,0 +1,109 @@
+package com.github.shafaatsarder.sim;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+class RateProfileTest {
+
+    // Quiet night, sharp morning peak, steady day, closed from 22:00
+    private static final double[] TIMES = {0, 21600, 25200, 32400, 79200, 86400};
+    private static final double[] RATES = {10, 300, 40, 60, 0, 0};
+
+    @Test
+    void inversionHitsTheCumulativeTarget() {
+        for (RateProfile.Shape shape : RateProfile.Shape.values()) {
+            RateProfile p = new RateProfile(TIMES, RATES, shape);
+            Random rnd = new Random(3);
+            double t = 0.0;
+            for (int i = 0; i < 20000; i++) {      // several days, across every segment
+                double e = -Math.log(rnd.nextDouble());
+                double next = p.next(t, e);
+                assertTrue(next > t);
+                assertEquals(e, p.cumulative(next) - p.cumulative(t), 1e-9 * (1 + p.cumulative(next)));
+                t = next;
+            }
+        }
+    }
+
+    @Test
+    void stepRatesAndClosedHours() {
+        RateProfile p = new RateProfile(TIMES, RATES, RateProfile.Shape.STEP);
+        assertEquals(300 / 3600.0, p.rate(86400 + 22000), 1e-15);   // repeats daily
+        assertEquals(10 * 6 + 300 + 40 * 2 + 60 * 13, p.getArrivalsPerPeriod(), 1e-9);
+        Random rnd = new Random(5);
+        double t = 79000.0;
+        for (int i = 0; i < 1000; i++) {
+            t = p.next(t, -Math.log(rnd.nextDouble()));
+            double clock = t % 86400.0;
+            assertFalse(clock > 79200.0, "arrival at " + clock + " while closed");
+        }
+    }
+
+    @Test
+    void linearRatesInterpolate() {
+        RateProfile p = new RateProfile(new double[] {0, 3600, 7200}, new double[] {0, 3600, 0},
+                RateProfile.Shape.LINEAR);
+        assertEquals(0.5, p.rate(1800), 1e-12);
+        assertEquals(3600.0, p.getArrivalsPerPeriod(), 1e-9);       // triangle: 0.5 * 7200 * 1
+        assertEquals(450.0, p.cumulative(1800), 1e-9);
+    }
+
+    @Test
+    void constantProfileMatchesTheMeanInterarrivalTime() {
+        RateProfile p = new RateProfile(new double[] {0, 86400}, new double[] {72, 72}, RateProfile.Shape.STEP);
+        assertEquals(100.0 + 50.0 * 1.7, p.next(100.0, 1.7), 1e-9);
+    }
+
+    @Test
+    void oneContinuousDayFollowsTheProfile() {
+        RateProfile p = new RateProfile(TIMES, RATES, RateProfile.Shape.LINEAR);
+        Summary cars = new Summary();
+        for (int r = 0; r < 40; r++) {
+            Sim t = new Sim();
+            t.profile = p;
+            t.balkA = 1e9;                               // count every arrival as served or queued
+            cars.add(Replications.runOne(t, 6, 86400.0, Replications.seedsFor(9, r))[0]);
+        }
+        assertEquals(p.getArrivalsPerPeriod(), cars.mean(), cars.halfWidth(0.99));
+    }
+
+    @Test
+    void noCarsWhileClosedAtTheStart() {
+        RateProfile p = new RateProfile(new double[] {0, 3600, 86400}, new double[] {0, 60, 60},
+                RateProfile.Shape.STEP);
+        for (int r = 0; r < 20; r++) {
+            Sim sim = new Sim();
+            sim.profile = p;
+            sim.reportInterval = Double.POSITIVE_INFINITY;
+            long[] seeds = Replications.seedsFor(4, r);
+            sim.seed(seeds[0], seeds[1], seeds[2], seeds[3]);
+            sim.start(2, 86400.0);
+            while (sim.stats.values()[0] == 0) assertTrue(sim.step());
+            assertTrue(sim.simulationTime >= 3600.0, "car at " + sim.simulationTime + " while closed");
+        }
+    }
+
+    @Test
+    void loadsFilesAndRejectsBadProfiles() throws Exception {
+        Path f = Files.createTempFile("profile", ".csv");
+        Files.writeString(f, "# rush hours\ntime,carsPerHour\n0,30\n\n3600, 120\n7200,30\n");
+        RateProfile p = RateProfile.load(f, RateProfile.shape("step"));
+        assertEquals(7200.0, p.getPeriod());
+        assertEquals(150.0, p.getArrivalsPerPeriod(), 1e-9);
+        Files.delete(f);
+
+        assertThrows(IllegalArgumentException.class, () -> RateProfile.shape("spline"));
+        assertThrows(IllegalArgumentException.class,
+                () -> new RateProfile(new double[] {0, 10, 5}, new double[] {1, 1, 1}, RateProfile.Shape.STEP));
+        assertThrows(IllegalArgumentException.class,
+                () -> new RateProfile(new double[] {0, 10}, new double[] {0, 5}, RateProfile.Shape.STEP));
+        assertThrows(IllegalArgumentException.class,
+                () -> new RateProfile(new double[] {1, 10}, new double[] {1, 1}, RateProfile.Shape.STEP));
+        Sim t = new Sim();
+        t.profile = p;
+        assertFalse(ResultCache.canCache(t));
+    }
+}
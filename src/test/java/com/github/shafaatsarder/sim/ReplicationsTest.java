@@ -0,0 +1,29 @@
+package com.github.shafaatsarder.sim;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReplicationsTest {
+
+    @Test
+    void resultsDoNotDependOnThreadCount() {
+        Sim template = new Sim();
+        double[][] one = Replications.runAll(template, 3, 20000.0, 16, 7L, 1);
+        double[][] many = Replications.runAll(template, 3, 20000.0, 16, 7L, 4);
+        for (int r = 0; r < one.length; r++) assertArrayEquals(one[r], many[r], 0.0);
+
+        Summary[] a = Replications.summarize(one);
+        Summary[] b = Replications.summarize(many);
+        for (int c = 0; c < a.length; c++) {
+            assertEquals(Double.doubleToLongBits(a[c].mean()), Double.doubleToLongBits(b[c].mean()));
+            assertEquals(Double.doubleToLongBits(a[c].halfWidth(0.95)), Double.doubleToLongBits(b[c].halfWidth(0.95)));
+        }
+    }
+
+    @Test
+    void studentTQuantiles() {
+        assertEquals(12.706, Summary.tQuantile(0.975, 1), 1e-3);
+        assertEquals(2.262, Summary.tQuantile(0.975, 9), 1e-3);
+        assertEquals(1.960, Summary.tQuantile(0.975, 100000), 1e-3);
+    }
+}
@@ -0,0 +1,89 @@
+package com.github.shafaatsarder.sim;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+class ReportSinkTest {
+
+    // The string formatting the table used before the byte-buffer sink
+    private static String fmtDbl(double num, int width, int prec) {
+        double scale = 1.0;
+        for (int i = 0; i < prec; i++) scale *= 10.0;
+        String result = "" + (int) (num * scale + 0.5);
+        if (prec > 0) {
+            while (result.length() < prec + 1) result = "0" + result;
+            int insertPos = result.length() - prec;
+            result = result.substring(0, insertPos) + "." + result.substring(insertPos);
+        }
+        while (result.length() < width) result = " " + result;
+        return result;
+    }
+
+    private static String fmtInt(int num, int width) {
+        String result = "" + num;
+        while (result.length() < width) result = " " + result;
+        return result;
+    }
+
+    private static String legacyRow(double time, double[] v) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(fmtDbl(time, 8, 0)).append(fmtInt((int) v[0], 7)).append(fmtDbl(v[1], 9, 3));
+        if (Double.isNaN(v[2])) sb.append("   Unknown   Unknown");
+        else sb.append(fmtDbl(v[2], 9, 3)).append(fmtDbl(v[3], 8, 3));
+        sb.append(fmtInt((int) v[4], 8));
+        sb.append(Double.isNaN(v[5]) ? "   Unknown" : fmtDbl(v[5], 9, 3));
+        sb.append(fmtDbl(v[6], 8, 3)).append(fmtDbl(v[7], 10, 2)).append(fmtDbl(v[8], 9, 2));
+        return sb.append(System.lineSeparator()).toString();
+    }
+
+    @Test
+    void tableRowsMatchTheOldStringFormatting() {
+        Random r = new Random(9);
+        double[] awkward = {0.0, -0.0, 0.004, -0.004, -0.5, -0.05, 0.9995, -44.82, 1e-9, 123456.789, -98765.4321};
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ReportSink sink = ReportSink.open("table", bytes);
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            double[] v = new double[Sim.Statistics.COLUMNS.length];
+            for (int c = 0; c < v.length; c++) {
+                v[c] = (i < awkward.length) ? awkward[i] : (r.nextDouble() - 0.3) * Math.pow(10, r.nextInt(7));
+            }
+            v[0] = r.nextInt(100000);
+            v[4] = r.nextInt(1000);
+            if (i % 17 == 0) { v[2] = Double.NaN; v[3] = Double.NaN; }
+            if (i % 13 == 0) v[5] = Double.NaN;
+            double time = r.nextDouble() * 1e6;
+            sink.row(time, v);
+            expected.append(legacyRow(time, v));
+        }
+        sink.flush();
+        assertEquals(expected.toString(), bytes.toString());
+    }
+
+    @Test
+    void csvAndBinaryRows() {
+        double[] v = {12, 0.25, 50.0, 35.123456789, 3, Double.NaN, 0.5, -44.82, 2.85};
+
+        ByteArrayOutputStream csv = new ByteArrayOutputStream();
+        ReportSink sink = ReportSink.open("csv", csv);
+        sink.row(1000.0, v);
+        sink.flush();
+        assertEquals("1000,12,0.25,50,35.123457,3,,0.5,-44.82,2.85" + System.lineSeparator(), csv.toString());
+
+        ByteArrayOutputStream bin = new ByteArrayOutputStream();
+        sink = ReportSink.open("binary", bin);
+        sink.header(v.length);
+        sink.row(1000.0, v);
+        sink.flush();
+        ByteBuffer b = ByteBuffer.wrap(bin.toByteArray()).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(ReportSink.Binary.MAGIC, b.getLong());
+        assertEquals(v.length, b.getLong());
+        assertEquals(1000.0, b.getDouble());
+        for (double x : v) assertEquals(x, b.getDouble());
+        assertFalse(b.hasRemaining());
+    }
+}
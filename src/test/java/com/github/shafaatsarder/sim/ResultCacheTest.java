@@ -0,0 +1,76 @@
+package com.github.shafaatsarder.sim;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+class ResultCacheTest {
+
+    private static final long[] SEEDS = {1, 2, 3, 4};
+
+    private static Sim scenario() {
+        Sim sim = new Sim();
+        sim.reportInterval = 1000.0;
+        return sim;
+    }
+
+    // What Sim.main prints without the cache
+    private static String direct(String format) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Sim sim = scenario();
+        sim.report = ReportSink.open(format, out);
+        sim.seed(SEEDS[0], SEEDS[1], SEEDS[2], SEEDS[3]);
+        sim.run(3, 20000.0);
+        sim.report.flush();
+        return out.toString();
+    }
+
+    private static String cached(ResultCache cache, String format) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ReportSink sink = ReportSink.open(format, out);
+        ResultCache.replay(cache.rows(scenario(), 3, 20000.0, SEEDS), sink);
+        sink.flush();
+        return out.toString();
+    }
+
+    @Test
+    void hitsAndMissesPrintTheSameBytesAsARealRun(@TempDir Path dir) {
+        ResultCache cache = new ResultCache(dir, 1 << 20, 1 << 20);
+        for (String format : new String[] {"table", "csv"}) {
+            assertEquals(direct(format), cached(cache, format), format);
+            assertEquals(direct(format), cached(new ResultCache(dir, 1 << 20, 1 << 20), format), format); // from disk
+        }
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    void everyParameterIsPartOfTheKey() {
+        Sim a = scenario(), b = scenario();
+        assertEquals(ResultCache.key(a, 3, 100.0, SEEDS), ResultCache.key(b, 3, 100.0, SEEDS));
+        b.balkC = 3.5;
+        assertNotEquals(ResultCache.key(a, 3, 100.0, SEEDS), ResultCache.key(b, 3, 100.0, SEEDS));
+        assertNotEquals(ResultCache.key(a, 3, 100.0, SEEDS), ResultCache.key(a, 4, 100.0, SEEDS));
+        assertNotEquals(ResultCache.key(a, 3, 100.0, SEEDS), ResultCache.key(a, 3, 100.0, new long[] {1, 2, 3, 5}));
+        b = scenario();
+        b.fesName = "calendar";                          // same rows, same entry
+        assertEquals(ResultCache.key(a, 3, 100.0, SEEDS), ResultCache.key(b, 3, 100.0, SEEDS));
+    }
+
+    @Test
+    void diskTierStaysWithinItsBound(@TempDir Path dir) throws Exception {
+        long bound = 3000;                               // a few small entries
+        ResultCache cache = new ResultCache(dir, bound, 0);
+        for (int n = 1; n <= 10; n++) cache.rows(scenario(), n, 5000.0, SEEDS);
+        long total = 0;
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path p : (Iterable<Path>) files::iterator) total += Files.size(p);
+        }
+        assertTrue(total <= bound, "disk use " + total);
+        assertEquals(10, cache.getMisses());
+    }
+}
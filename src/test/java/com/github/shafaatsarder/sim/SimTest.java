@@ -7,25 +7,26 @@ class PumpStandTest {
 
     @Test
     void PumpBehaviour() {
-        Sim.pumpStand = new Sim.PumpStand(2);
+        Sim sim = new Sim();
+        sim.pumpStand = new Sim.PumpStand(sim, 2);
 
-        assertTrue(Sim.pumpStand.aPumpIsAvailable());
-        assertEquals(2, Sim.pumpStand.getNumberOfPumps());
+        assertTrue(sim.pumpStand.aPumpIsAvailable());
+        assertEquals(2, sim.pumpStand.getNumberOfPumps());
 
-        Sim.Pump p1 = Sim.pumpStand.takeAvailablePump();
+        Sim.Pump p1 = sim.pumpStand.takeAvailablePump();
         assertNotNull(p1);
 
-        assertTrue(Sim.pumpStand.aPumpIsAvailable());
+        assertTrue(sim.pumpStand.aPumpIsAvailable());
 
-        Sim.Pump p2 = Sim.pumpStand.takeAvailablePump();
+        Sim.Pump p2 = sim.pumpStand.takeAvailablePump();
         assertNotNull(p2);
 
-        assertFalse(Sim.pumpStand.aPumpIsAvailable());
+        assertFalse(sim.pumpStand.aPumpIsAvailable());
 
-        Sim.pumpStand.releasePump(p2);
-        assertTrue(Sim.pumpStand.aPumpIsAvailable());
+        sim.pumpStand.releasePump(p2);
+        assertTrue(sim.pumpStand.aPumpIsAvailable());
 
-        Sim.pumpStand.releasePump(p1);
-        assertTrue(Sim.pumpStand.aPumpIsAvailable());
+        sim.pumpStand.releasePump(p1);
+        assertTrue(sim.pumpStand.aPumpIsAvailable());
     }
 }
\ No newline at end of file
@@ -0,0 +1,104 @@
+package com.github.shafaatsarder.sim;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Path;
+
+class SnapshotTest {
+
+    private static Sim station(String fes, ByteArrayOutputStream out) {
+        Sim sim = new Sim();
+        sim.fesName = fes;
+        sim.reportInterval = 1000.0;
+        sim.report = ReportSink.open("csv", out);
+        sim.seed(1, 2, 3, 4);
+        sim.start(2, 30000.0);
+        return sim;
+    }
+
+    private static void finish(Sim sim) {
+        while (sim.step()) { }
+        sim.report.flush();
+    }
+
+    @Test
+    void resumingUnchangedMatchesTheUninterruptedRun() {
+        for (String fes : new String[] {"list", "heap", "calendar"}) {
+            ByteArrayOutputStream whole = new ByteArrayOutputStream();
+            finish(station(fes, whole));
+
+            ByteArrayOutputStream prefix = new ByteArrayOutputStream();
+            ByteArrayOutputStream original = new ByteArrayOutputStream();
+            Sim sim = station(fes, prefix);
+            sim.stepUntil(12345.0);
+            sim.report.flush();
+            Snapshot snap = Snapshot.take(sim);
+            original.writeBytes(prefix.toByteArray());
+            sim.report = ReportSink.open("csv", original);
+            finish(sim);                                 // taking it left the run untouched
+            assertEquals(whole.toString(), original.toString(), fes);
+
+            for (int branch = 0; branch < 2; branch++) {
+                ByteArrayOutputStream rest = new ByteArrayOutputStream();
+                Sim resumed = snap.restore();
+                resumed.report = ReportSink.open("csv", rest);
+                finish(resumed);
+                assertEquals(whole.toString(), prefix + rest.toString(), fes);
+            }
+        }
+    }
+
+    @Test
+    void branchesWithMorePumpsAndMappedImages(@TempDir Path dir) throws Exception {
+        Sim sim = new Sim();
+        sim.reportInterval = Double.POSITIVE_INFINITY;
+        sim.seed(5, 6, 7, 8);
+        sim.start(1, 40000.0);
+        sim.stepUntil(10000.0);
+        Snapshot snap = Snapshot.take(sim);
+        while (sim.step()) { }
+
+        Path file = dir.resolve("station.snap");
+        snap.writeTo(file);
+        Snapshot mapped = Snapshot.map(file);
+        assertEquals(snap.size(), mapped.size());
+        Sim same = mapped.restore();
+        while (same.step()) { }
+        assertArrayEquals(sim.stats.values(), same.stats.values(), 0.0);
+
+        Sim bigger = mapped.restore(3);
+        while (bigger.step()) { }
+        assertEquals(3, bigger.pumpStand.getNumberOfPumps());
+        assertTrue(bigger.stats.values()[4] < sim.stats.values()[4]); // fewer balks with more pumps
+    }
+
+    @Test
+    void addedPumpsServeTheWaitingCarsAtOnce() {
+        Sim sim = new Sim();
+        sim.reportInterval = Double.POSITIVE_INFINITY;
+        sim.seed(5, 6, 7, 8);
+        sim.start(1, 40000.0);
+        while (sim.carQueue.getQueueSize() < 3) assertTrue(sim.step());
+        Snapshot snap = Snapshot.take(sim);
+        int waiting = sim.carQueue.getQueueSize();
+
+        Sim bigger = snap.restore(3);
+        assertEquals(waiting - 2, bigger.carQueue.getQueueSize());  // one car for each added pump
+        assertFalse(bigger.pumpStand.aPumpIsAvailable());
+        for (int id = 0; id < 3; id++) assertNotNull(bigger.pumpStand.getPump(id).getCarInService());
+        while (bigger.step())
+            assertFalse(bigger.carQueue.getQueueSize() > 0 && bigger.pumpStand.aPumpIsAvailable(),
+                    "idle pump while cars wait at " + bigger.simulationTime);
+    }
+
+    @Test
+    void unsupportedStreamsAreRefused() {
+        Sim sim = new Sim();
+        sim.rngName = "L64X128MixRandom";
+        sim.seed(1, 2, 3, 4);
+        sim.start(1, 1000.0);
+        assertThrows(IllegalStateException.class, () -> Snapshot.take(sim));
+    }
+}
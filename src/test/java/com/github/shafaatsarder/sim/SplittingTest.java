@@ -0,0 +1,85 @@
+package com.github.shafaatsarder.sim;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class SplittingTest {
+
+    private static Splitting splitting(String measure, double... levels) {
+        Splitting s = new Splitting();
+        s.numPumps = 3;
+        s.endingTime = 10000.0;
+        s.measure = measure;
+        s.levels = levels;
+        s.effort = 300;
+        s.runs = 8;
+        s.threads = 2;
+        return s;
+    }
+
+    private static Summary summary(Splitting.Estimate[] estimates) {
+        Summary s = new Summary();
+        for (Splitting.Estimate e : estimates) s.add(e.probability);
+        return s;
+    }
+
+    @Test
+    void agreesWithCrudeMonteCarlo() {
+        Splitting s = splitting("queue", 3, 5, 6, 7);
+        Summary split = summary(s.run(new Sim()));
+        int n = 4000;
+        double p = (double) s.crude(new Sim(), n)[0] / n;
+        double crudeHalfWidth = 2.58 * Math.sqrt(p * (1 - p) / n);
+        assertTrue(p > 0 && p < 0.1);                  // rare enough to be worth splitting
+        assertEquals(p, split.mean(), crudeHalfWidth + split.halfWidth(0.99));
+    }
+
+    @Test
+    void oneLevelIsPlainReplication() {
+        Splitting s = splitting("lost", 5.0);
+        for (Splitting.Estimate e : s.run(new Sim())) {
+            assertEquals((double) e.hits[0] / s.effort, e.probability, 0.0);
+            assertTrue(e.events > 0);
+        }
+    }
+
+    @Test
+    void sameResultsForAnyThreadCount() {
+        Splitting s = splitting("queue", 3, 5, 7);
+        Splitting.Estimate[] a = s.run(new Sim());
+        s.threads = 1;
+        Splitting.Estimate[] b = s.run(new Sim());
+        for (int r = 0; r < a.length; r++) {
+            assertEquals(a[r].probability, b[r].probability, 0.0);
+            assertArrayEquals(a[r].hits, b[r].hits);
+        }
+    }
+
+    @Test
+    void unreachableLevelGivesZero() {
+        Splitting s = splitting("queue", 3, 1000);
+        s.effort = 20;
+        s.runs = 1;
+        assertEquals(0.0, s.run(new Sim())[0].probability);
+    }
+
+    @Test
+    void rejectsBadSettings() {
+        assertThrows(IllegalArgumentException.class, () -> splitting("queue", 5, 3).run(new Sim()));
+        assertThrows(IllegalArgumentException.class, () -> splitting("wait", 3).run(new Sim()));
+        Sim t = new Sim();
+        t.rngName = "L64X128MixRandom";
+        assertThrows(IllegalArgumentException.class, () -> splitting("queue", 3).run(t));
+    }
+
+    @Test
+    void rejectsModelsSnapshotsCannotClone() {
+        Sim profiled = new Sim();
+        profiled.profile = new RateProfile(new double[] {0, 3600, 7200}, new double[] {0, 60, 60},
+                RateProfile.Shape.STEP);                // closed at first
+        assertThrows(IllegalArgumentException.class, () -> splitting("queue", 3).run(profiled));
+        Sim graded = new Sim();
+        graded.forecourt = Forecourt.parse("petrol,diesel", "petrol+diesel:3", "fifo");
+        assertThrows(IllegalArgumentException.class, () -> splitting("queue", 3).run(graded));
+    }
+}
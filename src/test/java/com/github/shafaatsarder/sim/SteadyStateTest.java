@@ -0,0 +1,35 @@
+package com.github.shafaatsarder.sim;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.Random;
+
+class SteadyStateTest {
+
+    @Test
+    void mserCutsOffAnInitialTransient() {
+        Random r = new Random(1);
+        double[] z = new double[400];
+        for (int i = 0; i < z.length; i++) {
+            double bias = (i < 60) ? 50.0 * (60 - i) / 60.0 : 0.0;   // decaying start-up bias
+            z[i] = 10.0 + bias + r.nextGaussian();
+        }
+        int d = SteadyState.mserTruncation(z, z.length);
+        assertTrue(d >= 45 && d <= 80, "truncation point " + d);
+    }
+
+    @Test
+    void runStopsOnceTargetPrecisionIsReached() {
+        Sim sim = new Sim();
+        sim.detectWarmup = true;
+        sim.targetPrecision = 0.05;
+        sim.reportInterval = Double.POSITIVE_INFINITY;
+        sim.seed(1, 2, 3, 4);
+        sim.run(2, 1e9);
+
+        assertTrue(sim.steadyState.isWarmupOver());
+        assertTrue(sim.steadyState.stoppedEarly());
+        assertTrue(sim.simulationTime < 1e9);
+        assertTrue(sim.steadyState.halfWidth() <= 0.05 * sim.steadyState.mean());
+    }
+}
@@ -0,0 +1,28 @@
+package com.github.shafaatsarder.sim;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class SweepTest {
+
+    @Test
+    void selectionIsReproducibleAndDropsTheObviouslyBadCounts() {
+        Sweep sweep = new Sweep();
+        sweep.minPumps = 1;
+        sweep.maxPumps = 6;
+        sweep.endingTime = 43200.0;
+        sweep.baseSeed = 11;
+        sweep.maxReplications = 40;
+
+        sweep.threads = 1;
+        Sweep.Candidate[] a = sweep.select(new Sim());
+        sweep.threads = 4;
+        Sweep.Candidate[] b = sweep.select(new Sim());
+
+        assertEquals(a[0].numPumps, b[0].numPumps);
+        assertEquals(a[0].profit.mean(), b[0].profit.mean(), 0.0);
+        assertFalse(a[0].eliminated, "best pump count must survive");
+        for (Sweep.Candidate c : a)
+            if (c.numPumps == 1) assertTrue(c.eliminated, "one pump is clearly too few");
+    }
+}
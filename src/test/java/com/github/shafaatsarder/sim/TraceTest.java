@@ -0,0 +1,75 @@
+package com.github.shafaatsarder.sim;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+class TraceTest {
+
+    // A log of n cars, 30 s apart on average; every 10th row has no service time
+    private static Path writeCsv(Path dir, int n) throws Exception {
+        Random r = new Random(3);
+        StringBuilder sb = new StringBuilder("time,litres,service\r\n");
+        double t = 1.7e6;                              // large, non-zero start
+        for (int i = 0; i < n; i++) {
+            t += Math.floor(r.nextDouble() * 60000) / 1000.0;
+            sb.append(t).append(',').append(10 + r.nextInt(5000) / 100.0).append(',');
+            if (i % 10 != 0) sb.append(100 + r.nextInt(20000) / 100.0);
+            sb.append(i % 2 == 0 ? "\n" : "\r\n");
+        }
+        Path csv = dir.resolve("log.csv");
+        Files.writeString(csv, sb);
+        return csv;
+    }
+
+    @Test
+    void csvAndConvertedBinaryGiveTheSameRows(@TempDir Path dir) throws Exception {
+        Path csv = writeCsv(dir, 5000);
+        Path bin = dir.resolve("log.bin");
+        assertEquals(5000, Trace.convert(csv, bin));
+        String[] lines = Files.readString(csv).split("\r?\n");
+        try (Trace a = Trace.open(csv); Trace b = Trace.open(bin)) {
+            double origin = Double.parseDouble(lines[1].split(",")[0]);
+            for (int i = 1; i < lines.length; i++) {
+                assertTrue(a.next());
+                assertTrue(b.next());
+                String[] f = lines[i].split(",", -1);
+                assertEquals(Double.parseDouble(f[0]) - origin, a.time());
+                assertEquals(Double.parseDouble(f[1]), a.litres());
+                if (f[2].isEmpty()) assertTrue(Double.isNaN(a.serviceTime()));
+                else assertEquals(Double.parseDouble(f[2]), a.serviceTime());
+                assertEquals(a.time(), b.time());
+                assertEquals(a.litres(), b.litres());
+                assertEquals(a.serviceTime(), b.serviceTime());
+            }
+            assertFalse(a.next());
+            assertFalse(b.next());
+        }
+    }
+
+    @Test
+    void replayFeedsEveryLoggedCarWithoutAllocating(@TempDir Path dir) throws Exception {
+        Path bin = dir.resolve("log.bin");
+        Trace.convert(writeCsv(dir, 200_000), bin);
+        Sim sim = new Sim();
+        sim.reportInterval = Double.POSITIVE_INFINITY;
+        sim.seed(1, 2, 3, 4);
+        try (Trace trace = Trace.open(bin)) {
+            sim.trace = trace;
+            sim.start(4, 1e12);
+            for (int i = 0; i < 100_000; i++) sim.step();   // warm up pools and JIT
+            com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            long before = mx.getThreadAllocatedBytes(Thread.currentThread().getId());
+            for (int i = 0; i < 200_000; i++) sim.step();
+            long used = mx.getThreadAllocatedBytes(Thread.currentThread().getId()) - before;
+            assertTrue(used < 4096, "replay allocated " + used + " bytes");
+            while (sim.step()) { }
+            assertEquals(200_000, (long) sim.stats.values()[0]);  // every row arrived once
+            assertEquals(200_000, trace.getRows());
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.github.shafaatsarder.sim;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.Random;
+
+class VariateBufferTest {
+
+    @Test
+    void blocksKeepTheStreamSequence() {
+        VariateBuffer exp = new VariateBuffer(VariateBuffer.Kind.EXPONENTIAL);
+        VariateBuffer normal = new VariateBuffer(VariateBuffer.Kind.NORMAL);
+        Random a = new Random(5), b = new Random(1);
+        Random a2 = new Random(5), b2 = new Random(1);
+        for (int i = 0; i < 3 * VariateBuffer.BLOCK + 7; i++) {
+            assertEquals(-50.0 * Math.log(a2.nextDouble()), 50.0 * exp.next(a));
+            assertEquals(b2.nextGaussian(), normal.next(b));
+        }
+    }
+
+    @Test
+    void newStreamDropsTheRestOfTheBlock() {
+        VariateBuffer u = new VariateBuffer(VariateBuffer.Kind.UNIFORM);
+        u.next(new Random(3));
+        Random fresh = new Random(4);
+        assertEquals(new Random(4).nextDouble(), u.next(fresh));
+    }
+}